@@ -44,6 +44,7 @@
 import org.codehaus.plexus.components.io.resources.AbstractPlexusIoResourceCollection;
 import org.codehaus.plexus.components.io.resources.EncodingSupported;
 import org.codehaus.plexus.components.io.resources.PlexusIoArchivedResourceCollection;
+import org.codehaus.plexus.components.io.resources.PlexusIoFileResource;
 import org.codehaus.plexus.components.io.resources.PlexusIoFileResourceCollection;
 import org.codehaus.plexus.components.io.resources.PlexusIoResource;
 import org.codehaus.plexus.components.io.resources.PlexusIoResourceCollection;
@@ -139,10 +140,24 @@ private static class AddedResourceCollection {
 
         private final int forcedDirectoryMode;
 
+        /**
+         * Indicates if the content of the file resources of the collection is the content of their file.
+         */
+        private final boolean untransformedFiles;
+
         public AddedResourceCollection(PlexusIoResourceCollection resources, int forcedFileMode, int forcedDirMode) {
+            this(resources, forcedFileMode, forcedDirMode, false);
+        }
+
+        AddedResourceCollection(
+                PlexusIoResourceCollection resources,
+                int forcedFileMode,
+                int forcedDirMode,
+                boolean untransformedFiles) {
             this.resources = resources;
             this.forcedFileMode = forcedFileMode;
             this.forcedDirectoryMode = forcedDirMode;
+            this.untransformedFiles = untransformedFiles;
         }
 
         private int maybeOverridden(int suggestedMode, boolean isDir) {
@@ -317,7 +332,8 @@ public void addFileSet(@Nonnull final FileSet fileSet) throws ArchiverException
             collection.setDefaultAttributes(-1, null, -1, null, getDefaultFileMode(), getDefaultDirectoryMode());
         }
 
-        addResources(collection);
+        doAddResource(new AddedResourceCollection(
+                collection, forcedFileMode, forcedDirectoryMode, fileSet.getStreamTransformer() == null));
     }
 
     @Override
@@ -403,11 +419,17 @@ private ArchiveEntry asArchiveEntry(final AddedResourceCollection collection, fi
             }
         }
 
-        return asArchiveEntry(
+        ArchiveEntry entry = asArchiveEntry(
                 resource,
                 destFileName,
                 collection.maybeOverridden(fromResource, resource.isDirectory()),
                 collection.resources);
+        if (collection.untransformedFiles
+                && entry.getType() == ArchiveEntry.FILE
+                && entry.getResource() instanceof PlexusIoFileResource fileResource) {
+            entry.setContentFile(fileResource.getFile());
+        }
+        return entry;
     }
 
     @Override
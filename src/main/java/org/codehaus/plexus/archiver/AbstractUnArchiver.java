@@ -21,19 +21,24 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.codehaus.plexus.archiver.util.ArchiveEntryUtils;
+import org.codehaus.plexus.archiver.util.CreatedDirectories;
 import org.codehaus.plexus.components.io.attributes.SymlinkUtils;
 import org.codehaus.plexus.components.io.filemappers.FileMapper;
 import org.codehaus.plexus.components.io.fileselectors.FileSelector;
 import org.codehaus.plexus.components.io.resources.PlexusIoResource;
-import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -71,6 +76,38 @@ protected Logger getLogger() {
      */
     private boolean ignorePermissions = false;
 
+    private boolean deferredMetadata = false;
+
+    private boolean skipUnchangedFiles = false;
+
+    private File extractionIndex;
+
+    /**
+     * The comparison of the files of the current extraction with the existing ones, if enabled.
+     */
+    private UnchangedFiles unchangedFiles;
+
+    /**
+     * The modification times and modes recorded by the current extraction, if they are deferred.
+     */
+    private MetadataJournal metadataJournal;
+
+    /**
+     * The canonical paths of the destination directories, resolved once per extraction.
+     */
+    private final Map<File, Path> canonicalDirectories = new ConcurrentHashMap<>();
+
+    /**
+     * Indicates if the current extraction created a symbolic link. Until then the entries are checked lexically,
+     * afterwards they are resolved on the file system.
+     */
+    private volatile boolean symlinkCreated;
+
+    /**
+     * The directories created or found by the current extraction.
+     */
+    private final CreatedDirectories createdDirectories = new CreatedDirectories();
+
     public AbstractUnArchiver() {
         // no op
     }
@@ -132,14 +169,41 @@ public void setFileMappers(final FileMapper[] fileMappers) {
     @Override
     public final void extract() throws ArchiverException {
         validate();
+        resetExtractionState();
         execute();
+        applyMetadataJournal();
+        storeExtractionIndex(getDestDirectory());
         runArchiveFinalizers();
     }
 
     @Override
     public final void extract(final String path, final File outputDirectory) throws ArchiverException {
         validate(path, outputDirectory);
+        resetExtractionState();
         execute(path, outputDirectory);
+        applyMetadataJournal();
+        storeExtractionIndex(outputDirectory);
+        runArchiveFinalizers();
+    }
+
+    /**
+     * Takes paths into the archive and extracts them to the specified directory. An entry is extracted if its
+     * name starts with one of the paths, so a path may be the name of a file or a directory, and only the
+     * selected entries are read from archives with an index of their entries.
+     *
+     * @param paths paths inside the archive to be extracted
+     * @param outputDirectory directory to extract to
+     * @since 5.0.0
+     */
+    public final void extractPaths(final Collection<String> paths, final File outputDirectory)
+            throws ArchiverException {
+        for (String path : paths) {
+            validate(path, outputDirectory);
+        }
+        resetExtractionState();
+        execute(paths, outputDirectory);
+        applyMetadataJournal();
+        storeExtractionIndex(outputDirectory);
         runArchiveFinalizers();
     }
 
@@ -157,6 +221,40 @@ public void setArchiveFinalizers(final List<ArchiveFinalizer> archiveFinalizers)
         finalizers = archiveFinalizers;
     }
 
+    private void resetExtractionState() {
+        canonicalDirectories.clear();
+        symlinkCreated = false;
+        createdDirectories.clear();
+        metadataJournal = isDeferredMetadata() ? new MetadataJournal() : null;
+        try {
+            unchangedFiles = skipUnchangedFiles
+                    ? new UnchangedFiles(extractionIndex != null ? extractionIndex.toPath() : null)
+                    : null;
+        } catch (final IOException e) {
+            throw new ArchiverException("Failed reading extraction index " + extractionIndex, e);
+        }
+    }
+
+    private void applyMetadataJournal() throws ArchiverException {
+        final MetadataJournal journal = metadataJournal;
+        metadataJournal = null;
+        if (journal != null && !journal.isEmpty()) {
+            journal.apply(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    private void storeExtractionIndex(final File destination) throws ArchiverException {
+        final UnchangedFiles files = unchangedFiles;
+        unchangedFiles = null;
+        if (files != null && extractionIndex != null && destination != null) {
+            try {
+                files.store(extractionIndex.toPath(), canonicalDirectory(destination));
+            } catch (final IOException e) {
+                throw new ArchiverException("Failed writing extraction index " + extractionIndex, e);
+            }
+        }
+    }
+
     private void runArchiveFinalizers() throws ArchiverException {
         if (finalizers != null) {
             for (ArchiveFinalizer finalizer : finalizers) {
@@ -230,6 +328,33 @@ protected boolean isSelected(final String fileName, final PlexusIoResource fileI
 
     protected abstract void execute(String path, File outputDirectory) throws ArchiverException;
 
+    /**
+     * Extracts the entries whose name starts with one of the paths. Extracts each path in turn by default, archives
+     * with an index of their entries should only read the selected ones.
+     *
+     * @since 5.0.0
+     */
+    protected void execute(final Collection<String> paths, final File outputDirectory) throws ArchiverException {
+        for (String path : prefixes(paths)) {
+            execute(path, outputDirectory);
+        }
+    }
+
+    /**
+     * Returns the sorted paths, without the ones starting with another path.
+     *
+     * @since 5.0.0
+     */
+    protected static List<String> prefixes(final Collection<String> paths) {
+        final List<String> prefixes = new ArrayList<>();
+        for (String path : new TreeSet<>(paths)) {
+            if (prefixes.isEmpty() || !path.startsWith(prefixes.get(prefixes.size() - 1))) {
+                prefixes.add(path);
+            }
+        }
+        return prefixes;
+    }
+
     /**
      * @since 1.1
      */
@@ -246,6 +371,69 @@ public void setIgnorePermissions(final boolean ignorePermissions) {
         this.ignorePermissions = ignorePermissions;
     }
 
+    /**
+     * Returns whether the modification times and modes of the extracted entries are set once all the
+     * entries are extracted.
+     *
+     * @since 5.0.0
+     */
+    public boolean isDeferredMetadata() {
+        return deferredMetadata;
+    }
+
+    /**
+     * Sets whether the modification times and modes of the extracted entries are set once all the entries
+     * are extracted, instead of after each entry. They are then set by several threads, through a single
+     * attribute view per file, and the modification times of the directories are set last, so they are not
+     * changed by the creation of their files. Defaults to {@code false}.
+     *
+     * @since 5.0.0
+     */
+    public void setDeferredMetadata(final boolean deferredMetadata) {
+        this.deferredMetadata = deferredMetadata;
+    }
+
+    /**
+     * Returns whether the files already having the content of their entry are kept instead of being extracted
+     * again.
+     *
+     * @since 5.0.0
+     */
+    public boolean isSkipUnchangedFiles() {
+        return skipUnchangedFiles;
+    }
+
+    /**
+     * Sets whether the files already having the content of their entry are kept instead of being extracted again:
+     * their content is not written, but their modification time and permissions are still set. Zip entries are compared with the existing files by size and
+     * CRC-32, without being read; the other entries are compared while they are read. Defaults to {@code false}.
+     *
+     * @see #setExtractionIndex(File)
+     * @since 5.0.0
+     */
+    public void setSkipUnchangedFiles(final boolean skipUnchangedFiles) {
+        this.skipUnchangedFiles = skipUnchangedFiles;
+    }
+
+    /**
+     * @since 5.0.0
+     */
+    public File getExtractionIndex() {
+        return extractionIndex;
+    }
+
+    /**
+     * Sets the file recording the size, modification time and CRC-32 of the files extracted from zip archives
+     * when {@link #setSkipUnchangedFiles(boolean) skipping unchanged files}. The files not modified since the
+     * previous extraction are then compared with their entry without being read.
+     *
+     * @param extractionIndex the index file, written after each extraction, or {@code null} for none
+     * @since 5.0.0
+     */
+    public void setExtractionIndex(final File extractionIndex) {
+        this.extractionIndex = extractionIndex;
+    }
+
     protected void extractFile(
             final File srcF,
             final File dir,
@@ -257,30 +445,79 @@ protected void extractFile(
             String symlinkDestination,
             final FileMapper[] fileMappers)
             throws IOException, ArchiverException {
+        extractFile(
+                srcF,
+                dir,
+                compressedInputStream,
+                entryName,
+                entryDate,
+                isDirectory,
+                mode,
+                symlinkDestination,
+                fileMappers,
+                -1,
+                -1);
+    }
+
+    /**
+     * Extracts an entry whose size and CRC-32 may be known, to skip it if the existing file is unchanged.
+     *
+     * @param size the size of the entry, or {@code -1} if unknown
+     * @param crc the CRC-32 of the entry, or {@code -1} if unknown
+     * @since 5.0.0
+     */
+    protected void extractFile(
+            final File srcF,
+            final File dir,
+            final InputStream compressedInputStream,
+            String entryName,
+            final Date entryDate,
+            final boolean isDirectory,
+            final Integer mode,
+            String symlinkDestination,
+            final FileMapper[] fileMappers,
+            final long size,
+            final long crc)
+            throws IOException, ArchiverException {
         if (fileMappers != null) {
             for (final FileMapper fileMapper : fileMappers) {
                 entryName = fileMapper.getMappedFileName(entryName);
             }
         }
 
-        // Hmm. Symlinks re-evaluate back to the original file here. Unsure if this is a good thing...
-        final File targetFileName = FileUtils.resolveFile(dir, entryName);
-
-        // Make sure that the resolved path of the extracted file doesn't escape the destination directory
-        // getCanonicalFile().toPath() is used instead of getCanonicalPath() (returns String),
-        // because "/opt/directory".startsWith("/opt/dir") would return false negative.
-        Path canonicalDirPath = dir.getCanonicalFile().toPath();
-        Path canonicalDestPath = targetFileName.getCanonicalFile().toPath();
+        // Make sure that the path of the extracted file doesn't escape the destination directory.
+        // The paths are compared instead of strings, because "/opt/directory".startsWith("/opt/dir") is true.
+        final Path canonicalDirPath = canonicalDirectory(dir);
+        final Path targetPath;
+        try {
+            // as FileUtils.resolveFile did, both separators are accepted whatever the platform
+            targetPath = canonicalDirPath.resolve(entryName.replace('\\', '/')).normalize();
+        } catch (final InvalidPathException ex) {
+            throw new ArchiverException("Invalid entry name (" + entryName + ")", ex);
+        }
 
-        if (!canonicalDestPath.startsWith(canonicalDirPath)) {
+        if (!targetPath.startsWith(canonicalDirPath)) {
             throw new ArchiverException("Entry is outside of the target directory (" + entryName + ")");
         }
 
-        // don't allow override target symlink by standard file
-        if (StringUtils.isEmpty(symlinkDestination) && Files.isSymbolicLink(canonicalDestPath)) {
-            throw new ArchiverException("Entry is outside of the target directory (" + entryName + ")");
+        // A previous entry may have created a symbolic link the entry would be written through. The link may be
+        // reached by another name on a case-insensitive or normalizing file system, so once a link has been
+        // created the path of every entry is resolved
+        if (symlinkCreated) {
+            final Path canonicalDestPath = targetPath.toFile().getCanonicalFile().toPath();
+
+            if (!canonicalDestPath.startsWith(canonicalDirPath)) {
+                throw new ArchiverException("Entry is outside of the target directory (" + entryName + ")");
+            }
+
+            // don't allow override target symlink by standard file
+            if (StringUtils.isEmpty(symlinkDestination) && Files.isSymbolicLink(canonicalDestPath)) {
+                throw new ArchiverException("Entry is outside of the target directory (" + entryName + ")");
+            }
         }
 
+        final File targetFileName = targetPath.toFile();
+
         try {
             if (!shouldExtractEntry(dir, targetFileName, entryName, entryDate)) {
                 return;
@@ -289,17 +526,32 @@ protected void extractFile(
             // create intermediary directories - sometimes zip don't add them
             final File dirF = targetFileName.getParentFile();
             if (dirF != null) {
-                dirF.mkdirs();
+                createdDirectories.mkdirs(dirF);
             }
 
             if (!StringUtils.isEmpty(symlinkDestination)) {
                 SymlinkUtils.createSymbolicLink(targetFileName, new File(symlinkDestination));
+                symlinkCreated = true;
             } else if (isDirectory) {
-                targetFileName.mkdirs();
+                createdDirectories.mkdirs(targetFileName);
+            } else if (unchangedFiles != null) {
+                final String name = canonicalDirPath.relativize(targetPath).toString().replace('\\', '/');
+                // a file that already has the content of the entry is not written, only its metadata is applied
+                unchangedFiles.copyIfChanged(compressedInputStream, targetPath, name, size, crc);
             } else {
                 Files.copy(compressedInputStream, targetFileName.toPath(), REPLACE_EXISTING);
             }
 
+            final MetadataJournal journal = metadataJournal;
+            if (journal != null && StringUtils.isEmpty(symlinkDestination)) {
+                journal.add(
+                        targetPath,
+                        entryDate.getTime(),
+                        !isIgnorePermissions() && mode != null && !isDirectory ? mode : MetadataJournal.NO_MODE,
+                        isDirectory);
+                return;
+            }
+
             targetFileName.setLastModified(entryDate.getTime());
 
             if (!isIgnorePermissions() && mode != null && !isDirectory) {
@@ -310,6 +562,18 @@ protected void extractFile(
         }
     }
 
+    /**
+     * Returns the canonical path of a destination directory, resolving it only once per extraction.
+     */
+    private Path canonicalDirectory(final File dir) throws IOException {
+        Path canonicalDirPath = canonicalDirectories.get(dir);
+        if (canonicalDirPath == null) {
+            canonicalDirPath = dir.getCanonicalFile().toPath();
+            canonicalDirectories.put(dir, canonicalDirPath);
+        }
+        return canonicalDirPath;
+    }
+
     /**
      * Counter for casing message emitted, visible for testing.
      */
@@ -344,7 +608,8 @@ protected boolean shouldExtractEntry(File targetDirectory, File targetFileName,
         String canonicalDestPath = targetFileName.getCanonicalPath();
         String suffix = (entryIsDirectory ? "/" : "");
         String relativeCanonicalDestPath =
-                canonicalDestPath.replace(targetDirectory.getCanonicalPath() + File.separatorChar, "") + suffix;
+                canonicalDestPath.replace(canonicalDirectory(targetDirectory).toString() + File.separatorChar, "")
+                        + suffix;
         boolean fileOnDiskIsOlderThanEntry = targetFileName.lastModified() < entryDate.getTime();
         boolean differentCasing =
                 !normalizedFileSeparator(entryName).equals(normalizedFileSeparator(relativeCanonicalDestPath));
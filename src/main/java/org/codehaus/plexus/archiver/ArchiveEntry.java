@@ -58,6 +58,8 @@ public class ArchiveEntry {
 
     private final boolean addSynchronously;
 
+    private File contentFile;
+
     /**
      * @param name the filename as it will appear in the archive. This is platform-specific
      * normalized with File.separatorChar
@@ -130,6 +132,21 @@ public InputStream getInputStream() throws IOException {
         return resource.getContents();
     }
 
+    /**
+     * Returns the file whose content is the content of this entry, without any transformation, if known.
+     * Archivers may then read the file directly instead of using {@link #getInputStream()}.
+     *
+     * @return the file, or {@code null} if the content of this entry is not known to be the one of a file
+     * @since 5.0.0
+     */
+    public File getContentFile() {
+        return contentFile;
+    }
+
+    void setContentFile(File contentFile) {
+        this.contentFile = contentFile;
+    }
+
     /**
      * @return FILE or DIRECTORY
      */
@@ -197,7 +214,11 @@ public static ArchiveEntry createFileEntry(
             type = FILE; // File flag was there already. This is a bit of a mess !
         }
 
-        return new ArchiveEntry(target, res, type, permissions, null, defaultDirectoryPermissions);
+        ArchiveEntry entry = new ArchiveEntry(target, res, type, permissions, null, defaultDirectoryPermissions);
+        if (type == FILE) {
+            entry.setContentFile(file);
+        }
+        return entry;
     }
 
     public static ArchiveEntry createDirectoryEntry(
@@ -0,0 +1,190 @@
+/*
+ * Copyright The Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.plexus.archiver.util.ArchiveEntryUtils;
+
+/**
+ * The modification times and modes of the extracted files, recorded while extracting and applied once
+ * all the files are written.
+ * <p>
+ * The files are updated in the order of their paths, so that the files of a directory are updated
+ * together, by several threads. The directories are updated last, so that their modification times are
+ * not changed by the creation of their files. This class is thread safe.</p>
+ */
+final class MetadataJournal {
+
+    /**
+     * The mode of the entries whose permissions are not set.
+     */
+    static final int NO_MODE = -1;
+
+    /**
+     * The number of entries updated at once by a thread.
+     */
+    private static final int CHUNK_SIZE = 256;
+
+    private Path[] paths = new Path[64];
+
+    private long[] times = new long[64];
+
+    private int[] modes = new int[64];
+
+    private final BitSet directories = new BitSet();
+
+    private int size;
+
+    synchronized void add(Path path, long time, int mode, boolean directory) {
+        if (size == paths.length) {
+            paths = Arrays.copyOf(paths, size * 2);
+            times = Arrays.copyOf(times, size * 2);
+            modes = Arrays.copyOf(modes, size * 2);
+        }
+        paths[size] = path;
+        times[size] = time;
+        modes[size] = mode;
+        directories.set(size, directory);
+        size++;
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Updates the files, then the directories. Only the last entry recorded for a path is applied.
+     *
+     * @param threads the maximum number of threads updating the files
+     */
+    synchronized void apply(int threads) throws ArchiverException {
+        final Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        // stable, so the entries of a path stay in the order they were recorded
+        Arrays.sort(order, (i, j) -> paths[i].compareTo(paths[j]));
+
+        final List<Integer> files = new ArrayList<>(size);
+        final List<Integer> dirs = new ArrayList<>();
+        for (int k = 0; k < order.length; k++) {
+            final int i = order[k];
+            if (k + 1 < order.length && paths[i].equals(paths[order[k + 1]])) {
+                continue;
+            }
+            (directories.get(i) ? dirs : files).add(i);
+        }
+
+        applyInParallel(files, threads);
+        applyInParallel(dirs, threads);
+    }
+
+    private void applyInParallel(final List<Integer> entries, final int threads) throws ArchiverException {
+        final int chunks = (entries.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (chunks <= 1 || threads <= 1) {
+            applyChunks(entries, new AtomicInteger(), chunks);
+            return;
+        }
+        final AtomicInteger nextChunk = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, chunks));
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < Math.min(threads, chunks); t++) {
+                futures.add(executor.submit(() -> {
+                    applyChunks(entries, nextChunk, chunks);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ArchiverException("Interrupted while setting file attributes", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ArchiverException) {
+                throw (ArchiverException) e.getCause();
+            }
+            throw new ArchiverException("Failed setting file attributes", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void applyChunks(final List<Integer> entries, final AtomicInteger nextChunk, final int chunks) {
+        int chunk;
+        while ((chunk = nextChunk.getAndIncrement()) < chunks) {
+            final int end = Math.min(entries.size(), (chunk + 1) * CHUNK_SIZE);
+            for (int k = chunk * CHUNK_SIZE; k < end; k++) {
+                final int i = entries.get(k);
+                applyEntry(paths[i], times[i], modes[i]);
+            }
+        }
+    }
+
+    /**
+     * Sets the modification time and the mode of a file through a single attribute view.
+     */
+    private static void applyEntry(final Path path, final long time, final int mode) {
+        try {
+            final PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class);
+            if (view != null) {
+                view.setTimes(FileTime.fromMillis(time), null, null);
+                if (mode != NO_MODE) {
+                    view.setPermissions(permissions(mode));
+                }
+            } else {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(time));
+                if (mode != NO_MODE) {
+                    ArchiveEntryUtils.chmod(path.toFile(), mode);
+                }
+            }
+        } catch (IOException e) {
+            throw new ArchiverException("Failed setting file attributes", e);
+        }
+    }
+
+    /**
+     * Converts the permission bits of a Unix mode, {@code rwxrwxrwx} from the highest bit.
+     */
+    static Set<PosixFilePermission> permissions(final int mode) {
+        final Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        final PosixFilePermission[] values = PosixFilePermission.values();
+        for (int i = 0; i < values.length; i++) {
+            if ((mode & (1 << (values.length - 1 - i))) != 0) {
+                permissions.add(values[i]);
+            }
+        }
+        return permissions;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright The Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Writes the extracted files only if their content differs from the existing files.
+ * <p>
+ * When the CRC-32 of an entry is known, as in zip archives, an existing file of the same size is kept if
+ * it has the same CRC-32, without reading the entry. The CRC-32 of the existing file is taken from the
+ * index written by the previous extraction if the file was not modified since, and computed otherwise.
+ * When it is unknown, as in tar archives, the entry is compared with the existing file while it is read,
+ * and the file is only replaced from the first difference.</p>
+ */
+final class UnchangedFiles {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The files of the previous extraction, by path relative to the destination directory.
+     */
+    private final Map<String, IndexEntry> previous = new ConcurrentHashMap<>();
+
+    /**
+     * The files of the current extraction whose CRC-32 is known.
+     */
+    private final Map<String, Long> current = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the comparison of the current extraction, reading the index of the previous one.
+     *
+     * @param index the index file, or {@code null}
+     */
+    UnchangedFiles(Path index) throws IOException {
+        if (index != null && Files.isRegularFile(index)) {
+            final Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(index)) {
+                properties.load(in);
+            }
+            for (String name : properties.stringPropertyNames()) {
+                final IndexEntry entry = IndexEntry.parse(properties.getProperty(name));
+                if (entry != null) {
+                    previous.put(name, entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the content of an entry to the target file, unless the file already has this content.
+     *
+     * @param name the path of the file, relative to the destination directory
+     * @param size the size of the entry, or {@code -1} if unknown
+     * @param crc the CRC-32 of the entry, or {@code -1} if unknown
+     * @return {@code true} if the file was written
+     */
+    boolean copyIfChanged(InputStream in, Path target, String name, long size, long crc) throws IOException {
+        final boolean written = copyIfDifferent(in, target, name, size, crc);
+        if (crc >= 0) {
+            current.put(name, crc);
+        }
+        return written;
+    }
+
+    private boolean copyIfDifferent(InputStream in, Path target, String name, long size, long crc)
+            throws IOException {
+        if (!Files.isRegularFile(target, LinkOption.NOFOLLOW_LINKS)) {
+            Files.copy(in, target, REPLACE_EXISTING);
+            return true;
+        }
+        final long length = Files.size(target);
+        if (size >= 0 && length != size) {
+            Files.copy(in, target, REPLACE_EXISTING);
+            return true;
+        }
+        if (crc < 0) {
+            return compareAndCopy(in, target);
+        }
+        final IndexEntry indexed = previous.get(name);
+        if (indexed != null
+                && indexed.size == length
+                && indexed.lastModified == Files.getLastModifiedTime(target).toMillis()
+                && indexed.crc == crc) {
+            return false;
+        }
+        if (crc(target) == crc) {
+            return false;
+        }
+        Files.copy(in, target, REPLACE_EXISTING);
+        return true;
+    }
+
+    /**
+     * Reads the entry along with the existing file. On the first difference, the identical beginning of the
+     * file, the rest of the entry and the file are written to a new file replacing the existing one.
+     */
+    private static boolean compareAndCopy(InputStream in, Path target) throws IOException {
+        final byte[] entryBuffer = new byte[BUFFER_SIZE];
+        final ByteBuffer fileBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel file = FileChannel.open(target, StandardOpenOption.READ)) {
+            long position = 0;
+            int read;
+            while ((read = in.readNBytes(entryBuffer, 0, entryBuffer.length)) > 0) {
+                fileBuffer.clear().limit(read);
+                while (fileBuffer.hasRemaining()) {
+                    if (file.read(fileBuffer, position + fileBuffer.position()) <= 0) {
+                        break;
+                    }
+                }
+                if (fileBuffer.position() != read
+                        || !ByteBuffer.wrap(entryBuffer, 0, read).equals(fileBuffer.flip())) {
+                    replace(in, target, file, position, entryBuffer, read);
+                    return true;
+                }
+                position += read;
+            }
+            if (position != file.size()) {
+                replace(in, target, file, position, entryBuffer, 0);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static void replace(
+            InputStream in, Path target, FileChannel file, long position, byte[] buffer, int length)
+            throws IOException {
+        // created like the files written by Files.copy, with the default permissions
+        final Path temporary = target.resolveSibling(
+                "." + target.getFileName() + "." + Long.toHexString(System.nanoTime()) + ".tmp");
+        try {
+            try (FileChannel out =
+                    FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long transferred = 0;
+                while (transferred < position) {
+                    transferred += file.transferTo(transferred, position - transferred, out);
+                }
+                final OutputStream os = Channels.newOutputStream(out);
+                os.write(buffer, 0, length);
+                in.transferTo(os);
+            }
+            Files.move(temporary, target, REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static long crc(Path file) throws IOException {
+        final CRC32 crc = new CRC32();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the index of the files extracted with a known CRC-32, with their current size and modification
+     * time.
+     *
+     * @param destination the directory the files are extracted to
+     */
+    void store(Path index, Path destination) throws IOException {
+        final Map<String, String> entries = new TreeMap<>();
+        for (Map.Entry<String, Long> entry : current.entrySet()) {
+            final Path file = destination.resolve(entry.getKey());
+            if (Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+                final IndexEntry extracted = new IndexEntry(
+                        Files.size(file), Files.getLastModifiedTime(file).toMillis(), entry.getValue());
+                entries.put(entry.getKey(), extracted.toString());
+            }
+        }
+        final Properties properties = new Properties();
+        properties.putAll(entries);
+        final Path parent = index.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (OutputStream out = Files.newOutputStream(index)) {
+            properties.store(out, null);
+        }
+    }
+
+    private static final class IndexEntry {
+
+        final long size;
+
+        final long lastModified;
+
+        final long crc;
+
+        IndexEntry(long size, long lastModified, long crc) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.crc = crc;
+        }
+
+        static IndexEntry parse(String value) {
+            final String[] fields = value.split(",");
+            if (fields.length != 3) {
+                return null;
+            }
+            try {
+                return new IndexEntry(
+                        Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2], 16));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return size + "," + lastModified + "," + Long.toHexString(crc);
+        }
+    }
+}
@@ -31,6 +31,7 @@
 import org.codehaus.plexus.archiver.ResourceIterator;
 import org.codehaus.plexus.archiver.exceptions.EmptyArchiveException;
 import org.codehaus.plexus.archiver.util.ArchiveEntryUtils;
+import org.codehaus.plexus.archiver.util.CreatedDirectories;
 import org.codehaus.plexus.archiver.util.ResourceUtils;
 import org.codehaus.plexus.components.io.attributes.SymlinkUtils;
 import org.codehaus.plexus.components.io.functions.SymlinkDestinationSupplier;
@@ -43,6 +44,7 @@
 public class DirectoryArchiver extends AbstractArchiver {
 
     private final List<Runnable> directoryChmods = new ArrayList<>();
+    private final CreatedDirectories createdDirectories = new CreatedDirectories();
     private long filesCopied;
 
     /**
@@ -79,6 +81,7 @@ public void execute() throws ArchiverException, IOException {
 
         getLogger().info("Copying files to {}", destDirectory.getAbsolutePath());
 
+        createdDirectories.clear();
         try {
             while (iter.hasNext()) {
                 final ArchiveEntry f = iter.next();
@@ -158,16 +161,19 @@ protected void copyFile(final ArchiveEntry entry, final String vPath) throws Arc
             filesCopied++;
             setFileModes(entry, outFile, inLastModified);
         } else { // file is a directory
-            if (outFile.exists()) {
-                if (!outFile.isDirectory()) {
-                    // should we just delete the file and replace it with a directory?
-                    // throw an exception, let the user delete the file manually.
-                    throw new ArchiverException("Expected directory and found file at copy destination of "
-                            + in.getName() + " to " + outFile);
+            if (!createdDirectories.contains(outFile)) {
+                if (outFile.exists()) {
+                    if (!outFile.isDirectory()) {
+                        // should we just delete the file and replace it with a directory?
+                        // throw an exception, let the user delete the file manually.
+                        throw new ArchiverException("Expected directory and found file at copy destination of "
+                                + in.getName() + " to " + outFile);
+                    }
+                } else if (!outFile.mkdirs()) {
+                    // Failure, unable to create specified directory for some unknown reason.
+                    throw new ArchiverException("Unable to create directory or parent directory of " + outFile);
                 }
-            } else if (!outFile.mkdirs()) {
-                // Failure, unable to create specified directory for some unknown reason.
-                throw new ArchiverException("Unable to create directory or parent directory of " + outFile);
+                createdDirectories.add(outFile);
             }
 
             directoryChmods.add(() -> {
@@ -180,13 +186,11 @@ protected void copyFile(final ArchiveEntry entry, final String vPath) throws Arc
         }
     }
 
-    private static void makeParentDirectories(File file) {
-        if (!file.getParentFile().exists()) {
-            // create the parent directory...
-            if (!file.getParentFile().mkdirs()) {
-                // Failure, unable to create specified directory for some unknown reason.
-                throw new ArchiverException("Unable to create directory or parent directory of " + file);
-            }
+    private void makeParentDirectories(File file) {
+        // create the parent directory, unless already created or found for a previous file
+        if (!createdDirectories.mkdirs(file.getParentFile())) {
+            // Failure, unable to create specified directory for some unknown reason.
+            throw new ArchiverException("Unable to create directory or parent directory of " + file);
         }
     }
 
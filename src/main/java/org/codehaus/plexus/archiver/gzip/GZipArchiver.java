@@ -31,6 +31,16 @@ public class GZipArchiver extends AbstractArchiver {
 
     final GZipCompressor compressor = new GZipCompressor();
 
+    /**
+     * Set the number of threads compressing the file; default=1.
+     *
+     * @see GZipCompressor#setThreads(int)
+     * @since 5.0.0
+     */
+    public void setThreads(int threads) {
+        compressor.setThreads(threads);
+    }
+
     @Override
     protected void execute() throws ArchiverException, IOException {
         if (!checkForced()) {
@@ -30,13 +30,37 @@ public class GZipCompressor extends Compressor {
 
     private OutputStream zOut;
 
+    private int threads = 1;
+
+    /**
+     * Set the number of threads compressing the file; default=1. With several threads, the file is compressed
+     * by a {@link ParallelGZipOutputStream}.
+     *
+     * @since 5.0.0
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * @since 5.0.0
+     */
+    public int getThreads() {
+        return threads;
+    }
+
     /**
      * perform the GZip compression operation.
      */
     @Override
     public void compress() throws ArchiverException {
         try {
-            zOut = bufferedOutputStream(new GZIPOutputStream(fileOutputStream(getDestFile())));
+            final OutputStream out = fileOutputStream(getDestFile());
+            zOut = bufferedOutputStream(
+                    threads > 1 ? new ParallelGZipOutputStream(out, threads) : new GZIPOutputStream(out));
             compress(getSource(), zOut);
         } catch (IOException ioe) {
             String msg = "Problem creating gzip " + ioe.getMessage();
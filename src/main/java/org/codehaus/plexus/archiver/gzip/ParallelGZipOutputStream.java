@@ -0,0 +1,310 @@
+/*
+ * Copyright The Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.gzip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a single gzip member, whose data is deflated by several threads, in the manner of {@code pigz}.
+ * <p>
+ * The data is split in blocks, deflated in parallel with the end of the previous block as preset dictionary,
+ * so that the compression ratio stays close to the one of a single deflater. Each block but the last ends with
+ * a sync flush, so that the deflated blocks are concatenated into a single deflate stream. The CRC-32 of the
+ * blocks are computed in parallel as well, and combined. At most twice as many blocks as threads are kept in
+ * memory.</p>
+ *
+ * @since 5.0.0
+ */
+public class ParallelGZipOutputStream extends OutputStream {
+
+    /**
+     * The default size of the blocks deflated by each thread.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    /**
+     * The size of the deflate window, the largest useful dictionary.
+     */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final OutputStream out;
+
+    private final int level;
+
+    private final ExecutorService executor;
+
+    private final int maxPending;
+
+    private final Deque<Future<Block>> pending = new ArrayDeque<>();
+
+    private final int blockSize;
+
+    private byte[] block;
+
+    private int blockLength;
+
+    private byte[] dictionary;
+
+    private long crc;
+
+    private long size;
+
+    private boolean closed;
+
+    /**
+     * Creates a stream with the default block size and compression level.
+     *
+     * @param threads the number of threads deflating the blocks
+     */
+    public ParallelGZipOutputStream(OutputStream out, int threads) throws IOException {
+        this(out, threads, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param threads the number of threads deflating the blocks
+     * @param blockSize the size of the blocks deflated by each thread, at least 32 KiB for the best ratio
+     * @param level the compression level, from 0 to 9, or -1 for the default
+     */
+    public ParallelGZipOutputStream(OutputStream out, int threads, int blockSize, int level) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        this.out = out;
+        this.level = level;
+        this.blockSize = blockSize;
+        this.block = new byte[blockSize];
+        this.maxPending = 2 * threads;
+        out.write(HEADER);
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "plexus-archiver-gzip");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (len > 0) {
+            final int n = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == blockSize) {
+                submit(false);
+            }
+        }
+    }
+
+    /**
+     * Deflates the current block on the pool, after writing the oldest blocks if too many are pending.
+     */
+    private void submit(final boolean last) throws IOException {
+        while (pending.size() >= maxPending) {
+            writeBlock(pending.poll());
+        }
+        final byte[] data = block;
+        final int length = blockLength;
+        final byte[] preset = dictionary;
+        pending.add(executor.submit(() -> deflate(data, length, preset, level, last)));
+        if (!last) {
+            dictionary = Arrays.copyOfRange(data, Math.max(0, length - DICTIONARY_SIZE), length);
+            block = new byte[blockSize];
+            blockLength = 0;
+        }
+    }
+
+    private void writeBlock(Future<Block> future) throws IOException {
+        final Block deflated;
+        try {
+            deflated = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed compressing", e.getCause());
+        }
+        deflated.data.writeTo(out);
+        crc = combine(crc, deflated.crc, deflated.length);
+        size += deflated.length;
+    }
+
+    private static Block deflate(byte[] data, int length, byte[] dictionary, int level, boolean last) {
+        final Deflater deflater = new Deflater(level, true);
+        final ByteArrayOutputStream deflated = new ByteArrayOutputStream(length / 2 + 64);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(data, 0, length);
+            final byte[] buffer = new byte[64 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflated.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int n;
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    deflated.write(buffer, 0, n);
+                } while (n == buffer.length);
+            }
+        } finally {
+            deflater.end();
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return new Block(deflated, crc.getValue(), length);
+    }
+
+    /**
+     * Does not deflate the current block, which would make the blocks smaller than the block size.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Writes the last block and the gzip trailer, and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (OutputStream o = out) {
+            submit(true);
+            while (!pending.isEmpty()) {
+                writeBlock(pending.poll());
+            }
+            final byte[] trailer = new byte[8];
+            writeInt(trailer, 0, crc);
+            writeInt(trailer, 4, size);
+            out.write(trailer);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void writeInt(byte[] b, int off, long value) {
+        for (int i = 0; i < 4; i++) {
+            b[off + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    /**
+     * Returns the CRC-32 of two consecutive sequences from their CRC-32, as {@code crc32_combine} of zlib.
+     */
+    static long combine(long crc1, long crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+        final long[] even = new long[32];
+        final long[] odd = new long[32];
+        // the operator for one zero bit
+        odd[0] = 0xedb88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        // the operators for two and four zero bits
+        square(even, odd);
+        square(odd, even);
+
+        // applies length2 zero bytes to crc1
+        long length = length2;
+        long result = crc1;
+        do {
+            square(even, odd);
+            if ((length & 1) != 0) {
+                result = times(even, result);
+            }
+            length >>= 1;
+            if (length == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((length & 1) != 0) {
+                result = times(odd, result);
+            }
+            length >>= 1;
+        } while (length != 0);
+        return result ^ crc2;
+    }
+
+    private static long times(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+
+    private static final class Block {
+
+        final ByteArrayOutputStream data;
+
+        final long crc;
+
+        final int length;
+
+        Block(ByteArrayOutputStream data, long crc, int length) {
+            this.data = data;
+            this.crc = crc;
+            this.length = length;
+        }
+    }
+}
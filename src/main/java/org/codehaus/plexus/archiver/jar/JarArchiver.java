@@ -338,8 +338,7 @@ protected boolean createEmptyZip(File zipFile) throws ArchiverException {
             } else {
                 zipArchiveOutputStream.setMethod(ZipArchiveOutputStream.STORED);
             }
-            ConcurrentJarCreator ps = new ConcurrentJarCreator(
-                    isRecompressAddedZips(), Runtime.getRuntime().availableProcessors());
+            ConcurrentJarCreator ps = createConcurrentJarCreator();
             initZipOutputStream(ps);
             finalizeZipOutputStream(ps);
         } catch (IOException ioe) {
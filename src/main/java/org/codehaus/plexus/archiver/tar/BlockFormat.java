@@ -0,0 +1,375 @@
+/*
+ * Copyright The Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.tar;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.codehaus.plexus.archiver.xz.ParallelXZOutputStream;
+import org.codehaus.plexus.archiver.xz.XZFormat;
+import org.codehaus.plexus.archiver.zstd.ZstdCompressor;
+
+/**
+ * The formats of the files compressed in independent blocks, which stock {@code gzip}, {@code xz} and
+ * {@code zstd} read as any other file.
+ * <ul>
+ * <li>gzip - each block is a gzip member, whose header has an extra field with the sizes of the block, in the
+ * manner of BGZF. The seek table is read from the headers of the members.</li>
+ * <li>zstd - each block is a zstd frame, and the seek table is written at the end of the file in a skippable
+ * frame, as specified by the zstd seekable format.</li>
+ * <li>xz - each block is an xz block, and the seek table is the index at the end of the xz stream. The blocks
+ * are written by {@link ParallelXZOutputStream}, and {@code xz -T} writes such files as well. A stream of a
+ * single block is not read in blocks.</li>
+ * </ul>
+ */
+enum BlockFormat {
+    GZIP {
+        @Override
+        BlockIndex readIndex(FileChannel file) throws IOException {
+            return readGzipIndex(file);
+        }
+
+        @Override
+        InputStream decompressing(InputStream in) throws IOException {
+            return new GZIPInputStream(in);
+        }
+    },
+    ZSTD {
+        @Override
+        BlockIndex readIndex(FileChannel file) throws IOException {
+            return readZstdIndex(file);
+        }
+
+        @Override
+        InputStream decompressing(InputStream in) throws IOException {
+            return new ZstdCompressorInputStream(in);
+        }
+    },
+    XZ {
+        @Override
+        BlockIndex readIndex(FileChannel file) throws IOException {
+            return readXzIndex(file);
+        }
+
+        @Override
+        InputStream decompressing(InputStream in) throws IOException {
+            return new XZCompressorInputStream(in);
+        }
+
+        /**
+         * Reads a block, and decompresses it as an xz stream of a single block: the header of the file, the
+         * block and an index of the block.
+         */
+        @Override
+        byte[] readBlock(FileChannel file, BlockIndex index, int block) throws IOException {
+            final ByteBuffer header = ByteBuffer.allocate(XZFormat.HEADER_SIZE);
+            final ByteBuffer compressed = ByteBuffer.allocate(index.getCompressedSize(block));
+            if (!readFully(file, header, 0) || !readFully(file, compressed, index.getCompressedOffset(block))) {
+                throw new EOFException("Truncated compressed file");
+            }
+            final byte[] streamFlags = Arrays.copyOfRange(header.array(), 6, 8);
+            final byte[] blockIndex = XZFormat.index(
+                    new long[] {index.getRecordedSize(block)}, new long[] {index.getUncompressedSize(block)}, 1);
+            final ByteBuffer stream = ByteBuffer.allocate(
+                    XZFormat.HEADER_SIZE + compressed.capacity() + blockIndex.length + XZFormat.FOOTER_SIZE);
+            stream.put(header.array()).put(compressed.array()).put(blockIndex);
+            stream.put(XZFormat.footer(streamFlags, blockIndex.length));
+            return decompress(stream.array(), index.getUncompressedSize(block));
+        }
+    };
+
+    private static final int GZIP_FEXTRA = 4;
+
+    private static final int GZIP_OS_UNKNOWN = 255;
+
+    /**
+     * The identifier of the extra field with the uncompressed size and the compressed size of the member.
+     */
+    private static final byte GZIP_SI1 = 'P';
+
+    private static final byte GZIP_SI2 = 'B';
+
+    private static final int GZIP_HEADER_SIZE = 10 + 2 + 4 + 8;
+
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    private static final int ZSTD_SKIPPABLE_MAGIC = 0x184D2A5E;
+
+    private static final int ZSTD_SEEKABLE_MAGIC = 0x8F92EAB1;
+
+    private static final int ZSTD_SEEK_TABLE_FOOTER_SIZE = 9;
+
+    private static final int ZSTD_CHECKSUM_FLAG = 0x80;
+
+    private static final int ZSTD_RESERVED_FLAGS = 0x7C;
+
+    /**
+     * The largest uncompressed block read on its own. The files with larger blocks are read sequentially, so
+     * that the blocks decompressed in memory stay small.
+     */
+    static final long MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The largest compressed block read on its own: the largest block, and the overhead of incompressible data.
+     */
+    private static final long MAX_COMPRESSED_BLOCK_SIZE = MAX_BLOCK_SIZE + MAX_BLOCK_SIZE / 16;
+
+    /**
+     * Returns the compressor of the gzip members, whose extra field records the sizes of the block.
+     */
+    static BlockedOutputStream.Compressor gzipMembers() {
+        return BlockFormat::gzip;
+    }
+
+    /**
+     * Returns the compressor of the zstd frames, followed by the seek table of the zstd seekable format.
+     *
+     * @param zstdCompressor the options of the frames
+     */
+    static BlockedOutputStream.Compressor zstdFrames(ZstdCompressor zstdCompressor) {
+        return new BlockedOutputStream.Compressor() {
+            @Override
+            public byte[] compress(byte[] data, int length) throws IOException {
+                final ByteArrayOutputStream frame = new ByteArrayOutputStream(length / 2 + 64);
+                try (OutputStream out = zstdCompressor.newOutputStream(frame)) {
+                    out.write(data, 0, length);
+                }
+                return frame.toByteArray();
+            }
+
+            @Override
+            public void finish(OutputStream out, long[] compressedSizes, long[] uncompressedSizes, int size)
+                    throws IOException {
+                final int tableSize = size * 8 + ZSTD_SEEK_TABLE_FOOTER_SIZE;
+                final ByteBuffer frame = ByteBuffer.allocate(8 + tableSize).order(ByteOrder.LITTLE_ENDIAN);
+                frame.putInt(ZSTD_SKIPPABLE_MAGIC).putInt(tableSize);
+                for (int i = 0; i < size; i++) {
+                    frame.putInt((int) compressedSizes[i]).putInt((int) uncompressedSizes[i]);
+                }
+                frame.putInt(size).put((byte) 0).putInt(ZSTD_SEEKABLE_MAGIC);
+                out.write(frame.array());
+            }
+        };
+    }
+
+    private static byte[] gzip(byte[] data, int length) throws IOException {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        final ByteArrayOutputStream deflated = new ByteArrayOutputStream(length / 2 + 64);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            final byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                deflated.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+
+        final int memberSize = GZIP_HEADER_SIZE + deflated.size() + GZIP_TRAILER_SIZE;
+        final ByteBuffer member = ByteBuffer.allocate(memberSize).order(ByteOrder.LITTLE_ENDIAN);
+        member.put((byte) 0x1f).put((byte) 0x8b).put((byte) Deflater.DEFLATED).put((byte) GZIP_FEXTRA);
+        member.putInt(0).put((byte) 0).put((byte) GZIP_OS_UNKNOWN);
+        member.putShort((short) 12).put(GZIP_SI1).put(GZIP_SI2).putShort((short) 8);
+        member.putInt(length).putInt(memberSize);
+        member.put(deflated.toByteArray());
+        member.putInt((int) crc.getValue()).putInt(length);
+        return member.array();
+    }
+
+    /**
+     * Decompresses a block compressed on its own.
+     */
+    byte[] decompress(byte[] block, int uncompressedSize) throws IOException {
+        try (InputStream in = decompressing(new ByteArrayInputStream(block))) {
+            final byte[] data = in.readNBytes(uncompressedSize);
+            if (data.length != uncompressedSize || in.read() != -1) {
+                throw new IOException("Invalid compressed block size");
+            }
+            return data;
+        }
+    }
+
+    /**
+     * Returns a stream decompressing the given stream.
+     */
+    abstract InputStream decompressing(InputStream in) throws IOException;
+
+    /**
+     * Reads the seek table of a file.
+     *
+     * @return the seek table, or {@code null} if the file is not compressed in blocks in this format
+     */
+    abstract BlockIndex readIndex(FileChannel file) throws IOException;
+
+    private static BlockIndex readGzipIndex(FileChannel file) throws IOException {
+        final long fileSize = file.size();
+        long[] compressedSizes = new long[64];
+        long[] uncompressedSizes = new long[64];
+        int size = 0;
+        final ByteBuffer header = ByteBuffer.allocate(GZIP_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (long offset = 0; offset < fileSize; offset += compressedSizes[size++]) {
+            if (!readFully(file, header.clear(), offset)) {
+                return null;
+            }
+            header.flip();
+            if (header.get() != 0x1f
+                    || header.get() != (byte) 0x8b
+                    || header.get() != Deflater.DEFLATED
+                    || header.get() != GZIP_FEXTRA
+                    || header.getShort(10) != 12
+                    || header.get(12) != GZIP_SI1
+                    || header.get(13) != GZIP_SI2
+                    || header.getShort(14) != 8) {
+                return null;
+            }
+            final long uncompressedSize = Integer.toUnsignedLong(header.getInt(16));
+            final long compressedSize = Integer.toUnsignedLong(header.getInt(20));
+            if (compressedSize < GZIP_HEADER_SIZE + GZIP_TRAILER_SIZE
+                    || compressedSize > MAX_COMPRESSED_BLOCK_SIZE
+                    || uncompressedSize > MAX_BLOCK_SIZE
+                    || offset + compressedSize > fileSize) {
+                return null;
+            }
+            if (size == compressedSizes.length) {
+                compressedSizes = Arrays.copyOf(compressedSizes, size * 2);
+                uncompressedSizes = Arrays.copyOf(uncompressedSizes, size * 2);
+            }
+            compressedSizes[size] = compressedSize;
+            uncompressedSizes[size] = uncompressedSize;
+        }
+        return size == 0 ? null : BlockIndex.of(compressedSizes, uncompressedSizes, size);
+    }
+
+    private static BlockIndex readZstdIndex(FileChannel file) throws IOException {
+        final long fileSize = file.size();
+        final ByteBuffer footer = ByteBuffer.allocate(ZSTD_SEEK_TABLE_FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (fileSize < 8 + ZSTD_SEEK_TABLE_FOOTER_SIZE
+                || !readFully(file, footer, fileSize - ZSTD_SEEK_TABLE_FOOTER_SIZE)
+                || footer.getInt(5) != ZSTD_SEEKABLE_MAGIC
+                || (footer.get(4) & ZSTD_RESERVED_FLAGS) != 0) {
+            return null;
+        }
+        final long size = Integer.toUnsignedLong(footer.getInt(0));
+        final int entrySize = (footer.get(4) & ZSTD_CHECKSUM_FLAG) != 0 ? 12 : 8;
+        final long tableSize = size * entrySize + ZSTD_SEEK_TABLE_FOOTER_SIZE;
+        final long tableOffset = fileSize - tableSize - 8;
+        if (size == 0 || tableOffset < 0 || tableSize > Integer.MAX_VALUE - 8) {
+            return null;
+        }
+        final ByteBuffer table = ByteBuffer.allocate((int) (tableSize + 8)).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readFully(file, table, tableOffset)
+                || table.getInt(0) != ZSTD_SKIPPABLE_MAGIC
+                || Integer.toUnsignedLong(table.getInt(4)) != tableSize) {
+            return null;
+        }
+        final long[] compressedSizes = new long[(int) size];
+        final long[] uncompressedSizes = new long[(int) size];
+        long compressedSize = 0;
+        for (int i = 0; i < size; i++) {
+            compressedSizes[i] = Integer.toUnsignedLong(table.getInt(8 + i * entrySize));
+            uncompressedSizes[i] = Integer.toUnsignedLong(table.getInt(8 + i * entrySize + 4));
+            if (compressedSizes[i] > MAX_COMPRESSED_BLOCK_SIZE || uncompressedSizes[i] > MAX_BLOCK_SIZE) {
+                return null;
+            }
+            compressedSize += compressedSizes[i];
+        }
+        return compressedSize == tableOffset ? BlockIndex.of(compressedSizes, uncompressedSizes, (int) size) : null;
+    }
+
+    private static BlockIndex readXzIndex(FileChannel file) throws IOException {
+        final long fileSize = file.size();
+        final ByteBuffer header = ByteBuffer.allocate(XZFormat.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        final ByteBuffer footer = ByteBuffer.allocate(XZFormat.FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (fileSize < XZFormat.HEADER_SIZE + XZFormat.FOOTER_SIZE
+                || !readFully(file, header, 0)
+                || !readFully(file, footer, fileSize - XZFormat.FOOTER_SIZE)
+                || !XZFormat.isHeader(header.array(), 0)
+                || !XZFormat.isFooter(footer.array(), 0)
+                || header.getShort(6) != footer.getShort(8)) {
+            return null;
+        }
+        // a file of several streams or with stream padding is not read in blocks
+        final long indexSize = (Integer.toUnsignedLong(footer.getInt(4)) + 1) * 4;
+        final long indexOffset = fileSize - XZFormat.FOOTER_SIZE - indexSize;
+        if (indexOffset < XZFormat.HEADER_SIZE || indexSize > Integer.MAX_VALUE) {
+            return null;
+        }
+        final ByteBuffer index = ByteBuffer.allocate((int) indexSize).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readFully(file, index, indexOffset)
+                || index.get(0) != 0
+                || XZFormat.crc32(index.array(), 0, (int) indexSize - 4)
+                        != Integer.toUnsignedLong(index.getInt((int) indexSize - 4))) {
+            return null;
+        }
+        index.position(1);
+        final long size = XZFormat.readVarint(index);
+        if (size < 2 || size > indexSize / 2) {
+            return null;
+        }
+        final long[] unpaddedSizes = new long[(int) size];
+        final long[] uncompressedSizes = new long[(int) size];
+        for (int i = 0; i < size; i++) {
+            unpaddedSizes[i] = XZFormat.readVarint(index);
+            uncompressedSizes[i] = XZFormat.readVarint(index);
+            if (unpaddedSizes[i] <= 0
+                    || unpaddedSizes[i] > MAX_COMPRESSED_BLOCK_SIZE
+                    || uncompressedSizes[i] < 0
+                    || uncompressedSizes[i] > MAX_BLOCK_SIZE) {
+                return null;
+            }
+        }
+        final BlockIndex blocks =
+                BlockIndex.of(XZFormat.HEADER_SIZE, XZFormat.ALIGNMENT, unpaddedSizes, uncompressedSizes, (int) size);
+        return blocks.getCompressedOffset((int) size) == indexOffset ? blocks : null;
+    }
+
+    /**
+     * Reads a block of the file.
+     */
+    byte[] readBlock(FileChannel file, BlockIndex index, int block) throws IOException {
+        final ByteBuffer compressed = ByteBuffer.allocate(index.getCompressedSize(block));
+        if (!readFully(file, compressed, index.getCompressedOffset(block))) {
+            throw new EOFException("Truncated compressed file");
+        }
+        return decompress(compressed.array(), index.getUncompressedSize(block));
+    }
+
+    private static boolean readFully(FileChannel file, ByteBuffer buffer, long offset) throws IOException {
+        final long start = offset - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer, start + buffer.position()) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
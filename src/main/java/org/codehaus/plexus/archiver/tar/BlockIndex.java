@@ -0,0 +1,112 @@
+/*
+ * Copyright The Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.tar;
+
+import java.util.Arrays;
+
+/**
+ * The seek table of a file compressed in independent blocks: the offsets of the blocks in the compressed
+ * file and in the uncompressed content.
+ */
+final class BlockIndex {
+
+    /**
+     * The offsets of the blocks, followed by the end of the last block.
+     */
+    private final long[] compressedOffsets;
+
+    private final long[] uncompressedOffsets;
+
+    /**
+     * The sizes of the blocks recorded in the seek table, which may not count the padding following them.
+     */
+    private final long[] recordedSizes;
+
+    private BlockIndex(long[] compressedOffsets, long[] uncompressedOffsets, long[] recordedSizes) {
+        this.compressedOffsets = compressedOffsets;
+        this.uncompressedOffsets = uncompressedOffsets;
+        this.recordedSizes = recordedSizes;
+    }
+
+    /**
+     * Creates the index of consecutive blocks, starting at the beginning of the file.
+     */
+    static BlockIndex of(long[] compressedSizes, long[] uncompressedSizes, int size) {
+        return of(0, 1, compressedSizes, uncompressedSizes, size);
+    }
+
+    /**
+     * Creates the index of consecutive blocks, each padded to a multiple of the alignment.
+     *
+     * @param start the offset of the first block
+     * @param recordedSizes the sizes of the blocks without their padding
+     */
+    static BlockIndex of(long start, int alignment, long[] recordedSizes, long[] uncompressedSizes, int size) {
+        final long[] compressedOffsets = new long[size + 1];
+        final long[] uncompressedOffsets = new long[size + 1];
+        compressedOffsets[0] = start;
+        for (int i = 0; i < size; i++) {
+            final long padded = (recordedSizes[i] + alignment - 1) / alignment * alignment;
+            compressedOffsets[i + 1] = compressedOffsets[i] + padded;
+            uncompressedOffsets[i + 1] = uncompressedOffsets[i] + uncompressedSizes[i];
+        }
+        return new BlockIndex(compressedOffsets, uncompressedOffsets, Arrays.copyOf(recordedSizes, size));
+    }
+
+    int size() {
+        return compressedOffsets.length - 1;
+    }
+
+    long getCompressedOffset(int block) {
+        return compressedOffsets[block];
+    }
+
+    int getCompressedSize(int block) {
+        return (int) (compressedOffsets[block + 1] - compressedOffsets[block]);
+    }
+
+    long getRecordedSize(int block) {
+        return recordedSizes[block];
+    }
+
+    long getUncompressedOffset(int block) {
+        return uncompressedOffsets[block];
+    }
+
+    int getUncompressedSize(int block) {
+        return (int) (uncompressedOffsets[block + 1] - uncompressedOffsets[block]);
+    }
+
+    long getUncompressedSize() {
+        return uncompressedOffsets[size()];
+    }
+
+    /**
+     * Returns the block containing the given offset of the uncompressed content.
+     */
+    int find(long position) {
+        final int i = Arrays.binarySearch(uncompressedOffsets, 0, size(), position);
+        if (i >= 0) {
+            // skips the empty blocks
+            int block = i;
+            while (block + 1 < size() && uncompressedOffsets[block + 1] == position) {
+                block++;
+            }
+            return block;
+        }
+        return -i - 2;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright The Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.tar;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The uncompressed content of a file compressed in independent blocks, read from any position by
+ * decompressing the blocks containing it. Positional reads may be done by several threads at once.
+ */
+final class BlockedChannel implements SeekableByteChannel {
+
+    /**
+     * The uncompressed size of the decompressed blocks kept, so that reading consecutive ranges decompresses each
+     * block once. The last block read is kept whatever its size.
+     */
+    private static final long MAX_CACHED_BYTES = 64 * 1024 * 1024;
+
+    private final FileChannel file;
+
+    private final BlockFormat format;
+
+    private final BlockIndex index;
+
+    private final Map<Integer, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The uncompressed size of the cached blocks.
+     */
+    private long cachedBytes;
+
+    private long position;
+
+    private BlockedChannel(FileChannel file, BlockFormat format, BlockIndex index) {
+        this.file = file;
+        this.format = format;
+        this.index = index;
+    }
+
+    /**
+     * Opens a file compressed in blocks.
+     *
+     * @return the channel, or {@code null} if the file is not compressed in blocks in the given format
+     */
+    static BlockedChannel open(File file, BlockFormat format) throws IOException {
+        final FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final BlockIndex index = format.readIndex(fileChannel);
+            if (index != null) {
+                return new BlockedChannel(fileChannel, format, index);
+            }
+        } catch (IOException e) {
+            fileChannel.close();
+            throw e;
+        }
+        fileChannel.close();
+        return null;
+    }
+
+    BlockIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Decompresses a block, without keeping it.
+     */
+    byte[] readBlock(int block) throws IOException {
+        return format.readBlock(file, index, block);
+    }
+
+    /**
+     * Reads from the given position, without changing the position of the channel.
+     */
+    int read(ByteBuffer dst, long position) throws IOException {
+        if (!file.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        if (position >= index.getUncompressedSize()) {
+            return -1;
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        final int block = index.find(position);
+        byte[] data;
+        synchronized (cache) {
+            data = cache.get(block);
+        }
+        if (data == null) {
+            data = readBlock(block);
+            cache(block, data);
+        }
+        final int offset = (int) (position - index.getUncompressedOffset(block));
+        final int length = Math.min(dst.remaining(), data.length - offset);
+        dst.put(data, offset, length);
+        return length;
+    }
+
+    /**
+     * Keeps a decompressed block, and drops the least recently read ones beyond {@link #MAX_CACHED_BYTES}.
+     */
+    private void cache(int block, byte[] data) {
+        synchronized (cache) {
+            final byte[] previous = cache.put(block, data);
+            cachedBytes += data.length - (previous != null ? previous.length : 0);
+            final Iterator<byte[]> eldest = cache.values().iterator();
+            while (cachedBytes > MAX_CACHED_BYTES && cache.size() > 1) {
+                cachedBytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        final int read = read(dst, position);
+        if (read > 0) {
+            position += read;
+        }
+        return read;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() {
+        return position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() {
+        return index.getUncompressedSize();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return file.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+        synchronized (cache) {
+            cache.clear();
+            cachedBytes = 0;
+        }
+    }
+}
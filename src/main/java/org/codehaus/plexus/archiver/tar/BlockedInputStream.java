@@ -0,0 +1,140 @@
+/*
+ * Copyright The Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.tar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the uncompressed content of a file compressed in independent blocks from the beginning, while the
+ * next blocks are decompressed by a pool of threads. The blocks decompressed ahead of the one read add up to
+ * at most {@link #MAX_READ_AHEAD} uncompressed bytes, which no block exceeds. Closing the stream closes the
+ * channel.
+ */
+final class BlockedInputStream extends InputStream {
+
+    /**
+     * The largest uncompressed size of the blocks decompressed ahead of the one read, at least the largest block.
+     */
+    static final long MAX_READ_AHEAD = BlockFormat.MAX_BLOCK_SIZE;
+
+    private final BlockedChannel channel;
+
+    private final ExecutorService executor;
+
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    /**
+     * The uncompressed size of the pending blocks.
+     */
+    private long pendingBytes;
+
+    private int nextBlock;
+
+    private int nextPolled;
+
+    private byte[] current = new byte[0];
+
+    private int currentPosition;
+
+    BlockedInputStream(BlockedChannel channel, int threads) {
+        this.channel = channel;
+        final int poolSize = Math.max(1, Math.min(threads, channel.getIndex().size()));
+        this.executor = Executors.newFixedThreadPool(poolSize, runnable -> {
+            final Thread thread = new Thread(runnable, "plexus-archiver-decompress");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextBytes()) {
+            return -1;
+        }
+        return current[currentPosition++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextBytes()) {
+            return -1;
+        }
+        final int n = Math.min(len, current.length - currentPosition);
+        System.arraycopy(current, currentPosition, b, off, n);
+        currentPosition += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current.length - currentPosition;
+    }
+
+    /**
+     * Moves to the next non empty block if the current one is read.
+     *
+     * @return {@code false} at the end of the content
+     */
+    private boolean nextBytes() throws IOException {
+        final BlockIndex index = channel.getIndex();
+        while (currentPosition == current.length) {
+            while (nextBlock < index.size() && pendingBytes + index.getUncompressedSize(nextBlock) <= MAX_READ_AHEAD) {
+                final int block = nextBlock++;
+                pending.add(executor.submit(() -> channel.readBlock(block)));
+                pendingBytes += index.getUncompressedSize(block);
+            }
+            if (pending.isEmpty()) {
+                return false;
+            }
+            current = get(pending.poll());
+            currentPosition = 0;
+            pendingBytes -= index.getUncompressedSize(nextPolled++);
+        }
+        return true;
+    }
+
+    private static byte[] get(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decompressing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed decompressing", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        pending.clear();
+        channel.close();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright The Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.tar;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Compresses the written data in independent blocks of a fixed uncompressed size, followed by the seek
+ * table of the {@link BlockFormat}.
+ */
+final class BlockedOutputStream extends OutputStream {
+
+    /**
+     * Compresses the blocks of a {@link BlockFormat}, see {@link BlockFormat#gzipMembers()} and
+     * {@link BlockFormat#zstdFrames}.
+     */
+    interface Compressor {
+
+        /**
+         * Compresses a block on its own.
+         */
+        byte[] compress(byte[] data, int length) throws IOException;
+
+        /**
+         * Writes what follows the blocks, such as a seek table.
+         */
+        default void finish(OutputStream out, long[] compressedSizes, long[] uncompressedSizes, int size)
+                throws IOException {}
+    }
+
+    private final OutputStream out;
+
+    private final Compressor compressor;
+
+    private final byte[] block;
+
+    private int blockLength;
+
+    private long[] compressedSizes = new long[64];
+
+    private long[] uncompressedSizes = new long[64];
+
+    private int size;
+
+    private boolean closed;
+
+    BlockedOutputStream(OutputStream out, Compressor compressor, int blockSize) {
+        this.out = out;
+        this.compressor = compressor;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            final int n = Math.min(len, block.length - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == block.length) {
+                writeBlock();
+            }
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        final byte[] compressed = compressor.compress(block, blockLength);
+        out.write(compressed);
+        if (size == compressedSizes.length) {
+            compressedSizes = Arrays.copyOf(compressedSizes, size * 2);
+            uncompressedSizes = Arrays.copyOf(uncompressedSizes, size * 2);
+        }
+        compressedSizes[size] = compressed.length;
+        uncompressedSizes[size] = blockLength;
+        size++;
+        blockLength = 0;
+    }
+
+    /**
+     * Does not flush the current block, which would make the blocks smaller than the block size.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (OutputStream o = out) {
+            if (blockLength > 0 || size == 0) {
+                writeBlock();
+            }
+            compressor.finish(out, compressedSizes, uncompressedSizes, size);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright The Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.tar;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.codehaus.plexus.archiver.ArchiverException;
+
+/**
+ * Hands the content of the entries read by the calling thread to a pool of threads writing them.
+ * <p>
+ * The content of each entry is copied in buffers taken from a pool of {@link #MAX_BUFFERED} bytes, and read back
+ * by the thread writing the entry, which returns the buffers to the pool. The calling thread waits for a buffer
+ * when the pool is empty, so it runs ahead of the writing threads by at most that many bytes, and an entry larger
+ * than the pool is written while it is read. Entries with the same name, regardless of the case, are written in
+ * the order of the archive.</p>
+ */
+final class EntryPipeline implements Closeable {
+
+    /**
+     * The size of the buffers of the pool.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The total size of the buffers of the pool.
+     */
+    static final int MAX_BUFFERED = 32 * 1024 * 1024;
+
+    private static final int MAX_BUFFERS = MAX_BUFFERED / BUFFER_SIZE;
+
+    /**
+     * The number of tracked names from which the names of the written entries are forgotten.
+     */
+    private static final int MAX_TRACKED_NAMES = 1024;
+
+    /**
+     * Writes the content of an entry.
+     */
+    interface Writer {
+
+        void write(InputStream content) throws IOException, ArchiverException;
+    }
+
+    private final ExecutorService executor;
+
+    private final BlockingQueue<byte[]> freeBuffers = new ArrayBlockingQueue<>(MAX_BUFFERS);
+
+    private int allocatedBuffers;
+
+    private final Deque<Future<Void>> pending = new ArrayDeque<>();
+
+    private final Map<String, Future<Void>> pendingByName = new HashMap<>();
+
+    EntryPipeline(int threads) {
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "plexus-archiver-extract");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reads the content of an entry, up to the end of the given stream, and writes it with the pool.
+     */
+    void write(String name, InputStream content, Writer writer) throws IOException {
+        awaitPrevious(name);
+        final PipedContent piped = new PipedContent();
+        final Future<Void> future = executor.submit(() -> {
+            try (InputStream in = piped) {
+                writer.write(in);
+            }
+            return null;
+        });
+        pending.add(future);
+        pendingByName.put(key(name), future);
+
+        boolean complete = false;
+        try {
+            int n;
+            do {
+                final byte[] buffer = takeBuffer();
+                n = content.readNBytes(buffer, 0, buffer.length);
+                piped.put(buffer, n);
+            } while (n == BUFFER_SIZE);
+            complete = true;
+        } finally {
+            piped.end(complete);
+        }
+        checkWritten();
+    }
+
+    /**
+     * Waits until the previous entries with the given name are written, before it is extracted by the calling
+     * thread or by the pool.
+     */
+    void awaitPrevious(String name) throws IOException {
+        final Future<Void> previous = pendingByName.remove(key(name));
+        if (previous != null) {
+            get(previous);
+        }
+    }
+
+    /**
+     * Waits until all the entries are written.
+     */
+    void finish() throws IOException {
+        while (!pending.isEmpty()) {
+            get(pending.poll());
+        }
+        pendingByName.clear();
+    }
+
+    /**
+     * Reports the failure of the written entries, and forgets their names.
+     */
+    private void checkWritten() throws IOException {
+        while (!pending.isEmpty() && pending.peek().isDone()) {
+            get(pending.poll());
+        }
+        if (pendingByName.size() > MAX_TRACKED_NAMES) {
+            for (Iterator<Future<Void>> i = pendingByName.values().iterator(); i.hasNext(); ) {
+                if (i.next().isDone()) {
+                    i.remove();
+                }
+            }
+        }
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private byte[] takeBuffer() throws IOException {
+        final byte[] buffer = freeBuffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (allocatedBuffers < MAX_BUFFERS) {
+            allocatedBuffers++;
+            return new byte[BUFFER_SIZE];
+        }
+        try {
+            return freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while extracting");
+        }
+    }
+
+    private void releaseBuffer(byte[] buffer) {
+        freeBuffers.offer(buffer);
+    }
+
+    private static void get(Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while extracting");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed extracting", cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The content of an entry, in the buffers filled by the calling thread. The buffers not read, because the
+     * entry is not written or failed to be, are returned to the pool once the stream is closed.
+     */
+    private final class PipedContent extends InputStream {
+
+        private final BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<>();
+
+        private boolean closed;
+
+        private Chunk current;
+
+        private int position;
+
+        synchronized void put(byte[] buffer, int length) {
+            if (closed) {
+                releaseBuffer(buffer);
+            } else {
+                chunks.add(new Chunk(buffer, length));
+            }
+        }
+
+        /**
+         * Marks the end of the content, which is truncated if the entry could not be read to its end.
+         */
+        void end(boolean complete) {
+            chunks.add(complete ? Chunk.END : Chunk.TRUNCATED);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (current == null || position == current.length) {
+                if (current != null) {
+                    releaseBuffer(current.buffer);
+                    current = null;
+                }
+                final Chunk next;
+                try {
+                    next = chunks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while extracting");
+                }
+                if (next == Chunk.END) {
+                    chunks.add(next);
+                    return -1;
+                } else if (next == Chunk.TRUNCATED) {
+                    chunks.add(next);
+                    throw new IOException("Truncated entry");
+                }
+                current = next;
+                position = 0;
+            }
+            final int n = Math.min(len, current.length - position);
+            System.arraycopy(current.buffer, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            if (current != null) {
+                releaseBuffer(current.buffer);
+                current = null;
+            }
+            Chunk chunk;
+            while ((chunk = chunks.poll()) != null) {
+                if (chunk.buffer != null) {
+                    releaseBuffer(chunk.buffer);
+                }
+            }
+        }
+    }
+
+    private static final class Chunk {
+
+        static final Chunk END = new Chunk(null, 0);
+
+        static final Chunk TRUNCATED = new Chunk(null, 0);
+
+        final byte[] buffer;
+
+        final int length;
+
+        Chunk(byte[] buffer, int length) {
+            this.buffer = buffer;
+            this.length = length;
+        }
+    }
+}
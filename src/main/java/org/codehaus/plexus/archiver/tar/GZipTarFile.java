@@ -23,4 +23,9 @@ public GZipTarFile(File file) {
     protected InputStream getInputStream(File file) throws IOException {
         return Streams.bufferedInputStream(new GZIPInputStream(super.getInputStream(file)));
     }
+
+    @Override
+    BlockFormat getBlockFormat() {
+        return BlockFormat.GZIP;
+    }
 }
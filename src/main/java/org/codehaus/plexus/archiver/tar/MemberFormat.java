@@ -0,0 +1,95 @@
+/*
+ * Copyright The Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.tar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+/**
+ * The formats of the files made of concatenated members, which have no seek table but can be decompressed
+ * independently of each other: gzip members, as written by {@code bgzip} or by concatenating gzip files, and
+ * bzip2 streams, as written by {@code pbzip2}. The start of a member is recognized by its signature, which
+ * may also occur inside a member.
+ */
+enum MemberFormat {
+    GZIP(10),
+    BZIP2(10);
+
+    private static final int GZIP_RESERVED_FLAGS = 0xe0;
+
+    private static final int GZIP_OS_UNKNOWN = 255;
+
+    private static final int GZIP_OS_MAX = 13;
+
+    private static final byte[] BZIP2_BLOCK_MAGIC = {0x31, 0x41, 0x59, 0x26, 0x53, 0x59};
+
+    private static final byte[] BZIP2_END_MAGIC = {0x17, 0x72, 0x45, 0x38, 0x50, (byte) 0x90};
+
+    private final int signatureSize;
+
+    MemberFormat(int signatureSize) {
+        this.signatureSize = signatureSize;
+    }
+
+    /**
+     * The number of bytes checked by {@link #isMemberStart(byte[], int)}.
+     */
+    int getSignatureSize() {
+        return signatureSize;
+    }
+
+    /**
+     * Returns whether the bytes at the offset look like the start of a member.
+     */
+    boolean isMemberStart(byte[] b, int off) {
+        if (this == GZIP) {
+            final int xfl = b[off + 8] & 0xff;
+            final int os = b[off + 9] & 0xff;
+            return b[off] == 0x1f
+                    && b[off + 1] == (byte) 0x8b
+                    && b[off + 2] == Deflater.DEFLATED
+                    && (b[off + 3] & GZIP_RESERVED_FLAGS) == 0
+                    && (xfl == 0 || xfl == 2 || xfl == 4)
+                    && (os <= GZIP_OS_MAX || os == GZIP_OS_UNKNOWN);
+        }
+        return b[off] == 'B'
+                && b[off + 1] == 'Z'
+                && b[off + 2] == 'h'
+                && b[off + 3] >= '1'
+                && b[off + 3] <= '9'
+                && (startsWith(b, off + 4, BZIP2_BLOCK_MAGIC) || startsWith(b, off + 4, BZIP2_END_MAGIC));
+    }
+
+    private static boolean startsWith(byte[] b, int off, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (b[off + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decompresses the members read from the given stream, up to its end.
+     */
+    InputStream decompress(InputStream in) throws IOException {
+        return this == GZIP ? new GZIPInputStream(in) : new BZip2CompressorInputStream(in, true);
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright The Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.tar;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.codehaus.plexus.archiver.util.Streams;
+
+/**
+ * Reads the uncompressed content of a file made of concatenated members from the beginning, while the next
+ * members are decompressed by a pool of threads.
+ * <p>
+ * The file is split in slices of about {@link #SLICE_SIZE} compressed bytes, ending where the signature of a
+ * member is found, and each slice is decompressed on its own. A slice that fails to decompress ends inside a
+ * member, where its signature occurs by chance, or is larger than {@link #MAX_UNCOMPRESSED_SLICE_SIZE} once
+ * decompressed: the rest of the file is then decompressed by the reading thread, as is a file whose members are
+ * larger than {@link #MAX_SLICE_SIZE}, such as a file of a single member. The slices decompressed ahead of the
+ * one read, counted with their uncompressed size once decompressed and with their compressed size until then,
+ * add up to at most {@link #MAX_READ_AHEAD} bytes. Closing the stream closes the file.</p>
+ */
+final class MemberInputStream extends InputStream {
+
+    /**
+     * The compressed size from which a slice ends at the next member.
+     */
+    static final int SLICE_SIZE = 1024 * 1024;
+
+    /**
+     * The largest compressed size of a slice decompressed by the pool.
+     */
+    static final int MAX_SLICE_SIZE = 16 * SLICE_SIZE;
+
+    /**
+     * The largest uncompressed size of a slice decompressed by the pool.
+     */
+    static final int MAX_UNCOMPRESSED_SLICE_SIZE = 32 * SLICE_SIZE;
+
+    /**
+     * The largest size of the slices decompressed ahead of the one read.
+     */
+    static final long MAX_READ_AHEAD = 64 * SLICE_SIZE;
+
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel file;
+
+    private final MemberFormat format;
+
+    private final long fileSize;
+
+    private final ExecutorService executor;
+
+    private final Deque<Slice> pending = new ArrayDeque<>();
+
+    /**
+     * The start of the next slice, or -1 once the rest of the file is left to the reading thread.
+     */
+    private long nextSlice;
+
+    /**
+     * The start of the members decompressed by the reading thread, or -1.
+     */
+    private long sequentialStart = -1;
+
+    private InputStream sequential;
+
+    private byte[] current = new byte[0];
+
+    private int currentPosition;
+
+    MemberInputStream(FileChannel file, MemberFormat format, int threads) throws IOException {
+        this.file = file;
+        this.format = format;
+        this.fileSize = file.size();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "plexus-archiver-decompress");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (currentPosition == current.length) {
+            if (sequential != null) {
+                return sequential.read(b, off, len);
+            }
+            if (!nextSlice()) {
+                return -1;
+            }
+        }
+        final int n = Math.min(len, current.length - currentPosition);
+        System.arraycopy(current, currentPosition, b, off, n);
+        currentPosition += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return sequential != null ? sequential.available() : current.length - currentPosition;
+    }
+
+    /**
+     * Moves to the next decompressed slice, or to the members left to the reading thread.
+     *
+     * @return {@code false} at the end of the content
+     */
+    private boolean nextSlice() throws IOException {
+        while (nextSlice >= 0 && nextSlice < fileSize && (pending.isEmpty() || pendingSize() < MAX_READ_AHEAD)) {
+            final long start = nextSlice;
+            final long end = findSliceEnd(start);
+            if (end < 0) {
+                nextSlice = -1;
+                sequentialStart = start;
+            } else {
+                nextSlice = end;
+                final Slice slice = new Slice(start, end);
+                slice.future = executor.submit(() -> slice.decompressed(decompress(start, end)));
+                pending.add(slice);
+            }
+        }
+        if (pending.isEmpty()) {
+            if (sequentialStart < 0) {
+                return false;
+            }
+            file.position(sequentialStart);
+            sequential = format.decompress(Streams.bufferedInputStream(Channels.newInputStream(file)));
+            return true;
+        }
+        final Slice slice = pending.poll();
+        try {
+            current = slice.get();
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            // the slice ends inside a member, the following slices are discarded
+            for (Slice discarded : pending) {
+                discarded.future.cancel(true);
+            }
+            pending.clear();
+            nextSlice = -1;
+            sequentialStart = slice.start;
+            current = new byte[0];
+        }
+        currentPosition = 0;
+        return true;
+    }
+
+    /**
+     * Returns the size of the pending slices.
+     */
+    private long pendingSize() {
+        long size = 0;
+        for (Slice slice : pending) {
+            size += slice.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the start of the first member at least {@link #SLICE_SIZE} bytes after the start of a slice,
+     * the end of the file, or -1 if no member starts before {@link #MAX_SLICE_SIZE} bytes.
+     */
+    private long findSliceEnd(long start) throws IOException {
+        final int overlap = format.getSignatureSize() - 1;
+        final ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE + overlap);
+        for (long offset = start + SLICE_SIZE; offset < start + MAX_SLICE_SIZE; offset += SCAN_BUFFER_SIZE) {
+            if (offset >= fileSize) {
+                return fileSize;
+            }
+            buffer.clear();
+            while (buffer.hasRemaining() && offset + buffer.position() < fileSize) {
+                file.read(buffer, offset + buffer.position());
+            }
+            final byte[] b = buffer.array();
+            final int end = Math.min(SCAN_BUFFER_SIZE, buffer.position() - overlap);
+            for (int i = 0; i < end; i++) {
+                if (format.isMemberStart(b, i)) {
+                    return offset + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private byte[] decompress(long start, long end) throws IOException {
+        final ByteBuffer compressed = ByteBuffer.allocate((int) (end - start));
+        while (compressed.hasRemaining()) {
+            if (file.read(compressed, start + compressed.position()) == -1) {
+                throw new EOFException("Truncated compressed file");
+            }
+        }
+        final ByteArrayOutputStream data = new ByteArrayOutputStream(compressed.capacity() * 4);
+        try (InputStream in = format.decompress(new ByteArrayInputStream(compressed.array()))) {
+            final byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                data.write(buffer, 0, n);
+                if (data.size() > MAX_UNCOMPRESSED_SLICE_SIZE) {
+                    throw new IOException("Slice too large");
+                }
+            }
+        }
+        return data.toByteArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        pending.clear();
+        file.close();
+    }
+
+    private static final class Slice {
+
+        final long start;
+
+        final long end;
+
+        Future<byte[]> future;
+
+        /**
+         * The uncompressed size of the slice, or -1 until it is decompressed.
+         */
+        private volatile int decompressedSize = -1;
+
+        Slice(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        byte[] decompressed(byte[] data) {
+            decompressedSize = data.length;
+            return data;
+        }
+
+        long size() {
+            final int size = decompressedSize;
+            return size >= 0 ? size : end - start;
+        }
+
+        byte[] get() throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while decompressing");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Failed decompressing", e.getCause());
+            }
+        }
+    }
+}
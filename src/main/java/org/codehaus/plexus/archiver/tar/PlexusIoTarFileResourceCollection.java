@@ -44,9 +44,27 @@ public void close() throws IOException {
         }
     }
 
+    /**
+     * Whether the entries can be read concurrently, computed once, as it may require reading the index of
+     * the blocks of the file.
+     */
+    private Boolean concurrentAccessSupported;
+
     @Override
     public boolean isConcurrentAccessSupported() {
-        return false;
+        if (concurrentAccessSupported == null) {
+            final File f = getFile();
+            if (f == null) {
+                return false;
+            }
+            if (tarFile == null) {
+                // kept to read the entries, and closed with this collection
+                tarFile = newTarFile(f);
+            }
+            // the entries of an uncompressed tar file, or of one compressed in blocks, are read from their offset
+            concurrentAccessSupported = tarFile.isRandomAccess();
+        }
+        return concurrentAccessSupported;
     }
 
     @Override
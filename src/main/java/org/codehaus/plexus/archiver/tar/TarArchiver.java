@@ -18,25 +18,32 @@
 
 import javax.inject.Named;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
 import org.apache.commons.compress.compressors.snappy.FramedSnappyCompressorOutputStream;
-import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
-import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
 import org.codehaus.plexus.archiver.AbstractArchiver;
 import org.codehaus.plexus.archiver.ArchiveEntry;
 import org.codehaus.plexus.archiver.ArchiverException;
 import org.codehaus.plexus.archiver.ResourceIterator;
 import org.codehaus.plexus.archiver.exceptions.EmptyArchiveException;
+import org.codehaus.plexus.archiver.gzip.ParallelGZipOutputStream;
 import org.codehaus.plexus.archiver.util.ResourceUtils;
 import org.codehaus.plexus.archiver.util.Streams;
+import org.codehaus.plexus.archiver.xz.ParallelXZOutputStream;
+import org.codehaus.plexus.archiver.xz.XZCompressor;
+import org.codehaus.plexus.archiver.zstd.ZstdCompressor;
 import org.codehaus.plexus.components.io.attributes.PlexusIoResourceAttributes;
 import org.codehaus.plexus.components.io.functions.SymlinkDestinationSupplier;
 import org.codehaus.plexus.components.io.resources.PlexusIoResource;
@@ -51,6 +58,11 @@
 @Named("tar")
 public class TarArchiver extends AbstractArchiver {
 
+    /**
+     * The largest size of the compression blocks, whose compressed size must fit in the seek table.
+     */
+    private static final int MAX_COMPRESSION_BLOCK_SIZE = 1 << 30;
+
     /**
      * Indicates whether the user has been warned about long files already.
      */
@@ -60,10 +72,35 @@ public class TarArchiver extends AbstractArchiver {
 
     private TarCompressionMethod compression = TarCompressionMethod.none;
 
+    private int compressionBlockSize;
+
+    private int compressionThreads = 1;
+
+    /**
+     * The options of the zstd compression.
+     */
+    private final ZstdCompressor zstdCompressor = new ZstdCompressor();
+
+    /**
+     * The options of the xz compression.
+     */
+    private final XZCompressor xzCompressor = new XZCompressor();
+
     private final TarOptions options = new TarOptions();
 
     private TarArchiveOutputStream tOut;
 
+    /**
+     * The channel of an uncompressed archive, into which the content of the files is transferred, or
+     * {@code null}.
+     */
+    private FileChannel archiveChannel;
+
+    /**
+     * The stream written by {@link #tOut} into {@link #archiveChannel}.
+     */
+    private OutputStream archiveStream;
+
     /**
      * Set how to handle long files, those with a path&gt;100 chars.
      * Optional, default=warn.
@@ -93,6 +130,10 @@ public void setLongfile(TarLongFileMode mode) {
      * <li> gzip - Gzip compression
      * <li> bzip2 - Bzip2 compression
      * </ul>
+     * <p>
+     * Without compression, the content of the files added without transformation is transferred from the files
+     * into a new archive by the file system, without being copied through the heap. An existing archive is
+     * written through a stream, which leaves it untouched if its content is unchanged.</p>
      *
      * @param mode the compression method.
      */
@@ -100,6 +141,61 @@ public void setCompression(TarCompressionMethod mode) {
         this.compression = mode;
     }
 
+    /**
+     * Set the size of the uncompressed blocks which are compressed independently of each other; default=0,
+     * the archive is compressed as a single stream.
+     * <p>
+     * Only the gzip, xz and zstd compressions support blocks. Each block is a gzip member, an xz block or a zstd
+     * frame, so that the archive is still read by the {@code gzip}, {@code xz} and {@code zstd} tools, and a seek
+     * table is written, so that {@link GZipTarFile}, {@link XZTarFile}, {@link ZstdTarFile} and the tar
+     * unarchivers read the entries from the block containing them, and decompress the blocks in parallel, see
+     * {@link TarUnArchiver#setDecompressionThreads(int)}. Smaller blocks give faster access to the entries, at the
+     * cost of a lower compression ratio. The archives with blocks larger than 64 MiB are read sequentially, so that
+     * the decompressed blocks held in memory stay small. The xz blocks are compressed by as many threads as set by
+     * {@link #setCompressionThreads(int)}, and the zstd frames with the level, workers, window log and long
+     * distance matching of the zstd compression.</p>
+     *
+     * @param compressionBlockSize the size of the blocks in bytes, or 0.
+     * @since 5.0.0
+     */
+    public void setCompressionBlockSize(int compressionBlockSize) {
+        if (compressionBlockSize < 0 || compressionBlockSize > MAX_COMPRESSION_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Invalid compression block size: " + compressionBlockSize);
+        }
+        this.compressionBlockSize = compressionBlockSize;
+    }
+
+    /**
+     * @since 5.0.0
+     */
+    public int getCompressionBlockSize() {
+        return compressionBlockSize;
+    }
+
+    /**
+     * Set the number of threads compressing the archive; default=1.
+     * <p>
+     * Only the gzip and xz compressions use several threads. The gzip archive is still written as a single gzip
+     * member when it is not compressed in blocks, see {@link ParallelGZipOutputStream}. The xz archive is
+     * compressed in independent blocks, see {@link ParallelXZOutputStream}.</p>
+     *
+     * @param compressionThreads the number of threads.
+     * @since 5.0.0
+     */
+    public void setCompressionThreads(int compressionThreads) {
+        if (compressionThreads < 1) {
+            throw new IllegalArgumentException("Invalid number of compression threads: " + compressionThreads);
+        }
+        this.compressionThreads = compressionThreads;
+    }
+
+    /**
+     * @since 5.0.0
+     */
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
     @Override
     protected void execute() throws ArchiverException, IOException {
         if (!checkForced()) {
@@ -126,19 +222,17 @@ protected void execute() throws ArchiverException, IOException {
         getLogger().info("Building tar: " + tarFile.getAbsolutePath());
 
         try {
-            tOut = new TarArchiveOutputStream(compress(compression, Streams.fileOutputStream(tarFile)), "UTF8");
-            if (longFileMode.isTruncateMode()) {
-                tOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_TRUNCATE);
-            } else if (longFileMode.isPosixMode() || longFileMode.isPosixWarnMode()) {
-                tOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
-                // Todo: Patch 2.5.1   for this fix. Also make closeable fix on 2.5.1
-                tOut.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
-            } else if (longFileMode.isFailMode() || longFileMode.isOmitMode()) {
-                tOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_ERROR);
+            if (compression == TarCompressionMethod.none && !tarFile.exists()) {
+                // the records are written one at a time, as by default, so that the content of the files can
+                // be transferred between them
+                archiveChannel = FileChannel.open(
+                        tarFile.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                archiveStream = bufferedOutputStream(Channels.newOutputStream(archiveChannel));
+                tOut = new TarArchiveOutputStream(archiveStream, TarConstants.DEFAULT_RCDSIZE, "UTF8");
             } else {
-                // warn or GNU
-                tOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
+                tOut = new TarArchiveOutputStream(compress(compression, Streams.fileOutputStream(tarFile)), "UTF8");
             }
+            setModes(tOut);
 
             longWarningGiven = false;
             while (iter.hasNext()) {
@@ -156,6 +250,52 @@ protected void execute() throws ArchiverException, IOException {
             tOut.close();
         } finally {
             IOUtil.close(tOut);
+            archiveChannel = null;
+            archiveStream = null;
+        }
+    }
+
+    private void setModes(TarArchiveOutputStream tOut) {
+        if (longFileMode.isTruncateMode()) {
+            tOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_TRUNCATE);
+        } else if (longFileMode.isPosixMode() || longFileMode.isPosixWarnMode()) {
+            tOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            // Todo: Patch 2.5.1   for this fix. Also make closeable fix on 2.5.1
+            tOut.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+        } else if (longFileMode.isFailMode() || longFileMode.isOmitMode()) {
+            tOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_ERROR);
+        } else {
+            // warn or GNU
+            tOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
+        }
+    }
+
+    /**
+     * Writes an entry whose content is the one of a file: the header is written through a tar stream of its
+     * own, then the content of the file is transferred into the archive, without being copied through the
+     * tar stream, and padded to a whole record.
+     */
+    private void tarContentFile(TarArchiveEntry te, File contentFile) throws IOException {
+        final TarArchiveOutputStream header =
+                new TarArchiveOutputStream(archiveStream, TarConstants.DEFAULT_RCDSIZE, "UTF8");
+        setModes(header);
+        header.putArchiveEntry(te);
+        archiveStream.flush();
+
+        final long size = te.getSize();
+        try (FileChannel in = FileChannel.open(contentFile.toPath(), StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < size) {
+                final long n = in.transferTo(position, size - position, archiveChannel);
+                if (n == 0 && position >= in.size()) {
+                    throw new EOFException("File " + contentFile + " is shorter than " + size + " bytes");
+                }
+                position += n;
+            }
+        }
+        final int remainder = (int) (size % TarConstants.DEFAULT_RCDSIZE);
+        if (remainder != 0) {
+            archiveStream.write(new byte[TarConstants.DEFAULT_RCDSIZE - remainder]);
         }
     }
 
@@ -285,6 +425,12 @@ protected void tarFile(ArchiveEntry entry, TarArchiveOutputStream tOut, String v
                 te.setGroupId(groupId);
             }
 
+            final File contentFile = entry.getType() == ArchiveEntry.FILE ? entry.getContentFile() : null;
+            if (contentFile != null && archiveChannel != null && tOut == this.tOut && te.getSize() > 0) {
+                tarContentFile(te, contentFile);
+                return;
+            }
+
             tOut.putArchiveEntry(te);
 
             try {
@@ -420,21 +566,57 @@ public enum TarCompressionMethod {
 
     private OutputStream compress(TarCompressionMethod tarCompressionMethod, final OutputStream ostream)
             throws IOException {
+        if (compressionBlockSize > 0) {
+            if (TarCompressionMethod.gzip.equals(tarCompressionMethod)) {
+                return new BlockedOutputStream(
+                        bufferedOutputStream(ostream), BlockFormat.gzipMembers(), compressionBlockSize);
+            } else if (TarCompressionMethod.zstd.equals(tarCompressionMethod)) {
+                return new BlockedOutputStream(
+                        bufferedOutputStream(ostream), BlockFormat.zstdFrames(zstdCompressor), compressionBlockSize);
+            } else if (TarCompressionMethod.xz.equals(tarCompressionMethod)) {
+                return new ParallelXZOutputStream(
+                        bufferedOutputStream(ostream),
+                        compressionThreads,
+                        compressionBlockSize,
+                        xzCompressor.getPreset());
+            }
+            ostream.close();
+            throw new ArchiverException("Compression in blocks is not supported for " + tarCompressionMethod);
+        }
         if (TarCompressionMethod.gzip.equals(tarCompressionMethod)) {
+            if (compressionThreads > 1) {
+                return bufferedOutputStream(new ParallelGZipOutputStream(ostream, compressionThreads));
+            }
             return bufferedOutputStream(new GZIPOutputStream(ostream));
         } else if (TarCompressionMethod.bzip2.equals(tarCompressionMethod)) {
             return new BZip2CompressorOutputStream(bufferedOutputStream(ostream));
         } else if (TarCompressionMethod.snappy.equals(tarCompressionMethod)) {
             return new FramedSnappyCompressorOutputStream(bufferedOutputStream(ostream));
         } else if (TarCompressionMethod.xz.equals(tarCompressionMethod)) {
-            return new XZCompressorOutputStream(bufferedOutputStream(ostream));
+            if (compressionThreads > 1) {
+                final int preset = xzCompressor.getPreset();
+                return new ParallelXZOutputStream(
+                        bufferedOutputStream(ostream),
+                        compressionThreads,
+                        ParallelXZOutputStream.defaultBlockSize(preset),
+                        preset);
+            }
+            return xzCompressor.newOutputStream(bufferedOutputStream(ostream));
         } else if (TarCompressionMethod.zstd.equals(tarCompressionMethod)) {
-            return new ZstdCompressorOutputStream(bufferedOutputStream(ostream));
+            return zstdCompressor.newOutputStream(bufferedOutputStream(ostream));
         }
 
         return ostream;
     }
 
+    ZstdCompressor getZstdCompressor() {
+        return zstdCompressor;
+    }
+
+    XZCompressor getXZCompressor() {
+        return xzCompressor;
+    }
+
     @Override
     public boolean isSupportingForced() {
         return true;
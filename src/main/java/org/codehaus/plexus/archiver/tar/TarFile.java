@@ -5,11 +5,23 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
 import org.codehaus.plexus.archiver.ArchiveFile;
 import org.codehaus.plexus.archiver.util.Streams;
 
@@ -35,6 +47,13 @@
  * <p>
  * The advantage of this class is that you may write code for the
  * {@link ArchiveFile}, which is valid for both tar files and zip files.</p>
+ * <p>
+ * An uncompressed tar file is the exception: the offsets of its entries are
+ * indexed when they are first listed, by reading the headers only, and the
+ * entries are then read from their offset in the file, in any order and
+ * from several threads. So is a tar file compressed in independent blocks,
+ * as written by {@link TarArchiver#setCompressionBlockSize(int)}: only the
+ * blocks containing the requested data are decompressed.</p>
  */
 public class TarFile implements ArchiveFile {
 
@@ -44,6 +63,19 @@ public class TarFile implements ArchiveFile {
 
     private TarArchiveEntry currentEntry;
 
+    /**
+     * The entries of an uncompressed tar file, with the offsets of their data.
+     */
+    private org.apache.commons.compress.archivers.tar.TarFile index;
+
+    private PositionalReader reader;
+
+    private Boolean blocked;
+
+    private Map<String, TarArchiveEntry> indexedEntriesByName;
+
+    private Set<TarArchiveEntry> indexedEntries;
+
     /**
      * Creates a new instance with the given file.
      */
@@ -60,6 +92,9 @@ public TarFile(File file) {
      */
     @Override
     public Enumeration<org.apache.commons.compress.archivers.ArchiveEntry> getEntries() throws IOException {
+        if (isRandomAccess()) {
+            return Collections.enumeration(new ArrayList<>(index().getEntries()));
+        }
         if (inputStream != null) {
             close();
         }
@@ -96,6 +131,125 @@ public void close() throws IOException {
             inputStream.close();
             inputStream = null;
         }
+        synchronized (this) {
+            if (index != null) {
+                // closes the channel as well
+                index.close();
+                index = null;
+                reader = null;
+            }
+        }
+    }
+
+    /**
+     * Returns whether the entries are read from their offset in the file, which is only possible if the file is
+     * not compressed, or compressed in independent blocks with a seek table.
+     *
+     * @since 5.0.0
+     */
+    protected boolean isRandomAccess() {
+        if (getClass() == TarFile.class) {
+            return true;
+        }
+        final BlockFormat format = getBlockFormat();
+        if (format == null) {
+            return false;
+        }
+        synchronized (this) {
+            if (blocked == null) {
+                try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    blocked = format.readIndex(fileChannel) != null;
+                } catch (IOException e) {
+                    blocked = false;
+                }
+            }
+            return blocked;
+        }
+    }
+
+    /**
+     * Returns the format of the file if it may be compressed in independent blocks, {@code null} otherwise.
+     */
+    BlockFormat getBlockFormat() {
+        return null;
+    }
+
+    private synchronized org.apache.commons.compress.archivers.tar.TarFile index() throws IOException {
+        if (index == null) {
+            final SeekableByteChannel content;
+            final BlockFormat format = getBlockFormat();
+            if (format == null) {
+                final FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                content = fileChannel;
+                reader = fileChannel::read;
+            } else {
+                final BlockedChannel blockedChannel = BlockedChannel.open(file, format);
+                if (blockedChannel == null) {
+                    throw new IOException("Not compressed in blocks: " + file);
+                }
+                content = blockedChannel;
+                reader = blockedChannel::read;
+            }
+            try {
+                index = new org.apache.commons.compress.archivers.tar.TarFile(
+                        content, TarConstants.DEFAULT_BLKSIZE, TarConstants.DEFAULT_RCDSIZE, "UTF8", false);
+            } catch (IOException e) {
+                content.close();
+                reader = null;
+                throw e;
+            }
+            indexedEntriesByName = new HashMap<>();
+            indexedEntries = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (TarArchiveEntry entry : index.getEntries()) {
+                // like an extraction, the last entry of a given name wins
+                indexedEntriesByName.put(entry.getName(), entry);
+                indexedEntries.add(entry);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Reads an entry from its offset in the file. Sparse entries, whose data is not contiguous, are read by
+     * one thread at a time.
+     */
+    private InputStream getIndexedInputStream(TarArchiveEntry entry) throws IOException {
+        final org.apache.commons.compress.archivers.tar.TarFile tarIndex = index();
+        final TarArchiveEntry indexed;
+        final PositionalReader positionalReader;
+        synchronized (this) {
+            indexed = indexedEntries.contains(entry) ? entry : indexedEntriesByName.get(entry.getName());
+            positionalReader = reader;
+        }
+        if (indexed == null) {
+            throw new IOException("Unknown entry: " + entry.getName());
+        }
+        if (!indexed.isStreamContiguous()) {
+            return new FilterInputStream(tarIndex.getInputStream(indexed)) {
+
+                @Override
+                public int read() throws IOException {
+                    synchronized (tarIndex) {
+                        return super.read();
+                    }
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    synchronized (tarIndex) {
+                        return super.read(b, off, len);
+                    }
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    synchronized (tarIndex) {
+                        return super.skip(n);
+                    }
+                }
+            };
+        }
+        return new ChannelSliceInputStream(positionalReader, indexed.getDataOffset(), indexed.getSize());
     }
 
     @Override
@@ -110,6 +264,9 @@ public InputStream getInputStream(org.apache.commons.compress.archivers.ArchiveE
      * the underlying {@link TarArchiveInputStream}.
      */
     public InputStream getInputStream(TarArchiveEntry entry) throws IOException {
+        if (isRandomAccess()) {
+            return getIndexedInputStream(entry);
+        }
         if (entry.equals((Object) currentEntry) && inputStream != null) {
             return new FilterInputStream(inputStream) {
 
@@ -164,4 +321,66 @@ private boolean findEntry(TarArchiveEntry entry, TarArchiveEntry currentEntry) t
             }
         }
     }
+
+    /**
+     * Reads the uncompressed content of the file from a given position, without changing the position of the
+     * channel.
+     */
+    private interface PositionalReader {
+
+        int read(ByteBuffer dst, long position) throws IOException;
+    }
+
+    /**
+     * Reads a range of a file with positional reads, so that several ranges can be read at the same time.
+     * Closing it does not close the file.
+     */
+    private static final class ChannelSliceInputStream extends InputStream {
+
+        private final PositionalReader channel;
+
+        private final long end;
+
+        private long position;
+
+        ChannelSliceInputStream(PositionalReader channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            final int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (read == -1) {
+                throw new IOException("Truncated tar file");
+            }
+            position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            final long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+    }
 }
@@ -21,10 +21,17 @@
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.compress.compressors.snappy.FramedSnappyCompressorInputStream;
 import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
@@ -54,6 +61,10 @@ public TarUnArchiver(File sourceFile) {
      */
     private UntarCompressionMethod compression = UntarCompressionMethod.NONE;
 
+    private int extractionThreads = 1;
+
+    private int decompressionThreads = 1;
+
     /**
      * Set decompression algorithm to use; default=none.
      * <p>
@@ -79,6 +90,74 @@ public void setEncoding(String encoding) {
         getLogger().warn("The TarUnArchiver doesn't support the encoding attribute");
     }
 
+    /**
+     * Sets the number of threads writing the extracted files, defaults to 1.
+     * <p>
+     * With more than one thread, the extraction is pipelined: the archive is read and decompressed by the
+     * calling thread, which hands the content of the files to the threads creating and writing them, through at
+     * most 32 MiB of buffers. The directories are created by the calling thread, in the order of the archive, and
+     * so are the symbolic links, once all the files before them are written, which they could otherwise redirect.
+     * The entries with the same name, regardless of the case, are extracted in order. The modification times and
+     * modes are set once all the entries are extracted, as with {@link #setDeferredMetadata(boolean)}. The file
+     * mappers and the
+     * {@link #extractFile(File, File, InputStream, String, java.util.Date, boolean, Integer, String,
+     * FileMapper[]) extractFile} method are then called concurrently.
+     * </p>
+     *
+     * @param extractionThreads the number of threads, must be greater than 0
+     * @throws IllegalArgumentException if the number of threads is less or equal to 0
+     * @since 5.0.0
+     */
+    public void setExtractionThreads(int extractionThreads) {
+        if (extractionThreads <= 0) {
+            throw new IllegalArgumentException("Invalid number of extraction threads: " + extractionThreads);
+        }
+        this.extractionThreads = extractionThreads;
+    }
+
+    /**
+     * @since 5.0.0
+     */
+    public int getExtractionThreads() {
+        return extractionThreads;
+    }
+
+    /**
+     * Sets the number of threads decompressing the archive, defaults to 1.
+     * <p>
+     * An archive compressed in independent blocks, with a seek table, is decompressed by as many threads ahead of
+     * the calling thread, see {@link TarArchiver#setCompressionBlockSize(int)}. With more than one thread, a gzip
+     * archive made of several members, as written by {@code bgzip}, or a bzip2 archive made of several streams,
+     * as written by {@code pbzip2}, is split where a member starts and decompressed in parallel as well. At most
+     * about 64 MiB are decompressed ahead of the calling thread.</p>
+     *
+     * @param decompressionThreads the number of threads, must be greater than 0
+     * @throws IllegalArgumentException if the number of threads is less or equal to 0
+     * @since 5.0.0
+     */
+    public void setDecompressionThreads(int decompressionThreads) {
+        if (decompressionThreads <= 0) {
+            throw new IllegalArgumentException("Invalid number of decompression threads: " + decompressionThreads);
+        }
+        this.decompressionThreads = decompressionThreads;
+    }
+
+    /**
+     * @since 5.0.0
+     */
+    public int getDecompressionThreads() {
+        return decompressionThreads;
+    }
+
+    /**
+     * Returns {@code true} as well when the extraction is pipelined, so that the modification times of the
+     * directories are set after their files are written.
+     */
+    @Override
+    public boolean isDeferredMetadata() {
+        return super.isDeferredMetadata() || extractionThreads > 1;
+    }
+
     @Override
     protected void execute() throws ArchiverException {
         execute(getSourceFile(), getDestDirectory(), getFileMappers());
@@ -86,32 +165,50 @@ protected void execute() throws ArchiverException {
 
     @Override
     protected void execute(String path, File outputDirectory) {
-        execute(new File(path), getDestDirectory(), getFileMappers());
+        execute(Collections.singleton(path), outputDirectory);
+    }
+
+    /**
+     * Extracts the entries whose name starts with one of the paths. Only the headers of an uncompressed archive,
+     * or of an archive compressed in independent blocks, are read to find the selected entries, other compressed
+     * archives are read until the end.
+     */
+    @Override
+    protected void execute(Collection<String> paths, File outputDirectory) throws ArchiverException {
+        final List<String> prefixes = prefixes(paths);
+        final SeekableByteChannel content;
+        try {
+            content = prefixes.contains("") ? null : openSeekable(getSourceFile());
+        } catch (IOException ioe) {
+            throw new ArchiverException("Error while expanding " + getSourceFile().getAbsolutePath(), ioe);
+        }
+        if (content != null) {
+            extractIndexed(getSourceFile(), content, outputDirectory, getFileMappers(), prefixes);
+        } else {
+            extract(getSourceFile(), outputDirectory, getFileMappers(), prefixes);
+        }
     }
 
     protected void execute(File sourceFile, File destDirectory, FileMapper[] fileMappers) throws ArchiverException {
+        extract(sourceFile, destDirectory, fileMappers, Collections.singletonList(""));
+    }
+
+    private void extract(File sourceFile, File destDirectory, FileMapper[] fileMappers, List<String> prefixes)
+            throws ArchiverException {
         try {
             getLogger().info("Expanding: " + sourceFile + " into " + destDirectory);
             TarFile tarFile = new TarFile(sourceFile);
-            try (TarArchiveInputStream tis = new TarArchiveInputStream(
-                    decompress(compression, sourceFile, bufferedInputStream(fileInputStream(sourceFile))))) {
+            try (TarArchiveInputStream tis = new TarArchiveInputStream(open(sourceFile));
+                    EntryPipeline pipeline = newPipeline()) {
                 TarArchiveEntry te;
                 while ((te = tis.getNextEntry()) != null) {
-                    TarResource fileInfo = new TarResource(tarFile, te);
-                    if (isSelected(te.getName(), fileInfo)) {
-                        final String symlinkDestination = te.isSymbolicLink() ? te.getLinkName() : null;
-                        extractFile(
-                                sourceFile,
-                                destDirectory,
-                                tis,
-                                te.getName(),
-                                te.getModTime(),
-                                te.isDirectory(),
-                                te.getMode() != 0 ? te.getMode() : null,
-                                symlinkDestination,
-                                fileMappers);
+                    if (startsWithAny(te.getName(), prefixes)) {
+                        extractEntry(tarFile, te, tis, sourceFile, destDirectory, fileMappers, pipeline);
                     }
                 }
+                if (pipeline != null) {
+                    pipeline.finish();
+                }
                 getLogger().debug("expand complete");
             }
         } catch (IOException ioe) {
@@ -119,6 +216,165 @@ protected void execute(File sourceFile, File destDirectory, FileMapper[] fileMap
         }
     }
 
+    /**
+     * Extracts the selected entries of an archive, read from the offsets found in its headers.
+     *
+     * @param content the uncompressed content of the archive, closed once extracted
+     */
+    private void extractIndexed(
+            File sourceFile,
+            SeekableByteChannel content,
+            File destDirectory,
+            FileMapper[] fileMappers,
+            List<String> prefixes)
+            throws ArchiverException {
+        try (SeekableByteChannel channel = content) {
+            getLogger().info("Expanding: " + sourceFile + " into " + destDirectory);
+            TarFile tarFile = new TarFile(sourceFile);
+            try (org.apache.commons.compress.archivers.tar.TarFile index =
+                    new org.apache.commons.compress.archivers.tar.TarFile(
+                            channel, TarConstants.DEFAULT_BLKSIZE, TarConstants.DEFAULT_RCDSIZE, null, false);
+                    EntryPipeline pipeline = newPipeline()) {
+                for (TarArchiveEntry te : index.getEntries()) {
+                    if (startsWithAny(te.getName(), prefixes)) {
+                        try (InputStream in = index.getInputStream(te)) {
+                            extractEntry(tarFile, te, in, sourceFile, destDirectory, fileMappers, pipeline);
+                        }
+                    }
+                }
+                if (pipeline != null) {
+                    pipeline.finish();
+                }
+                getLogger().debug("expand complete");
+            }
+        } catch (IOException ioe) {
+            throw new ArchiverException("Error while expanding " + sourceFile.getAbsolutePath(), ioe);
+        }
+    }
+
+    /**
+     * Returns the pipeline writing the files, or {@code null} if they are written by the calling thread.
+     */
+    private EntryPipeline newPipeline() {
+        return extractionThreads > 1 ? new EntryPipeline(extractionThreads) : null;
+    }
+
+    /**
+     * Extracts a selected entry, whose content is written by the pipeline if it is a file.
+     *
+     * @param pipeline the pipeline writing the files, or {@code null}
+     */
+    private void extractEntry(
+            TarFile tarFile,
+            TarArchiveEntry te,
+            InputStream in,
+            File sourceFile,
+            File destDirectory,
+            FileMapper[] fileMappers,
+            EntryPipeline pipeline)
+            throws IOException {
+        TarResource fileInfo = new TarResource(tarFile, te);
+        if (!isSelected(te.getName(), fileInfo)) {
+            return;
+        }
+        if (pipeline == null) {
+            extractEntry(te, in, sourceFile, destDirectory, fileMappers);
+        } else if (te.isSymbolicLink()) {
+            // the files queued before are written first, as the link could redirect them
+            pipeline.finish();
+            extractEntry(te, in, sourceFile, destDirectory, fileMappers);
+        } else if (te.isDirectory()) {
+            pipeline.awaitPrevious(te.getName());
+            extractEntry(te, in, sourceFile, destDirectory, fileMappers);
+        } else {
+            pipeline.write(
+                    te.getName(), in, content -> extractEntry(te, content, sourceFile, destDirectory, fileMappers));
+        }
+    }
+
+    private void extractEntry(
+            TarArchiveEntry te, InputStream in, File sourceFile, File destDirectory, FileMapper[] fileMappers)
+            throws IOException {
+        final String symlinkDestination = te.isSymbolicLink() ? te.getLinkName() : null;
+        extractFile(
+                sourceFile,
+                destDirectory,
+                in,
+                te.getName(),
+                te.getModTime(),
+                te.isDirectory(),
+                te.getMode() != 0 ? te.getMode() : null,
+                symlinkDestination,
+                fileMappers,
+                te.getSize(),
+                -1);
+    }
+
+    private static boolean startsWithAny(String name, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Opens the uncompressed content of an archive, decompressed ahead by the decompression threads if it is
+     * compressed in independent blocks, or in parallel members with several decompression threads.
+     */
+    private InputStream open(File sourceFile) throws IOException {
+        final BlockFormat format = getBlockFormat(compression);
+        final BlockedChannel blocked = format != null ? BlockedChannel.open(sourceFile, format) : null;
+        if (blocked != null) {
+            return new BlockedInputStream(blocked, decompressionThreads);
+        }
+        final MemberFormat members = getMemberFormat(compression);
+        if (members != null && decompressionThreads > 1) {
+            final FileChannel file = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ);
+            try {
+                return new MemberInputStream(file, members, decompressionThreads);
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+        }
+        return decompress(compression, sourceFile, bufferedInputStream(fileInputStream(sourceFile)));
+    }
+
+    /**
+     * Opens the uncompressed content of an archive for reading from any position.
+     *
+     * @return the content, or {@code null} if the archive can only be read from the beginning
+     */
+    private SeekableByteChannel openSeekable(File sourceFile) throws IOException {
+        if (compression == UntarCompressionMethod.NONE) {
+            return FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ);
+        }
+        final BlockFormat format = getBlockFormat(compression);
+        return format != null ? BlockedChannel.open(sourceFile, format) : null;
+    }
+
+    private static BlockFormat getBlockFormat(UntarCompressionMethod compression) {
+        if (compression == UntarCompressionMethod.GZIP) {
+            return BlockFormat.GZIP;
+        } else if (compression == UntarCompressionMethod.ZSTD) {
+            return BlockFormat.ZSTD;
+        } else if (compression == UntarCompressionMethod.XZ) {
+            return BlockFormat.XZ;
+        }
+        return null;
+    }
+
+    private static MemberFormat getMemberFormat(UntarCompressionMethod compression) {
+        if (compression == UntarCompressionMethod.GZIP) {
+            return MemberFormat.GZIP;
+        } else if (compression == UntarCompressionMethod.BZIP2) {
+            return MemberFormat.BZIP2;
+        }
+        return null;
+    }
+
     /**
      * This method wraps the input stream with the
      * corresponding decompression method
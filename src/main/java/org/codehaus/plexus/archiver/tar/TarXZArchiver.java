@@ -17,6 +17,8 @@
 
 import javax.inject.Named;
 
+import org.codehaus.plexus.archiver.xz.XZCompressor;
+
 /**
  * Create tar with XZ compression.
  *
@@ -32,4 +34,14 @@ public TarXZArchiver() {
     private void setupCompressionMethod() {
         setCompression(TarCompressionMethod.xz);
     }
+
+    /**
+     * Set the compression preset.
+     *
+     * @see XZCompressor#setPreset(int)
+     * @since 5.0.0
+     */
+    public void setPreset(int preset) {
+        getXZCompressor().setPreset(preset);
+    }
 }
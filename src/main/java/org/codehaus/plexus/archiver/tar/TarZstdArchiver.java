@@ -17,6 +17,8 @@
 
 import javax.inject.Named;
 
+import org.codehaus.plexus.archiver.zstd.ZstdCompressor;
+
 /**
  * Create tar with zstd compression.
  *
@@ -32,4 +34,43 @@ public TarZstdArchiver() {
     private final void setupCompressionMethod() {
         setCompression(TarCompressionMethod.zstd);
     }
+
+    /**
+     * Set compression level
+     *
+     * @since 5.0.0
+     */
+    public void setLevel(Integer level) {
+        getZstdCompressor().setLevel(level);
+    }
+
+    /**
+     * Set the number of native threads compressing in the background.
+     *
+     * @see ZstdCompressor#setWorkers(int)
+     * @since 5.0.0
+     */
+    public void setWorkers(int workers) {
+        getZstdCompressor().setWorkers(workers);
+    }
+
+    /**
+     * Set the base 2 logarithm of the largest distance of the matches.
+     *
+     * @see ZstdCompressor#setWindowLog(int)
+     * @since 5.0.0
+     */
+    public void setWindowLog(int windowLog) {
+        getZstdCompressor().setWindowLog(windowLog);
+    }
+
+    /**
+     * Set whether matches are searched in the whole window.
+     *
+     * @see ZstdCompressor#setLongDistanceMatching(boolean)
+     * @since 5.0.0
+     */
+    public void setLongDistanceMatching(boolean longDistanceMatching) {
+        getZstdCompressor().setLongDistanceMatching(longDistanceMatching);
+    }
 }
@@ -36,4 +36,9 @@ public XZTarFile(File file) {
     protected InputStream getInputStream(File file) throws IOException {
         return XZUnArchiver.getXZInputStream(super.getInputStream(file));
     }
+
+    @Override
+    BlockFormat getBlockFormat() {
+        return BlockFormat.XZ;
+    }
 }
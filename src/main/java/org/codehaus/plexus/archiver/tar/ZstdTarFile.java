@@ -34,4 +34,9 @@ public ZstdTarFile(File file) {
     protected InputStream getInputStream(File file) throws IOException {
         return ZstdUnArchiver.getZstdInputStream(super.getInputStream(file));
     }
+
+    @Override
+    BlockFormat getBlockFormat() {
+        return BlockFormat.ZSTD;
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright The Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.util;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The directories created or found to exist while extracting or copying files, so that the parent
+ * directory of each file is not checked again on the file system.
+ * <p>
+ * The directories are kept in a trie of their path names: each name is stored once, however many
+ * directories are below it, and knowing a directory means knowing all its parents. This class is
+ * thread safe.</p>
+ *
+ * @since 5.0.0
+ */
+public class CreatedDirectories {
+
+    private final Node root = new Node();
+
+    /**
+     * Returns whether the directory is known to exist.
+     */
+    public synchronized boolean contains(File directory) {
+        Node node = root;
+        for (String name : names(directory)) {
+            node = node.children != null ? node.children.get(name) : null;
+            if (node == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records that the directory, and so all its parents, exists.
+     */
+    public synchronized void add(File directory) {
+        Node node = root;
+        for (String name : names(directory)) {
+            if (node.children == null) {
+                node.children = new HashMap<>(4);
+            }
+            node = node.children.computeIfAbsent(name, n -> new Node());
+        }
+    }
+
+    /**
+     * Creates the directory and its parents unless it is already known to exist.
+     *
+     * @return {@code true} if the directory exists
+     */
+    public boolean mkdirs(File directory) {
+        if (contains(directory)) {
+            return true;
+        }
+        if (directory.mkdirs() || directory.isDirectory()) {
+            add(directory);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forgets all the directories.
+     */
+    public synchronized void clear() {
+        root.children = null;
+    }
+
+    private static String[] names(File directory) {
+        Path path = directory.toPath().toAbsolutePath().normalize();
+        String[] names = new String[path.getNameCount() + 1];
+        names[0] = String.valueOf(path.getRoot());
+        for (int i = 1; i < names.length; i++) {
+            names[i] = path.getName(i - 1).toString();
+        }
+        return names;
+    }
+
+    private static final class Node {
+
+        Map<String, Node> children;
+    }
+}
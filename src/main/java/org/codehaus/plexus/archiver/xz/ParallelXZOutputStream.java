@@ -0,0 +1,298 @@
+/*
+ * Copyright The Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.xz;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+
+/**
+ * Writes a single xz stream, whose blocks are compressed by several threads, in the manner of {@code xz -T}.
+ * <p>
+ * The data is split in blocks compressed independently of each other, and the index at the end of the stream
+ * records the compressed and uncompressed size of each block, so that the blocks can be located and
+ * decompressed in parallel as well. The stream is read by any xz decoder. Each thread needs the memory of an
+ * LZMA2 encoder, about 100 MiB with the default preset, and at most twice as many blocks as threads are kept
+ * in memory.</p>
+ *
+ * @since 5.0.0
+ */
+public class ParallelXZOutputStream extends OutputStream {
+
+    /**
+     * The default compression preset of xz.
+     */
+    public static final int DEFAULT_PRESET = 6;
+
+    /**
+     * The dictionary sizes of the presets from 0 to 9.
+     */
+    private static final int[] DICTIONARY_SIZES = {
+        256 << 10, 1 << 20, 2 << 20, 4 << 20, 4 << 20, 8 << 20, 8 << 20, 16 << 20, 32 << 20, 64 << 20
+    };
+
+    private final OutputStream out;
+
+    private final int preset;
+
+    private final ExecutorService executor;
+
+    private final int maxPending;
+
+    private final Deque<Future<Block>> pending = new ArrayDeque<>();
+
+    private final int blockSize;
+
+    private byte[] block;
+
+    private int blockLength;
+
+    /**
+     * The stream flags of the blocks, written in the header once the first block is compressed.
+     */
+    private byte[] streamFlags;
+
+    private long[] unpaddedSizes = new long[64];
+
+    private long[] uncompressedSizes = new long[64];
+
+    private int size;
+
+    private boolean closed;
+
+    /**
+     * Creates a stream with the default preset and block size.
+     *
+     * @param threads the number of threads compressing the blocks
+     */
+    public ParallelXZOutputStream(OutputStream out, int threads) {
+        this(out, threads, defaultBlockSize(DEFAULT_PRESET), DEFAULT_PRESET);
+    }
+
+    /**
+     * @param threads the number of threads compressing the blocks
+     * @param blockSize the uncompressed size of the blocks, see {@link #defaultBlockSize(int)}
+     * @param preset the compression preset, from 0 to 9
+     */
+    public ParallelXZOutputStream(OutputStream out, int threads, int blockSize, int preset) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        if (preset < 0 || preset >= DICTIONARY_SIZES.length) {
+            throw new IllegalArgumentException("Invalid preset: " + preset);
+        }
+        this.out = out;
+        this.preset = preset;
+        this.blockSize = blockSize;
+        this.block = new byte[blockSize];
+        this.maxPending = 2 * threads;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "plexus-archiver-xz");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the block size of {@code xz -T} for a preset: three times the dictionary size, which keeps the
+     * compression ratio close to the one of a single block.
+     */
+    public static int defaultBlockSize(int preset) {
+        if (preset < 0 || preset >= DICTIONARY_SIZES.length) {
+            throw new IllegalArgumentException("Invalid preset: " + preset);
+        }
+        return 3 * DICTIONARY_SIZES[preset];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (len > 0) {
+            final int n = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == blockSize) {
+                submit();
+            }
+        }
+    }
+
+    /**
+     * Compresses the current block on the pool, after writing the oldest blocks if too many are pending.
+     */
+    private void submit() throws IOException {
+        while (pending.size() >= maxPending) {
+            writeBlock(pending.poll());
+        }
+        final byte[] data = block;
+        final int length = blockLength;
+        pending.add(executor.submit(() -> compress(data, length, preset)));
+        block = new byte[blockSize];
+        blockLength = 0;
+    }
+
+    private void writeBlock(Future<Block> future) throws IOException {
+        final Block compressed;
+        try {
+            compressed = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed compressing", e.getCause());
+        }
+        if (streamFlags == null) {
+            streamFlags = compressed.streamFlags;
+            out.write(XZFormat.header(streamFlags));
+        }
+        if (compressed.unpaddedSize == 0) {
+            return;
+        }
+        out.write(compressed.stream, XZFormat.HEADER_SIZE, compressed.length);
+        if (size == unpaddedSizes.length) {
+            unpaddedSizes = Arrays.copyOf(unpaddedSizes, size * 2);
+            uncompressedSizes = Arrays.copyOf(uncompressedSizes, size * 2);
+        }
+        unpaddedSizes[size] = compressed.unpaddedSize;
+        uncompressedSizes[size] = compressed.uncompressedSize;
+        size++;
+    }
+
+    /**
+     * Compresses a block as a stream of its own, from which the block and its sizes are taken.
+     */
+    private static Block compress(byte[] data, int length, int preset) throws IOException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream(length / 2 + 64);
+        try (OutputStream xz = new XZCompressorOutputStream(stream, preset)) {
+            xz.write(data, 0, length);
+        }
+        return Block.parse(stream.toByteArray());
+    }
+
+    /**
+     * Does not compress the current block, which would make the blocks smaller than the block size.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Writes the last block, the index and the stream footer, and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (OutputStream o = out) {
+            if (blockLength > 0 || size == 0 && pending.isEmpty()) {
+                submit();
+            }
+            while (!pending.isEmpty()) {
+                writeBlock(pending.poll());
+            }
+            final byte[] index = XZFormat.index(unpaddedSizes, uncompressedSizes, size);
+            out.write(index);
+            out.write(XZFormat.footer(streamFlags, index.length));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The single block of a stream, between the stream header and the index.
+     */
+    private static final class Block {
+
+        final byte[] stream;
+
+        final int length;
+
+        final byte[] streamFlags;
+
+        /**
+         * The size of the block without its padding, or 0 if the stream has no block.
+         */
+        final long unpaddedSize;
+
+        final long uncompressedSize;
+
+        Block(byte[] stream, int length, byte[] streamFlags, long unpaddedSize, long uncompressedSize) {
+            this.stream = stream;
+            this.length = length;
+            this.streamFlags = streamFlags;
+            this.unpaddedSize = unpaddedSize;
+            this.uncompressedSize = uncompressedSize;
+        }
+
+        static Block parse(byte[] stream) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.wrap(stream).order(ByteOrder.LITTLE_ENDIAN);
+            final int footer = stream.length - XZFormat.FOOTER_SIZE;
+            if (footer < XZFormat.HEADER_SIZE || !XZFormat.isHeader(stream, 0) || !XZFormat.isFooter(stream, footer)) {
+                throw new IOException("Invalid xz stream");
+            }
+            final byte[] streamFlags = Arrays.copyOfRange(stream, 6, 8);
+            final int indexOffset = footer - (buffer.getInt(footer + 4) + 1) * 4;
+            if (indexOffset < XZFormat.HEADER_SIZE || stream[indexOffset] != 0) {
+                throw new IOException("Invalid xz index");
+            }
+            buffer.position(indexOffset + 1);
+            final long records = XZFormat.readVarint(buffer);
+            if (records == 0) {
+                return new Block(stream, 0, streamFlags, 0, 0);
+            }
+            if (records != 1) {
+                throw new IOException("Unexpected number of xz blocks: " + records);
+            }
+            final long unpaddedSize = XZFormat.readVarint(buffer);
+            final long uncompressedSize = XZFormat.readVarint(buffer);
+            if (unpaddedSize <= 0 || uncompressedSize < 0) {
+                throw new IOException("Invalid xz index");
+            }
+            return new Block(
+                    stream, indexOffset - XZFormat.HEADER_SIZE, streamFlags, unpaddedSize, uncompressedSize);
+        }
+    }
+}
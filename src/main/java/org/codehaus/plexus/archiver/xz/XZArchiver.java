@@ -36,6 +36,36 @@ public class XZArchiver extends AbstractArchiver {
 
     public XZArchiver() {}
 
+    /**
+     * Set the compression preset.
+     *
+     * @see XZCompressor#setPreset(int)
+     * @since 5.0.0
+     */
+    public void setPreset(int preset) {
+        compressor.setPreset(preset);
+    }
+
+    /**
+     * Set the number of threads compressing the file; default=1.
+     *
+     * @see XZCompressor#setThreads(int)
+     * @since 5.0.0
+     */
+    public void setThreads(int threads) {
+        compressor.setThreads(threads);
+    }
+
+    /**
+     * Set the uncompressed size of the independent blocks.
+     *
+     * @see XZCompressor#setBlockSize(int)
+     * @since 5.0.0
+     */
+    public void setBlockSize(int blockSize) {
+        compressor.setBlockSize(blockSize);
+    }
+
     @Override
     protected void execute() throws ArchiverException, IOException {
         if (!checkForced()) {
@@ -16,6 +16,7 @@
 package org.codehaus.plexus.archiver.xz;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
 import org.codehaus.plexus.archiver.ArchiverException;
@@ -30,14 +31,92 @@
  */
 public class XZCompressor extends Compressor {
 
-    private XZCompressorOutputStream xzOut;
+    private OutputStream xzOut;
+
+    private int preset = ParallelXZOutputStream.DEFAULT_PRESET;
+
+    private int threads = 1;
+
+    private int blockSize;
 
     public XZCompressor() {}
 
+    /**
+     * Set the compression preset, from 0 to 9; default=6.
+     *
+     * @since 5.0.0
+     */
+    public void setPreset(int preset) {
+        if (preset < 0 || preset > 9) {
+            throw new IllegalArgumentException("Invalid preset: " + preset);
+        }
+        this.preset = preset;
+    }
+
+    /**
+     * @since 5.0.0
+     */
+    public int getPreset() {
+        return preset;
+    }
+
+    /**
+     * Set the number of threads compressing the file; default=1. With several threads, or a block size, the
+     * file is compressed in independent blocks by a {@link ParallelXZOutputStream}.
+     *
+     * @since 5.0.0
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * @since 5.0.0
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the uncompressed size of the independent blocks; default=0, three times the dictionary size of the
+     * preset when several threads compress the file, else a single block.
+     *
+     * @since 5.0.0
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize < 0) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @since 5.0.0
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Creates a stream compressing to the given stream with the options of this compressor.
+     *
+     * @since 5.0.0
+     */
+    public OutputStream newOutputStream(OutputStream out) throws IOException {
+        if (threads > 1 || blockSize > 0) {
+            final int size = blockSize > 0 ? blockSize : ParallelXZOutputStream.defaultBlockSize(preset);
+            return new ParallelXZOutputStream(out, threads, size, preset);
+        }
+        return new XZCompressorOutputStream(out, preset);
+    }
+
     @Override
     public void compress() throws ArchiverException {
         try {
-            xzOut = new XZCompressorOutputStream(bufferedOutputStream(fileOutputStream(getDestFile())));
+            xzOut = newOutputStream(bufferedOutputStream(fileOutputStream(getDestFile())));
             compress(getSource(), xzOut);
         } catch (IOException ioe) {
             throw new ArchiverException("Problem creating xz " + ioe.getMessage(), ioe);
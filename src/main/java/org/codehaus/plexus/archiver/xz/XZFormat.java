@@ -0,0 +1,151 @@
+/*
+ * Copyright The Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.xz;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * The header, index and footer of the xz streams, written by {@link ParallelXZOutputStream} and read to locate
+ * the blocks of a stream.
+ *
+ * @since 5.0.0
+ */
+public final class XZFormat {
+
+    /**
+     * The size of the stream header.
+     */
+    public static final int HEADER_SIZE = 12;
+
+    /**
+     * The size of the stream footer.
+     */
+    public static final int FOOTER_SIZE = 12;
+
+    /**
+     * The blocks and the index are padded to a multiple of four bytes.
+     */
+    public static final int ALIGNMENT = 4;
+
+    private static final byte[] HEADER_MAGIC = {(byte) 0xfd, '7', 'z', 'X', 'Z', 0};
+
+    private static final byte[] FOOTER_MAGIC = {'Y', 'Z'};
+
+    private XZFormat() {}
+
+    /**
+     * Returns whether a stream header starts at the given offset.
+     */
+    public static boolean isHeader(byte[] b, int off) {
+        return b.length - off >= HEADER_SIZE
+                && Arrays.equals(b, off, off + HEADER_MAGIC.length, HEADER_MAGIC, 0, HEADER_MAGIC.length)
+                && crc32(b, off + 6, 2) == Integer.toUnsignedLong(readInt(b, off + 8));
+    }
+
+    /**
+     * Returns whether a stream footer starts at the given offset.
+     */
+    public static boolean isFooter(byte[] b, int off) {
+        return b.length - off >= FOOTER_SIZE
+                && b[off + 10] == FOOTER_MAGIC[0]
+                && b[off + 11] == FOOTER_MAGIC[1]
+                && crc32(b, off + 4, 6) == Integer.toUnsignedLong(readInt(b, off));
+    }
+
+    /**
+     * Returns the header of a stream whose blocks have the given stream flags.
+     */
+    public static byte[] header(byte[] streamFlags) {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(HEADER_MAGIC).put(streamFlags).putInt((int) crc32(streamFlags, 0, 2));
+        return header.array();
+    }
+
+    /**
+     * Returns the index of a stream: the unpadded and uncompressed sizes of its blocks, padded to a multiple of
+     * four bytes and followed by its CRC-32.
+     */
+    public static byte[] index(long[] unpaddedSizes, long[] uncompressedSizes, int size) {
+        final ByteArrayOutputStream index = new ByteArrayOutputStream(16 + size * 8);
+        index.write(0);
+        writeVarint(index, size);
+        for (int i = 0; i < size; i++) {
+            writeVarint(index, unpaddedSizes[i]);
+            writeVarint(index, uncompressedSizes[i]);
+        }
+        while (index.size() % ALIGNMENT != 0) {
+            index.write(0);
+        }
+        final byte[] records = index.toByteArray();
+        final long crc = crc32(records, 0, records.length);
+        for (int i = 0; i < 4; i++) {
+            index.write((int) (crc >>> (8 * i)));
+        }
+        return index.toByteArray();
+    }
+
+    /**
+     * Returns the footer of a stream whose blocks have the given stream flags, after an index of the given size.
+     */
+    public static byte[] footer(byte[] streamFlags, int indexSize) {
+        final ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        footer.putInt(0).putInt(indexSize / 4 - 1).put(streamFlags).put(FOOTER_MAGIC);
+        footer.putInt(0, (int) crc32(footer.array(), 4, 6));
+        return footer.array();
+    }
+
+    /**
+     * Reads a variable length integer of the index.
+     *
+     * @return the integer, or -1 if it is invalid
+     */
+    public static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 63 && buffer.hasRemaining(); shift += 7) {
+            final int b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while (value >= 0x80) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Returns the CRC-32 of the header flags, the footer and the index.
+     */
+    public static long crc32(byte[] b, int off, int len) {
+        final CRC32 crc = new CRC32();
+        crc.update(b, off, len);
+        return crc.getValue();
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return ByteBuffer.wrap(b, off, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+}
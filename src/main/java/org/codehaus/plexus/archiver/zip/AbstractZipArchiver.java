@@ -27,16 +27,20 @@
 import java.nio.file.attribute.FileTime;
 import java.util.Calendar;
 import java.util.Deque;
+import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.ZipEncoding;
 import org.apache.commons.compress.archivers.zip.ZipEncodingHelper;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.compress.parallel.InputStreamSupplier;
 import org.codehaus.plexus.archiver.AbstractArchiver;
 import org.codehaus.plexus.archiver.ArchiveEntry;
@@ -103,12 +107,39 @@ public abstract class AbstractZipArchiver extends AbstractArchiver {
     // Renamed version of original file, if it exists
     private File renamedFile = null;
 
+    // The original file, opened to copy its entries in update mode
+    private ZipFile previousArchive;
+
     private File zipFile;
 
     private boolean success;
 
     private ConcurrentJarCreator zOut;
 
+    private ExecutorService compressionExecutor;
+
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private int compressionStrategy = Deflater.DEFAULT_STRATEGY;
+
+    private EntryCompressionPolicy entryCompressionPolicy;
+
+    private boolean rawCopyArchivedEntries = false;
+
+    private CompressedEntryCache compressedEntryCache;
+
+    private boolean pipelinedGather = false;
+
+    private int maxInMemorySegments = 0;
+
+    private ScatterMemoryBudget scatterMemoryBudget;
+
+    private boolean offHeapScatterBuffers = false;
+
+    private File spillDirectory;
+
+    private boolean reuseSpillFiles = false;
+
     protected ZipArchiveOutputStream zipArchiveOutputStream;
 
     public String getComment() {
@@ -143,6 +174,205 @@ public void setRecompressAddedZips(boolean recompressAddedZips) {
         this.recompressAddedZips = recompressAddedZips;
     }
 
+    /**
+     * Sets the executor used to compress the entries of the archive. The executor is not shut
+     * down by the archiver, so a single bounded executor could be shared by all the archives
+     * created at the same time.
+     * <p>
+     * If not set (the default), a new thread pool with one thread per available processor is
+     * created for each archive.</p>
+     *
+     * @param compressionExecutor the executor to use or {@code null} to use a dedicated thread pool
+     */
+    public void setCompressionExecutor(ExecutorService compressionExecutor) {
+        this.compressionExecutor = compressionExecutor;
+    }
+
+    public ExecutorService getCompressionExecutor() {
+        return compressionExecutor;
+    }
+
+    /**
+     * Sets the deflate level of the compressed entries, from {@link Deflater#NO_COMPRESSION} (0)
+     * to {@link Deflater#BEST_COMPRESSION} (9). Defaults to {@link Deflater#DEFAULT_COMPRESSION}.
+     *
+     * @param compressionLevel the deflate level
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the deflate strategy of the compressed entries: {@link Deflater#DEFAULT_STRATEGY} (the default),
+     * {@link Deflater#FILTERED} or {@link Deflater#HUFFMAN_ONLY}.
+     *
+     * @param compressionStrategy the deflate strategy
+     */
+    public void setCompressionStrategy(int compressionStrategy) {
+        if (compressionStrategy != Deflater.DEFAULT_STRATEGY
+                && compressionStrategy != Deflater.FILTERED
+                && compressionStrategy != Deflater.HUFFMAN_ONLY) {
+            throw new IllegalArgumentException("Invalid compression strategy: " + compressionStrategy);
+        }
+        this.compressionStrategy = compressionStrategy;
+    }
+
+    public int getCompressionStrategy() {
+        return compressionStrategy;
+    }
+
+    /**
+     * Sets the policy choosing, for each compressed entry, whether it is stored or deflated and
+     * with which level. It is evaluated by the compression threads, so it does not slow down
+     * the thread creating the archive.
+     *
+     * @param entryCompressionPolicy the policy, or {@code null} (the default) to deflate all the entries
+     * @see DefaultEntryCompressionPolicy
+     */
+    public void setEntryCompressionPolicy(EntryCompressionPolicy entryCompressionPolicy) {
+        this.entryCompressionPolicy = entryCompressionPolicy;
+    }
+
+    public EntryCompressionPolicy getEntryCompressionPolicy() {
+        return entryCompressionPolicy;
+    }
+
+    /**
+     * If true, the entries of archived file sets read from zip based archives are copied without
+     * being inflated and deflated again, when neither their content nor their compression method is
+     * changed, and the deflate option recorded in their general purpose flag is not faster than the
+     * {@link #setCompressionLevel(int) compression level}. The deflated entries are compressed again if
+     * the added zip files are not {@link #setRecompressAddedZips(boolean) recompressed} or a
+     * {@link #setEntryCompressionPolicy(EntryCompressionPolicy) policy} is set. Defaults to false.
+     *
+     * @param rawCopyArchivedEntries true to copy the compressed bytes of the archived entries
+     */
+    public void setRawCopyArchivedEntries(boolean rawCopyArchivedEntries) {
+        this.rawCopyArchivedEntries = rawCopyArchivedEntries;
+    }
+
+    public boolean isRawCopyArchivedEntries() {
+        return rawCopyArchivedEntries;
+    }
+
+    /**
+     * Sets the cache of deflated entries, which could be shared between builds to avoid compressing
+     * again the entries whose content did not change.
+     *
+     * @param compressedEntryCache the cache, or {@code null} (the default) to compress all the entries
+     */
+    public void setCompressedEntryCache(CompressedEntryCache compressedEntryCache) {
+        this.compressedEntryCache = compressedEntryCache;
+    }
+
+    public CompressedEntryCache getCompressedEntryCache() {
+        return compressedEntryCache;
+    }
+
+    /**
+     * If true, the entries are written to the archive while they are added and other entries are still
+     * being compressed, in the order they were added. Otherwise (the default) they are written once all of
+     * them have been compressed: the META-INF directory, the manifest and the directories first, then the
+     * entries grouped by compression thread.
+     *
+     * @param pipelinedGather true to write the entries as soon as they are compressed
+     * @see ConcurrentJarCreator#startWritingTo(ZipArchiveOutputStream)
+     */
+    public void setPipelinedGather(boolean pipelinedGather) {
+        this.pipelinedGather = pipelinedGather;
+    }
+
+    public boolean isPipelinedGather() {
+        return pipelinedGather;
+    }
+
+    /**
+     * Sets the maximum number of compressed entries held in memory while waiting to be written, when
+     * the entries are written as soon as they are compressed.
+     *
+     * @param maxInMemorySegments the maximum number of entries, or 0 (the default) for twice the number of threads
+     * @see ConcurrentJarCreator#setMaxInMemorySegments(int)
+     */
+    public void setMaxInMemorySegments(int maxInMemorySegments) {
+        if (maxInMemorySegments < 0) {
+            throw new IllegalArgumentException("Invalid number of in-memory segments: " + maxInMemorySegments);
+        }
+        this.maxInMemorySegments = maxInMemorySegments;
+    }
+
+    public int getMaxInMemorySegments() {
+        return maxInMemorySegments;
+    }
+
+    /**
+     * Sets the memory that the compressed entries may use before being written to temporary files. The
+     * same budget could be given to several archivers, to bound the memory used by all the archives
+     * created at the same time.
+     *
+     * @param scatterMemoryBudget the budget, or {@code null} (the default) for the
+     *                            {@link ScatterMemoryBudget#shared() budget shared} by the archives without
+     *                            a budget of their own
+     */
+    public void setScatterMemoryBudget(ScatterMemoryBudget scatterMemoryBudget) {
+        this.scatterMemoryBudget = scatterMemoryBudget;
+    }
+
+    public ScatterMemoryBudget getScatterMemoryBudget() {
+        return scatterMemoryBudget;
+    }
+
+    /**
+     * If true, the compressed entries waiting to be written to the archive are kept in pooled direct
+     * buffers instead of heap arrays, to reduce the garbage collection load of long-running processes.
+     * Defaults to false.
+     *
+     * @param offHeapScatterBuffers true to keep the compressed entries off-heap
+     * @see ConcurrentJarCreator#setOffHeapBackingStores(boolean)
+     */
+    public void setOffHeapScatterBuffers(boolean offHeapScatterBuffers) {
+        this.offHeapScatterBuffers = offHeapScatterBuffers;
+    }
+
+    public boolean isOffHeapScatterBuffers() {
+        return offHeapScatterBuffers;
+    }
+
+    /**
+     * Sets the directory of the temporary files the compressed entries are written to when they do not
+     * fit in memory, for instance a fast local disk when the default temporary directory is not.
+     *
+     * @param spillDirectory the directory, or {@code null} (the default) for the default temporary directory
+     */
+    public void setSpillDirectory(File spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    public File getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * If true, the temporary files the compressed entries are written to are reused by the next entries
+     * instead of being created and deleted for each one. Defaults to false.
+     *
+     * @param reuseSpillFiles true to reuse the temporary files
+     * @see ConcurrentJarCreator#setReuseSpillFiles(boolean)
+     */
+    public void setReuseSpillFiles(boolean reuseSpillFiles) {
+        this.reuseSpillFiles = reuseSpillFiles;
+    }
+
+    public boolean isReuseSpillFiles() {
+        return reuseSpillFiles;
+    }
+
     public void setUpdateMode(boolean update) {
         this.doUpdate = update;
         savedDoUpdate = doUpdate;
@@ -181,11 +411,38 @@ protected void execute() throws ArchiverException, IOException {
             createArchiveMain();
         }
 
+        if (previousArchive != null) {
+            addPreviousEntries(zOut);
+        }
+
         finalizeZipOutputStream(zOut);
     }
 
     protected void finalizeZipOutputStream(ConcurrentJarCreator zOut) throws IOException, ArchiverException {}
 
+    /**
+     * Creates the {@link ConcurrentJarCreator} used to write the archive, configured with
+     * the options of this archiver.
+     */
+    protected ConcurrentJarCreator createConcurrentJarCreator() throws IOException {
+        ConcurrentJarCreator creator = compressionExecutor != null
+                ? new ConcurrentJarCreator(recompressAddedZips, compressionExecutor)
+                : new ConcurrentJarCreator(recompressAddedZips, Runtime.getRuntime().availableProcessors());
+        creator.setCompressionLevel(compressionLevel);
+        creator.setCompressionStrategy(compressionStrategy);
+        creator.setEntryCompressionPolicy(entryCompressionPolicy);
+        creator.setCopyRawEntries(rawCopyArchivedEntries);
+        creator.setCompressedEntryCache(compressedEntryCache);
+        creator.setMaxInMemorySegments(maxInMemorySegments);
+        creator.setOffHeapBackingStores(offHeapScatterBuffers);
+        creator.setSpillDirectory(spillDirectory != null ? spillDirectory.toPath() : null);
+        creator.setReuseSpillFiles(reuseSpillFiles);
+        if (scatterMemoryBudget != null) {
+            creator.setMemoryBudget(scatterMemoryBudget);
+        }
+        return creator;
+    }
+
     private void createArchiveMain() throws ArchiverException, IOException {
         //noinspection deprecation
         if (!Archiver.DUPLICATES_SKIP.equals(duplicate)) {
@@ -251,22 +508,46 @@ private void createArchiveMain() throws ArchiverException, IOException {
             zipArchiveOutputStream.setMethod(
                     doCompress ? ZipArchiveOutputStream.DEFLATED : ZipArchiveOutputStream.STORED);
 
-            zOut = new ConcurrentJarCreator(
-                    recompressAddedZips, Runtime.getRuntime().availableProcessors());
+            zOut = createConcurrentJarCreator();
+            if (pipelinedGather) {
+                zOut.startWritingTo(zipArchiveOutputStream);
+            }
+
+            if (doUpdate) {
+                previousArchive = ZipFile.builder()
+                        .setFile(renamedFile)
+                        .setCharset(encoding != null ? Charset.forName(encoding) : Charset.defaultCharset())
+                        .get();
+            }
         }
         initZipOutputStream(zOut);
 
         // Add the new files to the archive.
         addResources(iter, zOut);
 
-        // If we've been successful on an update, delete the
-        // temporary file
-        if (doUpdate) {
-            if (!renamedFile.delete()) {
-                getLogger().warn("Warning: unable to delete temporary file " + renamedFile.getName());
+        success = true;
+    }
+
+    /**
+     * Copies the entries of the original archive that have not been replaced by a new resource, without
+     * decompressing them. Used in update mode, once all the new resources have been added and before the archive
+     * is finalized.
+     */
+    private void addPreviousEntries(ConcurrentJarCreator zOut) throws IOException {
+        Enumeration<ZipArchiveEntry> previousEntries = previousArchive.getEntriesInPhysicalOrder();
+        while (previousEntries.hasMoreElements()) {
+            ZipArchiveEntry previousEntry = previousEntries.nextElement();
+            String name = previousEntry.getName();
+            if (previousEntry.isDirectory()) {
+                if (!addedDirs.update(name)) {
+                    zOut.addArchiveEntry(new ZipArchiveEntry(previousEntry), () -> Streams.EMPTY_INPUTSTREAM, false);
+                }
+            } else if (!entries.containsKey(name)) {
+                getLogger().debug("keeping entry " + name);
+                entries.put(name, name);
+                zOut.addRawArchiveEntry(new ZipArchiveEntry(previousEntry), previousArchive, previousEntry, true);
             }
         }
-        success = true;
     }
 
     /**
@@ -402,10 +683,14 @@ protected void zipFile(
             ze.setMethod(doCompress ? ZipArchiveEntry.DEFLATED : ZipArchiveEntry.STORED);
             ze.setUnixMode(UnixStat.FILE_FLAG | mode);
 
+            ZipArchiveEntry previousEntry = previousArchive != null ? previousArchive.getEntry(vPath) : null;
             if (ze.isUnixSymlink()) {
                 final byte[] bytes = encodeArchiveEntry(symlinkDestination, getEncoding());
                 InputStreamSupplier payload = () -> new ByteArrayInputStream(bytes);
                 zOut.addArchiveEntry(ze, payload, true);
+            } else if (previousEntry != null) {
+                // copied from the original archive if the content is unchanged
+                zOut.addArchiveEntry(ze, in, previousArchive, previousEntry, addInParallel);
             } else {
                 zOut.addArchiveEntry(ze, in, addInParallel);
             }
@@ -431,13 +716,16 @@ protected void zipFile(final ArchiveEntry entry, ConcurrentJarCreator zOut, Stri
 
         final boolean b = entry.getResource() instanceof SymlinkDestinationSupplier;
         String symlinkTarget = b ? ((SymlinkDestinationSupplier) entry.getResource()).getSymlinkDestination() : null;
-        InputStreamSupplier in = () -> {
-            try {
-                return entry.getInputStream();
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
-        };
+        File contentFile = symlinkTarget == null ? entry.getContentFile() : null;
+        InputStreamSupplier in = contentFile != null
+                ? new FileContentSupplier(contentFile.toPath())
+                : () -> {
+                    try {
+                        return entry.getInputStream();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                };
         try {
             zipFile(
                     in,
@@ -585,6 +873,7 @@ protected void cleanUp() throws IOException {
         entries.clear();
         addingNewFiles = false;
         doUpdate = savedDoUpdate;
+        previousArchive = null;
         success = false;
         zOut = null;
         renamedFile = null;
@@ -648,13 +937,24 @@ protected boolean revert(StringBuffer messageBuffer) {
     protected void close() throws IOException {
         // Close the output stream.
         try {
-            if (zipArchiveOutputStream != null) {
-                if (zOut != null) {
-                    zOut.writeTo(zipArchiveOutputStream);
-                } else {
-                    zipArchiveOutputStream.close();
+            try {
+                if (zipArchiveOutputStream != null) {
+                    if (zOut != null) {
+                        zOut.writeTo(zipArchiveOutputStream);
+                    } else {
+                        zipArchiveOutputStream.close();
+                    }
+                    zipArchiveOutputStream = null;
+                }
+            } finally {
+                if (previousArchive != null) {
+                    previousArchive.close();
                 }
-                zipArchiveOutputStream = null;
+            }
+            // If we've been successful on an update, delete the
+            // temporary file
+            if (success && renamedFile != null && !renamedFile.delete()) {
+                getLogger().warn("Warning: unable to delete temporary file " + renamedFile.getName());
             }
         } catch (IOException ex) {
             // If we're in this finally clause because of an
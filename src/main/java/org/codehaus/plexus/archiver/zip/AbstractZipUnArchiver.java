@@ -19,11 +19,26 @@
 import javax.annotation.Nonnull;
 
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipFile;
@@ -43,6 +58,8 @@ public abstract class AbstractZipUnArchiver extends AbstractUnArchiver {
 
     private long maxOutputSize = Long.MAX_VALUE;
 
+    private int extractionThreads = 1;
+
     public AbstractZipUnArchiver() {}
 
     public AbstractZipUnArchiver(final File sourceFile) {
@@ -77,6 +94,34 @@ public void setMaxOutputSize(long maxOutputSize) {
         this.maxOutputSize = maxOutputSize;
     }
 
+    /**
+     * Sets the number of threads extracting the entries, defaults to 1.
+     * <p>
+     * With more than one thread, the directories are created first, then the files are inflated and written
+     * by the threads, and the symbolic links are created last. The file mappers and the
+     * {@link #extractFile(File, File, InputStream, String, Date, boolean, Integer, String,
+     * org.codehaus.plexus.components.io.filemappers.FileMapper[]) extractFile} method are then called
+     * concurrently.
+     * </p>
+     *
+     * @param extractionThreads the number of threads, must be greater than 0
+     * @throws IllegalArgumentException if the number of threads is less or equal to 0
+     * @since 5.0.0
+     */
+    public void setExtractionThreads(int extractionThreads) {
+        if (extractionThreads <= 0) {
+            throw new IllegalArgumentException("Invalid number of extraction threads: " + extractionThreads);
+        }
+        this.extractionThreads = extractionThreads;
+    }
+
+    /**
+     * @since 5.0.0
+     */
+    public int getExtractionThreads() {
+        return extractionThreads;
+    }
+
     private static class ZipEntryFileInfo implements PlexusIoResource {
 
         private final org.apache.commons.compress.archivers.zip.ZipFile zipFile;
@@ -152,49 +197,22 @@ private String resolveSymlink(ZipFile zf, ZipArchiveEntry ze) throws IOException
 
     @Override
     protected void execute(final String path, final File outputDirectory) throws ArchiverException {
+        execute(Collections.singleton(path), outputDirectory);
+    }
+
+    @Override
+    protected void execute(final Collection<String> paths, final File outputDirectory) throws ArchiverException {
         getLogger().debug("Expanding: " + getSourceFile() + " into " + outputDirectory);
         try (ZipFile zipFile = ZipFile.builder()
                 .setFile(getSourceFile())
                 .setCharset(encoding)
                 .setUseUnicodeExtraFields(true)
                 .get()) {
-            long remainingSpace = maxOutputSize;
-            final Enumeration<ZipArchiveEntry> e = zipFile.getEntriesInPhysicalOrder();
-
-            while (e.hasMoreElements()) {
-                final ZipArchiveEntry ze = e.nextElement();
-                final ZipEntryFileInfo fileInfo = new ZipEntryFileInfo(zipFile, ze);
-                if (!isSelected(ze.getName(), fileInfo)) {
-                    continue;
-                }
-
-                if (ze.getName().startsWith(path)) {
-                    try (InputStream in = zipFile.getInputStream(ze)) {
-                        BoundedInputStream bis = BoundedInputStream.builder()
-                                .setInputStream(in)
-                                .setMaxCount(remainingSpace + 1)
-                                .get();
-                        long time = ze.getTime();
-                        if (time <= 0) {
-                            time = PlexusIoResource.UNKNOWN_MODIFICATION_DATE;
-                        }
-                        extractFile(
-                                getSourceFile(),
-                                outputDirectory,
-                                bis,
-                                ze.getName(),
-                                new Date(time),
-                                ze.isDirectory(),
-                                ze.getUnixMode() != 0 ? ze.getUnixMode() : null,
-                                resolveSymlink(zipFile, ze),
-                                getFileMappers());
-
-                        remainingSpace -= bis.getCount();
-                        if (remainingSpace < 0) {
-                            throw new ArchiverException("Maximum output size limit reached");
-                        }
-                    }
-                }
+            final List<ZipArchiveEntry> entries = selectEntries(zipFile, prefixes(paths));
+            if (extractionThreads > 1) {
+                extractInParallel(zipFile, entries, outputDirectory);
+            } else {
+                extractSequentially(zipFile, entries, outputDirectory);
             }
             getLogger().debug("expand complete");
         } catch (final IOException ioe) {
@@ -202,4 +220,213 @@ protected void execute(final String path, final File outputDirectory) throws Arc
                     "Error while expanding " + getSourceFile().getAbsolutePath(), ioe);
         }
     }
+
+    /**
+     * Returns the entries whose name starts with one of the prefixes, found in a sorted index of the names of
+     * the central directory unless all the entries are selected.
+     */
+    private static List<ZipArchiveEntry> selectEntries(final ZipFile zipFile, final List<String> prefixes) {
+        if (prefixes.contains("")) {
+            return Collections.list(zipFile.getEntriesInPhysicalOrder());
+        }
+        final List<String> names = new ArrayList<>();
+        final Enumeration<ZipArchiveEntry> e = zipFile.getEntries();
+        while (e.hasMoreElements()) {
+            names.add(e.nextElement().getName());
+        }
+        Collections.sort(names);
+
+        final List<ZipArchiveEntry> entries = new ArrayList<>();
+        for (String prefix : prefixes) {
+            int i = Collections.binarySearch(names, prefix);
+            for (i = i < 0 ? -i - 1 : i; i < names.size() && names.get(i).startsWith(prefix); i++) {
+                // entries with the same name are returned together
+                if (i == 0 || !names.get(i).equals(names.get(i - 1))) {
+                    for (ZipArchiveEntry ze : zipFile.getEntries(names.get(i))) {
+                        entries.add(ze);
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    private void extractSequentially(
+            final ZipFile zipFile, final List<ZipArchiveEntry> entries, final File outputDirectory)
+            throws IOException, ArchiverException {
+        long remainingSpace = maxOutputSize;
+
+        for (ZipArchiveEntry ze : entries) {
+            final ZipEntryFileInfo fileInfo = new ZipEntryFileInfo(zipFile, ze);
+            if (!isSelected(ze.getName(), fileInfo)) {
+                continue;
+            }
+
+            try (InputStream in = zipFile.getInputStream(ze)) {
+                BoundedInputStream bis = BoundedInputStream.builder()
+                        .setInputStream(in)
+                        .setMaxCount(remainingSpace + 1)
+                        .get();
+                extractEntry(zipFile, ze, outputDirectory, bis);
+
+                remainingSpace -= bis.getCount();
+                if (remainingSpace < 0) {
+                    throw new ArchiverException("Maximum output size limit reached");
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the directories, then extracts the files with several threads, and creates the symbolic
+     * links last. Entries with the same name, regardless of the case, are extracted in order by the same
+     * thread.
+     */
+    private void extractInParallel(
+            final ZipFile zipFile, final List<ZipArchiveEntry> entries, final File outputDirectory)
+            throws IOException, ArchiverException {
+        final List<ZipArchiveEntry> symlinks = new ArrayList<>();
+        final Map<String, List<ZipArchiveEntry>> files = new LinkedHashMap<>();
+        final AtomicLong remainingSpace = new AtomicLong(maxOutputSize);
+
+        for (ZipArchiveEntry ze : entries) {
+            if (!isSelected(ze.getName(), new ZipEntryFileInfo(zipFile, ze))) {
+                continue;
+            }
+            if (ze.isUnixSymlink()) {
+                symlinks.add(ze);
+            } else if (ze.isDirectory()) {
+                extractLimited(zipFile, ze, outputDirectory, remainingSpace);
+            } else {
+                files.computeIfAbsent(ze.getName().toLowerCase(Locale.ROOT), name -> new ArrayList<>(1))
+                        .add(ze);
+            }
+        }
+
+        final List<List<ZipArchiveEntry>> groups = new ArrayList<>(files.values());
+        final AtomicInteger nextGroup = new AtomicInteger();
+        final AtomicBoolean failed = new AtomicBoolean();
+        final int threads = Math.min(extractionThreads, groups.size());
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+        try {
+            final List<Future<Void>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        int group;
+                        while (!failed.get() && (group = nextGroup.getAndIncrement()) < groups.size()) {
+                            for (ZipArchiveEntry ze : groups.get(group)) {
+                                extractLimited(zipFile, ze, outputDirectory, remainingSpace);
+                            }
+                        }
+                        return null;
+                    } catch (IOException | RuntimeException ex) {
+                        failed.set(true);
+                        throw ex;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ArchiverException("Interrupted while expanding " + getSourceFile().getAbsolutePath(), ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ArchiverException("Error while expanding " + getSourceFile().getAbsolutePath(), cause);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (ZipArchiveEntry ze : symlinks) {
+            extractLimited(zipFile, ze, outputDirectory, remainingSpace);
+        }
+    }
+
+    private void extractLimited(
+            final ZipFile zipFile,
+            final ZipArchiveEntry ze,
+            final File outputDirectory,
+            final AtomicLong remainingSpace)
+            throws IOException, ArchiverException {
+        try (SharedLimitInputStream in = new SharedLimitInputStream(zipFile.getInputStream(ze), remainingSpace)) {
+            extractEntry(zipFile, ze, outputDirectory, in);
+            if (in.limitReached) {
+                throw new ArchiverException("Maximum output size limit reached");
+            }
+        }
+    }
+
+    private void extractEntry(
+            final ZipFile zipFile, final ZipArchiveEntry ze, final File outputDirectory, final InputStream in)
+            throws IOException, ArchiverException {
+        long time = ze.getTime();
+        if (time <= 0) {
+            time = PlexusIoResource.UNKNOWN_MODIFICATION_DATE;
+        }
+        extractFile(
+                getSourceFile(),
+                outputDirectory,
+                in,
+                ze.getName(),
+                new Date(time),
+                ze.isDirectory(),
+                ze.getUnixMode() != 0 ? ze.getUnixMode() : null,
+                resolveSymlink(zipFile, ze),
+                getFileMappers(),
+                ze.getSize(),
+                ze.getCrc());
+    }
+
+    /**
+     * Takes the bytes read from the space remaining for all the entries. Once the space is exhausted, the
+     * stream ends early, and the entry is reported as exceeding the limit.
+     */
+    private static final class SharedLimitInputStream extends FilterInputStream {
+
+        private final AtomicLong remainingSpace;
+
+        private boolean limitReached;
+
+        SharedLimitInputStream(InputStream in, AtomicLong remainingSpace) {
+            super(in);
+            this.remainingSpace = remainingSpace;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (limitReached) {
+                return -1;
+            }
+            final int b = super.read();
+            if (b != -1) {
+                consumed(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (limitReached) {
+                return -1;
+            }
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                consumed(read);
+            }
+            return read;
+        }
+
+        private void consumed(long count) {
+            if (remainingSpace.addAndGet(-count) < 0) {
+                limitReached = true;
+            }
+        }
+    }
 }
@@ -0,0 +1,283 @@
+/*
+ * Copyright MojoHaus and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.codehaus.plexus.archiver.zip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk cache of deflated zip entries, keyed by the content of the entries and the compression
+ * settings, so the entries that did not change since a previous build are not compressed again.
+ * <p>
+ * The cache directory can be shared by several builds running at the same time: entries are written
+ * to a temporary file that is atomically moved in place. The total size of the cache is bounded; the
+ * least recently used entries are evicted when it is exceeded.</p>
+ *
+ * @see AbstractZipArchiver#setCompressedEntryCache(CompressedEntryCache)
+ * @since 5.0.0
+ */
+public class CompressedEntryCache {
+
+    /**
+     * The default size of the largest entry content that is cached.
+     */
+    public static final int DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 3 * Long.BYTES;
+
+    private static final String ENTRY_SUFFIX = ".entry";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final long STALE_TEMP_FILE_AGE = TimeUnit.DAYS.toMillis(1);
+
+    private final Path directory;
+
+    private final long maxSize;
+
+    private int maxEntrySize = DEFAULT_MAX_ENTRY_SIZE;
+
+    private final AtomicLong writtenSinceEviction = new AtomicLong();
+
+    /**
+     * A deflated entry read from the cache.
+     */
+    static final class CachedEntry {
+
+        final long crc;
+
+        final long size;
+
+        final byte[] compressed;
+
+        CachedEntry(long crc, long size, byte[] compressed) {
+            this.crc = crc;
+            this.size = size;
+            this.compressed = compressed;
+        }
+    }
+
+    /**
+     * Creates a cache stored in the given directory.
+     *
+     * @param directory the directory of the cache, created if needed
+     * @param maxSize the maximum size, in bytes, of the cache
+     */
+    public CompressedEntryCache(Path directory, long maxSize) {
+        this.directory = Objects.requireNonNull(directory, "directory");
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Sets the size of the largest entry content that is cached. Larger entries are always compressed,
+     * as their content would have to be held in memory to compute the key before compressing it.
+     * Defaults to {@link #DEFAULT_MAX_ENTRY_SIZE}.
+     */
+    public void setMaxEntrySize(int maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Computes the key of an entry from its content and the settings used to compress it.
+     */
+    String key(byte[] content, int length, int level, int strategy) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(content, 0, length);
+        digest.update(ByteBuffer.allocate(3 * Integer.BYTES)
+                .putInt(FORMAT_VERSION)
+                .putInt(level)
+                .putInt(strategy)
+                .array());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns the cached entry with the given key, or {@code null} if there is none.
+     */
+    CachedEntry get(String key) {
+        Path file = file(key);
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file);
+        } catch (IOException e) {
+            // not cached, or evicted by a concurrent build
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (data.length < HEADER_SIZE || buffer.getLong(2 * Long.BYTES) != data.length - HEADER_SIZE) {
+            // should not happen as the files are moved in place once written: ignore the entry
+            deleteQuietly(file);
+            return null;
+        }
+        try {
+            // marks the entry as recently used
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // the entry is still usable
+        }
+        byte[] compressed = new byte[data.length - HEADER_SIZE];
+        System.arraycopy(data, HEADER_SIZE, compressed, 0, compressed.length);
+        return new CachedEntry(buffer.getLong(0), buffer.getLong(Long.BYTES), compressed);
+    }
+
+    /**
+     * Stores a deflated entry. Failures are ignored: the cache is only an optimization.
+     */
+    void put(String key, long crc, long size, byte[] compressed, int length) {
+        Path file = file(key);
+        Path temp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            temp = Files.createTempFile(file.getParent(), key, TEMP_SUFFIX);
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                out.write(ByteBuffer.allocate(HEADER_SIZE)
+                        .putLong(crc)
+                        .putLong(size)
+                        .putLong(length)
+                        .array());
+                out.write(compressed, 0, length);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+        } catch (IOException e) {
+            // the entry is not cached
+        } finally {
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+        }
+
+        if (writtenSinceEviction.addAndGet(HEADER_SIZE + length) > maxSize / 10) {
+            writtenSinceEviction.set(0);
+            evict();
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the size of the cache is 90% of its maximum size.
+     * Several builds may evict entries at the same time: the files already deleted are just skipped.
+     */
+    synchronized void evict() {
+        List<CacheFile> files = new ArrayList<>();
+        long totalSize = 0;
+        long now = System.currentTimeMillis();
+        try (Stream<Path> paths = Files.walk(directory, 2)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+                String name = path.getFileName().toString();
+                if (name.endsWith(ENTRY_SUFFIX)) {
+                    files.add(new CacheFile(path, attributes));
+                    totalSize += attributes.size();
+                } else if (name.endsWith(TEMP_SUFFIX)
+                        && now - attributes.lastModifiedTime().toMillis() > STALE_TEMP_FILE_AGE) {
+                    // left by a build that has been killed while writing an entry
+                    deleteQuietly(path);
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            return;
+        }
+        if (totalSize <= maxSize) {
+            return;
+        }
+
+        files.sort(Comparator.comparing(file -> file.attributes.lastModifiedTime()));
+        long targetSize = maxSize - maxSize / 10;
+        for (int i = 0; i < files.size() && totalSize > targetSize; i++) {
+            CacheFile file = files.get(i);
+            deleteQuietly(file.path);
+            totalSize -= file.attributes.size();
+        }
+    }
+
+    private static final class CacheFile {
+
+        private final Path path;
+
+        private final BasicFileAttributes attributes;
+
+        CacheFile(Path path, BasicFileAttributes attributes) {
+            this.path = path;
+            this.attributes = attributes;
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ENTRY_SUFFIX);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // may be in use, it will be deleted by a later eviction
+        }
+    }
+}
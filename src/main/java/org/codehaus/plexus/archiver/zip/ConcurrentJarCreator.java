@@ -18,62 +18,202 @@
 package org.codehaus.plexus.archiver.zip;
 
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.SequenceInputStream;
-import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 
-import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
 import org.apache.commons.compress.archivers.zip.ScatterZipOutputStream;
 import org.apache.commons.compress.archivers.zip.StreamCompressor;
+import org.apache.commons.compress.archivers.zip.X000A_NTFS;
+import org.apache.commons.compress.archivers.zip.X5455_ExtendedTimestamp;
+import org.apache.commons.compress.archivers.zip.Zip64ExtendedInformationExtraField;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
-import org.apache.commons.compress.archivers.zip.ZipArchiveEntryRequest;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipExtraField;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.compress.parallel.InputStreamSupplier;
 import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
 import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.codehaus.plexus.archiver.util.Streams;
 
-import static org.apache.commons.compress.archivers.zip.ZipArchiveEntryRequest.createZipArchiveEntryRequest;
-
 public class ConcurrentJarCreator {
 
+    /**
+     * The size of the compressed content of a segment above which it is written to a temporary file.
+     */
+    private static final int SEGMENT_THRESHOLD = 1024 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
     private final boolean compressAddedZips;
 
-    private final ScatterZipOutputStream metaInfDir;
+    private final ZipEntryScatterStream metaInfDir;
+
+    private final ZipEntryScatterStream manifest;
+
+    private final ZipEntryScatterStream directories;
+
+    private final ZipEntryScatterStream synchronousEntries;
+
+    private ScatterMemoryBudget memoryBudget = ScatterMemoryBudget.shared();
+
+    private boolean offHeapBackingStores;
 
-    private final ScatterZipOutputStream manifest;
+    private Path spillDirectory;
 
-    private final ScatterZipOutputStream directories;
+    private boolean reuseSpillFiles;
 
-    private final ScatterZipOutputStream synchronousEntries;
+    private SpillFiles spillFiles = new SpillFiles(null, false);
 
-    private final ParallelScatterZipCreator parallelScatterZipCreator;
+    private final AtomicInteger backingStores = new AtomicInteger();
+
+    private final AtomicInteger spills = new AtomicInteger();
 
     private final ExecutorService es;
 
+    /**
+     * Indicates if {@link #es} has been created by this instance and must be shut down by it.
+     */
+    private final boolean shutdownExecutor;
+
+    private final Deque<Future<?>> futures = new ConcurrentLinkedDeque<>();
+
+    /**
+     * The scatter streams used by the parallel entries, one per worker thread.
+     */
+    private final Map<Thread, ZipEntryScatterStream> workerStreams = new ConcurrentHashMap<>();
+
+    private final Deque<ZipEntryScatterStream> parallelStreams = new ConcurrentLinkedDeque<>();
+
+    /**
+     * The segments waiting to be written to the target archive in pipelined mode, in the order they were added.
+     */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    /**
+     * The segment of the last entries added synchronously in pipelined mode, until an entry is added in parallel.
+     */
+    private Segment synchronousSegment;
+
+    /**
+     * The archive the entries are written to while they are added, in pipelined mode.
+     */
+    private ZipArchiveOutputStream pipelineTarget;
+
+    private final int nThreads;
+
+    private int maxInMemorySegments;
+
+    private final long startedAt = System.currentTimeMillis();
+
+    private long compressionElapsed;
+
+    private long mergingElapsed;
+
     private long zipCloseElapsed;
 
-    private static class DeferredSupplier implements ScatterGatherBackingStoreSupplier {
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private int compressionStrategy = Deflater.DEFAULT_STRATEGY;
+
+    private EntryCompressionPolicy entryCompressionPolicy;
+
+    private boolean copyRawEntries;
+
+    private CompressedEntryCache compressedEntryCache;
+
+    private final AtomicInteger cacheHits = new AtomicInteger();
+
+    private final AtomicInteger cacheMisses = new AtomicInteger();
 
-        private int threshold;
+    /**
+     * A parallel entry, or the consecutive synchronous entries, compressed in their own scatter stream in pipelined
+     * mode.
+     */
+    private static final class Segment {
+
+        private final ZipEntryScatterStream stream;
+
+        private Future<?> compressed;
+
+        private boolean writing;
+
+        private boolean discarded;
+
+        Segment(ZipEntryScatterStream stream) {
+            this.stream = stream;
+        }
+
+        /**
+         * Called by the worker thread before compressing the entry.
+         *
+         * @return {@code false} if the segment has already been discarded
+         */
+        synchronized boolean startWriting() {
+            if (discarded) {
+                return false;
+            }
+            writing = true;
+            return true;
+        }
 
-        DeferredSupplier(int threshold) {
-            this.threshold = threshold;
+        /**
+         * Called by the worker thread once the entry is compressed.
+         */
+        synchronized void endWriting() {
+            writing = false;
+            notifyAll();
         }
 
-        @Override
-        public ScatterGatherBackingStore get() throws IOException {
-            return new DeferredScatterOutputStream(threshold);
+        /**
+         * Closes the stream, once the worker thread no longer writes to it if the entry is being compressed.
+         */
+        synchronized void discard() throws IOException {
+            discarded = true;
+            boolean interrupted = false;
+            while (writing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            stream.close();
         }
     }
 
+    /**
+     * Writes an entry to a scatter stream.
+     */
+    @FunctionalInterface
+    private interface EntryWriter {
+
+        void writeTo(ZipEntryScatterStream stream) throws IOException;
+    }
+
     public static ScatterZipOutputStream createDeferred(
             ScatterGatherBackingStoreSupplier scatterGatherBackingStoreSupplier) throws IOException {
         ScatterGatherBackingStore bs = scatterGatherBackingStoreSupplier.get();
@@ -115,14 +255,191 @@ public ConcurrentJarCreator(int nThreads) throws IOException {
      * @throws IOException
      */
     public ConcurrentJarCreator(boolean compressAddedZips, int nThreads) throws IOException {
+        this(compressAddedZips, Executors.newFixedThreadPool(nThreads), nThreads, true);
+    }
+
+    /**
+     * Creates a new {@code ConcurrentJarCreator} instance that compresses the parallel entries
+     * using the given executor.
+     * <p>
+     * The executor is not owned by the created instance: it is not shut down once the archive
+     * has been written, so it could be shared between several archives created at the same time.</p>
+     *
+     * @param compressAddedZips Indicates if entries that are zip files should be compressed.
+     *                          See {@link #ConcurrentJarCreator(boolean, int)}
+     * @param executorService The executor used to compress the entries added in parallel
+     *
+     * @throws IOException
+     */
+    public ConcurrentJarCreator(boolean compressAddedZips, ExecutorService executorService) throws IOException {
+        this(compressAddedZips, executorService, Runtime.getRuntime().availableProcessors(), false);
+    }
+
+    private ConcurrentJarCreator(
+            boolean compressAddedZips, ExecutorService executorService, int nThreads, boolean shutdownExecutor)
+            throws IOException {
         this.compressAddedZips = compressAddedZips;
-        ScatterGatherBackingStoreSupplier defaultSupplier = new DeferredSupplier(10000000 / nThreads);
-        metaInfDir = createDeferred(defaultSupplier);
-        manifest = createDeferred(defaultSupplier);
-        directories = createDeferred(defaultSupplier);
-        synchronousEntries = createDeferred(defaultSupplier);
-        es = Executors.newFixedThreadPool(nThreads);
-        parallelScatterZipCreator = new ParallelScatterZipCreator(es, defaultSupplier);
+        this.es = executorService;
+        this.shutdownExecutor = shutdownExecutor;
+        this.nThreads = nThreads;
+        metaInfDir = new ZipEntryScatterStream(this::createBackingStore);
+        manifest = new ZipEntryScatterStream(this::createBackingStore);
+        directories = new ZipEntryScatterStream(this::createBackingStore);
+        synchronousEntries = new ZipEntryScatterStream(this::createBackingStore);
+    }
+
+    /**
+     * Sets the memory that the compressed entries may use before being written to temporary files.
+     * The same budget could be given to several instances, to bound the memory used by all the
+     * archives created at the same time. It should be set before any entry is added.
+     * <p>
+     * Defaults to the {@link ScatterMemoryBudget#shared() budget shared} by all the instances without a
+     * budget of their own, derived from the maximum heap size.</p>
+     *
+     * @param memoryBudget the budget
+     */
+    public void setMemoryBudget(ScatterMemoryBudget memoryBudget) {
+        this.memoryBudget = Objects.requireNonNull(memoryBudget, "memoryBudget");
+    }
+
+    /**
+     * Sets whether the compressed entries are kept off-heap, in direct buffers pooled by the
+     * {@link #setMemoryBudget(ScatterMemoryBudget) memory budget}, instead of heap arrays. Once the budget
+     * is exhausted they are written to temporary files through a {@link java.nio.channels.FileChannel}.
+     * This avoids promoting large compressed entries to the old generation in long-running processes.
+     * It should be set before any entry is added.
+     *
+     * @param offHeapBackingStores {@code true} to keep the compressed entries in direct buffers
+     */
+    public void setOffHeapBackingStores(boolean offHeapBackingStores) {
+        this.offHeapBackingStores = offHeapBackingStores;
+    }
+
+    /**
+     * Sets the directory of the temporary files the compressed entries are written to once they no
+     * longer fit in memory. It should be set before any entry is added.
+     *
+     * @param spillDirectory the directory, or {@code null} (the default) for the default temporary directory
+     */
+    public void setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+        this.spillFiles = new SpillFiles(spillDirectory, reuseSpillFiles);
+    }
+
+    /**
+     * Sets whether the temporary files are reused. When they are, a temporary file is not deleted once
+     * its content has been written to the archive, but overwritten by the next compressed entries to
+     * spill: there are only as many temporary files as entries spilled at the same time, roughly one per
+     * thread, written sequentially and deleted once the archive is written. It should be set before any
+     * entry is added.
+     *
+     * @param reuseSpillFiles {@code true} to reuse the temporary files
+     */
+    public void setReuseSpillFiles(boolean reuseSpillFiles) {
+        this.reuseSpillFiles = reuseSpillFiles;
+        this.spillFiles = new SpillFiles(spillDirectory, reuseSpillFiles);
+    }
+
+    /**
+     * Sets the deflate level used for all the compressed entries, including the {@code META-INF}
+     * ones. It should be set before any entry is added.
+     *
+     * @param compressionLevel the level, from {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION},
+     *                         or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Sets the deflate strategy used for all the compressed entries. It should be set before any
+     * entry is added.
+     *
+     * @param compressionStrategy one of {@link Deflater#DEFAULT_STRATEGY}, {@link Deflater#FILTERED}
+     *                            or {@link Deflater#HUFFMAN_ONLY}
+     */
+    public void setCompressionStrategy(int compressionStrategy) {
+        if (compressionStrategy != Deflater.DEFAULT_STRATEGY
+                && compressionStrategy != Deflater.FILTERED
+                && compressionStrategy != Deflater.HUFFMAN_ONLY) {
+            throw new IllegalArgumentException("Invalid compression strategy: " + compressionStrategy);
+        }
+        this.compressionStrategy = compressionStrategy;
+    }
+
+    /**
+     * Sets the policy choosing the compression of each entry added with
+     * {@link #addArchiveEntry(ZipArchiveEntry, InputStreamSupplier, boolean)} that is not a
+     * {@code META-INF} entry. The policy is called by the threads compressing the entries and
+     * is only consulted for the entries using the {@link ZipEntry#DEFLATED} method.
+     *
+     * @param entryCompressionPolicy the policy, or {@code null} to compress all the entries with the same level
+     */
+    public void setEntryCompressionPolicy(EntryCompressionPolicy entryCompressionPolicy) {
+        this.entryCompressionPolicy = entryCompressionPolicy;
+    }
+
+    /**
+     * Sets whether the entries read from another zip archive are copied without being inflated
+     * and deflated again. The compressed bytes, CRC and sizes of the source entry are copied when
+     * its content is not transformed and its compression method is the one of the added entry. The
+     * deflated entries are only copied if the added zip files are compressed and no
+     * {@link #setEntryCompressionPolicy(EntryCompressionPolicy) policy} is set.
+     *
+     * @param copyRawEntries {@code true} to copy the compressed bytes of the source entries
+     */
+    public void setCopyRawEntries(boolean copyRawEntries) {
+        this.copyRawEntries = copyRawEntries;
+    }
+
+    /**
+     * Sets the cache of deflated entries. When set, the deflated entries whose content is found in the
+     * cache are not compressed again, and the other ones are added to the cache once compressed.
+     *
+     * @param compressedEntryCache the cache, or {@code null} to compress all the entries
+     */
+    public void setCompressedEntryCache(CompressedEntryCache compressedEntryCache) {
+        this.compressedEntryCache = compressedEntryCache;
+    }
+
+    /**
+     * Starts writing the entries to the target archive while they are added, instead of once all of them have
+     * been compressed. {@link #writeTo(ZipArchiveOutputStream)} must then be called with the same archive to write
+     * the remaining entries. It should be called before any entry is added.
+     * <p>
+     * In pipelined mode each parallel entry is compressed in its own segment, and the consecutive synchronous
+     * entries in a shared one. The client thread adding the entries writes each segment once it is compressed and
+     * the previous ones are written, and releases it. All the entries are then written in the order they were
+     * added, whatever the scheduling of the compression threads: the {@code META-INF} directory and the manifest
+     * are only written first if they are added first, as {@link org.codehaus.plexus.archiver.jar.JarArchiver}
+     * does.</p>
+     *
+     * @param targetStream the archive to write the entries to
+     * @see #setMaxInMemorySegments(int)
+     * @since 5.0.0
+     */
+    public void startWritingTo(ZipArchiveOutputStream targetStream) {
+        this.pipelineTarget = Objects.requireNonNull(targetStream, "targetStream");
+    }
+
+    /**
+     * Sets the maximum number of segments waiting to be written in pipelined mode, each held in memory with
+     * up to 1 MB of compressed content. Once it is reached, the client thread waits for the oldest segment to be
+     * compressed and writes it before adding the next entry, so the memory and the temporary files used by the
+     * compressed entries waiting to be written are bounded. It should be set before any entry is added.
+     *
+     * @param maxInMemorySegments the maximum number of segments, or {@code 0} (the default) for twice
+     *                            the number of threads
+     * @see #startWritingTo(ZipArchiveOutputStream)
+     */
+    public void setMaxInMemorySegments(int maxInMemorySegments) {
+        if (maxInMemorySegments < 0) {
+            throw new IllegalArgumentException("Invalid number of in-memory segments: " + maxInMemorySegments);
+        }
+        this.maxInMemorySegments = maxInMemorySegments;
     }
 
     /**
@@ -150,70 +467,637 @@ public void addArchiveEntry(
             if (zipArchiveEntry.isDirectory()) {
                 zipArchiveEntry.setMethod(ZipEntry.STORED);
             }
-            metaInfDir.addArchiveEntry(createZipArchiveEntryRequest(zipArchiveEntry, source));
+            addEntry(synchronousStream(metaInfDir), zipArchiveEntry, source.get());
         } else if ("META-INF/MANIFEST.MF".equals(zipEntryName)) {
-            manifest.addArchiveEntry(createZipArchiveEntryRequest(zipArchiveEntry, source));
+            addEntry(synchronousStream(manifest), zipArchiveEntry, source.get());
         } else if (zipArchiveEntry.isDirectory() && !zipArchiveEntry.isUnixSymlink()) {
-            directories.addArchiveEntry(createZipArchiveEntryRequest(zipArchiveEntry, () -> Streams.EMPTY_INPUTSTREAM));
+            addEntry(synchronousStream(directories), zipArchiveEntry, Streams.EMPTY_INPUTSTREAM);
+        } else if (method == ZipEntry.STORED && source instanceof FileContentSupplier file) {
+            // only the CRC is computed now, the file is copied to the target when the archive is written
+            if (addInParallel) {
+                addInParallel(stream -> stream.addStoredFileEntry(zipArchiveEntry, file.getFile()));
+            } else {
+                synchronousStream(synchronousEntries).addStoredFileEntry(zipArchiveEntry, file.getFile());
+            }
+        } else if (addInParallel) {
+            addInParallel(stream -> createEntry(stream, zipArchiveEntry, source));
+        } else {
+            createEntry(synchronousStream(synchronousEntries), zipArchiveEntry, source);
+        }
+    }
+
+    /**
+     * Adds an archive entry that may have the content of an entry of another archive, such as the archive being
+     * updated.
+     * <p>
+     * The content is read once by the thread adding the entry, to compute its CRC-32. If it has the size and CRC-32
+     * of the other entry, its compressed bytes are copied with its extra fields and comment instead of compressing
+     * the content again. They are only copied if the other entry is deflated with the {@link #setCompressionLevel(int)
+     * compression level}, as is the added entry, and if no {@link #setEntryCompressionPolicy(EntryCompressionPolicy)
+     * policy} is set. Otherwise the content is read again to be compressed, as with
+     * {@link #addArchiveEntry(ZipArchiveEntry, InputStreamSupplier, boolean)}. This method is expected to be called
+     * from a single client thread</p>
+     *
+     * @param zipArchiveEntry The entry to add
+     * @param source The source input stream supplier, called twice if the content changed
+     * @param previousArchive The archive to copy the entry from
+     * @param previousEntry The entry of the other archive
+     * @param addInParallel Indicates if the entry should be add in parallel.
+     * If set to {@code false} the entry is added synchronously.
+     *
+     * @throws java.io.IOException
+     * @since 5.0.0
+     */
+    public void addArchiveEntry(
+            final ZipArchiveEntry zipArchiveEntry,
+            final InputStreamSupplier source,
+            final ZipFile previousArchive,
+            final ZipArchiveEntry previousEntry,
+            final boolean addInParallel)
+            throws IOException {
+        if (!canReuse(zipArchiveEntry, previousEntry)) {
+            addArchiveEntry(zipArchiveEntry, source, addInParallel);
+        } else if (addInParallel) {
+            addInParallel(
+                    stream -> reuseOrCreateEntry(stream, zipArchiveEntry, source, previousArchive, previousEntry));
+        } else {
+            reuseOrCreateEntry(
+                    synchronousStream(synchronousEntries), zipArchiveEntry, source, previousArchive, previousEntry);
+        }
+    }
+
+    /**
+     * Adds an archive entry whose content is copied, still compressed, from an entry of another archive.
+     * <p>
+     * The compression method, CRC and sizes of the added entry are the ones of the source entry;
+     * its other attributes are left untouched. As with {@link #addArchiveEntry}, the {@code META-INF} directory and
+     * the manifest are written first, unless the entries are {@link #startWritingTo(ZipArchiveOutputStream) written
+     * while they are added}. This method is expected to be called from a single client thread</p>
+     *
+     * @param zipArchiveEntry The entry to add
+     * @param source The archive to copy the entry from
+     * @param sourceEntry The entry of the source archive
+     * @param addInParallel Indicates if the entry should be copied in parallel.
+     * If set to {@code false} the entry is copied synchronously.
+     *
+     * @throws java.io.IOException
+     */
+    public void addRawArchiveEntry(
+            final ZipArchiveEntry zipArchiveEntry,
+            final ZipFile source,
+            final ZipArchiveEntry sourceEntry,
+            final boolean addInParallel)
+            throws IOException {
+        zipArchiveEntry.setMethod(sourceEntry.getMethod());
+        zipArchiveEntry.setCrc(sourceEntry.getCrc());
+        zipArchiveEntry.setSize(sourceEntry.getSize());
+        zipArchiveEntry.setCompressedSize(sourceEntry.getCompressedSize());
+        final String zipEntryName = zipArchiveEntry.getName();
+        if ("META-INF".equals(zipEntryName) || "META-INF/".equals(zipEntryName)) {
+            synchronousStream(metaInfDir).addRawArchiveEntry(zipArchiveEntry, source.getRawInputStream(sourceEntry));
+        } else if ("META-INF/MANIFEST.MF".equals(zipEntryName)) {
+            synchronousStream(manifest).addRawArchiveEntry(zipArchiveEntry, source.getRawInputStream(sourceEntry));
         } else if (addInParallel) {
-            parallelScatterZipCreator.addArchiveEntry(() -> createEntry(zipArchiveEntry, source));
+            addInParallel(
+                    stream -> stream.addRawArchiveEntry(zipArchiveEntry, source.getRawInputStream(sourceEntry)));
         } else {
-            synchronousEntries.addArchiveEntry(createEntry(zipArchiveEntry, source));
+            synchronousStream(synchronousEntries)
+                    .addRawArchiveEntry(zipArchiveEntry, source.getRawInputStream(sourceEntry));
         }
     }
 
     public void writeTo(ZipArchiveOutputStream targetStream)
             throws IOException, ExecutionException, InterruptedException {
         try {
+            if (pipelineTarget != null) {
+                writePipelinedTo(targetStream);
+            } else {
+                writeGatheredTo(targetStream);
+            }
+        } finally {
+            spillFiles.close();
+        }
+    }
+
+    /**
+     * Writes the entries to the target archive once all the parallel entries have been compressed.
+     */
+    private void writeGatheredTo(ZipArchiveOutputStream targetStream)
+            throws IOException, ExecutionException, InterruptedException {
+        Exception failure = null;
+        try {
+            try {
+                awaitParallelEntries();
+            } finally {
+                if (shutdownExecutor) {
+                    es.shutdown();
+                }
+            }
+            compressionElapsed = System.currentTimeMillis() - startedAt;
+
+            long mergingStartAt = System.currentTimeMillis();
             metaInfDir.writeTo(targetStream);
             manifest.writeTo(targetStream);
             directories.writeTo(targetStream);
             synchronousEntries.writeTo(targetStream);
-            parallelScatterZipCreator.writeTo(targetStream);
+            for (ZipEntryScatterStream parallelStream : parallelStreams) {
+                parallelStream.writeTo(targetStream);
+                parallelStream.close();
+            }
+            mergingElapsed = System.currentTimeMillis() - mergingStartAt;
+
+            long startAt = System.currentTimeMillis();
+            targetStream.close();
+            zipCloseElapsed = System.currentTimeMillis() - startAt;
+        } catch (IOException | ExecutionException | InterruptedException | RuntimeException e) {
+            failure = e;
+            throw e;
         } finally {
-            es.shutdown();
+            closeScatterStreams(failure);
+        }
+    }
+
+    /**
+     * Writes the remaining entries to the target archive in pipelined mode, waiting for each segment to be
+     * compressed in turn.
+     */
+    private void writePipelinedTo(ZipArchiveOutputStream targetStream) throws IOException {
+        Exception failure = null;
+        try {
+            if (targetStream != pipelineTarget) {
+                throw new IllegalArgumentException("The entries are written to another archive");
+            }
+            synchronousSegment = null;
+            try {
+                writeSegments(0);
+            } finally {
+                if (shutdownExecutor) {
+                    es.shutdown();
+                }
+            }
+            compressionElapsed = System.currentTimeMillis() - startedAt;
+
+            long startAt = System.currentTimeMillis();
+            targetStream.close();
+            zipCloseElapsed = System.currentTimeMillis() - startAt;
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            closeScatterStreams(failure);
+        }
+    }
+
+    /**
+     * Closes all the scatter streams, even if the archive could not be written, so the memory they borrowed
+     * from the budget is returned and their temporary files are deleted. A failure to close a stream is added
+     * to the suppressed exceptions of the failure writing the archive, if any.
+     */
+    private void closeScatterStreams(Exception failure) throws IOException {
+        Deque<Closeable> streams = new ArrayDeque<>(parallelStreams);
+        streams.add(metaInfDir);
+        streams.add(manifest);
+        streams.add(directories);
+        streams.add(synchronousEntries);
+        // the segments not written yet are cancelled, and closed once no longer written by the worker threads
+        Segment segment;
+        while ((segment = segments.poll()) != null) {
+            segment.compressed.cancel(true);
+            streams.add(segment::discard);
+        }
+        IOException closeFailure = null;
+        for (Closeable stream : streams) {
+            try {
+                stream.close();
+            } catch (IOException | RuntimeException e) {
+                if (failure != null) {
+                    failure.addSuppressed(e);
+                } else if (closeFailure == null) {
+                    closeFailure = e instanceof IOException ? (IOException) e : new IOException(e);
+                } else {
+                    closeFailure.addSuppressed(e);
+                }
+            }
+        }
+        if (closeFailure != null) {
+            throw closeFailure;
         }
-        long startAt = System.currentTimeMillis();
-        targetStream.close();
-        zipCloseElapsed = System.currentTimeMillis() - startAt;
-        metaInfDir.close();
-        manifest.close();
-        directories.close();
-        synchronousEntries.close();
     }
 
     /**
      * Returns a message describing the overall statistics of the compression run
+     * <p>
+     * The message starts with the statistics of {@link org.apache.commons.compress.archivers.zip.ScatterStatistics}
+     * and the time taken to close the archive, in their original format, followed by the number of spilled
+     * scatter streams and, with a {@link #setCompressedEntryCache(CompressedEntryCache) cache}, its hits and
+     * misses.</p>
      *
      * @return A string
      */
     public String getStatisticsMessage() {
-        return parallelScatterZipCreator.getStatisticsMessage() + " Zip Close: " + zipCloseElapsed + "ms";
+        String message = "compressionElapsed=" + compressionElapsed + "ms, mergingElapsed=" + mergingElapsed + "ms"
+                + " Zip Close: " + zipCloseElapsed + "ms";
+        message += " Spilled: " + spills.get() + " of " + backingStores.get() + " scatter streams";
+        if (compressedEntryCache != null) {
+            message += " Cache: " + cacheHits.get() + " hits, " + cacheMisses.get() + " misses";
+        }
+        return message;
     }
 
-    private ZipArchiveEntryRequest createEntry(
-            final ZipArchiveEntry zipArchiveEntry, final InputStreamSupplier inputStreamSupplier) {
-        // if we re-compress the zip files there is no need to look at the input stream
-        if (compressAddedZips) {
-            return createZipArchiveEntryRequest(zipArchiveEntry, inputStreamSupplier);
+    /**
+     * Waits for all the entries submitted to the executor. If one of them fails the remaining
+     * ones are cancelled, so a shared executor does not keep working for a failed archive.
+     */
+    private void awaitParallelEntries() throws ExecutionException, InterruptedException {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException | InterruptedException e) {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Submits an entry to the executor. In pipelined mode it is compressed in its own segment, otherwise in the
+     * scatter stream of the worker thread.
+     */
+    private void addInParallel(EntryWriter writer) throws IOException {
+        if (pipelineTarget != null) {
+            synchronousSegment = null;
+            writeSegments(maxSegments());
+            Segment segment = new Segment(newSegmentStream());
+            segments.add(segment);
+            segment.compressed = es.submit(() -> compressSegment(segment, writer));
+        } else {
+            futures.add(es.submit(() -> {
+                writer.writeTo(workerStream());
+                return null;
+            }));
+        }
+    }
+
+    /**
+     * Returns the stream an entry added synchronously is written to: the given one, or in pipelined mode the
+     * segment of the last synchronous entries, so that the entries are written in the order they were added.
+     */
+    private ZipEntryScatterStream synchronousStream(ZipEntryScatterStream stream) throws IOException {
+        if (pipelineTarget == null) {
+            return stream;
+        }
+        if (synchronousSegment == null) {
+            writeSegments(maxSegments());
+            synchronousSegment = new Segment(newSegmentStream());
+            synchronousSegment.compressed = CompletableFuture.completedFuture(null);
+            segments.add(synchronousSegment);
         }
+        return synchronousSegment.stream;
+    }
 
+    /**
+     * Writes the oldest segments to the target archive in pipelined mode, and releases them: the ones already
+     * compressed, and the ones still compressed as long as there are at least the given number of segments.
+     * The segment of the last synchronous entries is not written, as more entries could be added to it.
+     */
+    private void writeSegments(int maxSegments) throws IOException {
+        long startAt = System.currentTimeMillis();
+        Segment segment;
+        while ((segment = segments.peek()) != null
+                && segment != synchronousSegment
+                && (segment.compressed.isDone() || segments.size() >= maxSegments)) {
+            try {
+                segment.compressed.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while compressing the entries");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException("Failed compressing an entry", cause);
+            }
+            segment.stream.writeTo(pipelineTarget);
+            segments.poll().discard();
+        }
+        mergingElapsed += System.currentTimeMillis() - startAt;
+    }
+
+    private int maxSegments() {
+        return maxInMemorySegments > 0 ? maxInMemorySegments : 2 * nThreads;
+    }
+
+    private ZipEntryScatterStream newSegmentStream() {
+        return new ZipEntryScatterStream(() -> createBackingStore(SEGMENT_THRESHOLD));
+    }
+
+    /**
+     * Compresses an entry in its segment, held in memory up to 1 MB of compressed content.
+     */
+    private Void compressSegment(Segment segment, EntryWriter writer) throws IOException {
+        if (segment.startWriting()) {
+            try {
+                writer.writeTo(segment.stream);
+            } finally {
+                segment.endWriting();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the scatter stream of the current worker thread. Each worker thread writes to its own
+     * stream, so no synchronization is required when compressing the entries.
+     */
+    private ZipEntryScatterStream workerStream() {
+        return workerStreams.computeIfAbsent(Thread.currentThread(), thread -> {
+            ZipEntryScatterStream stream = new ZipEntryScatterStream(this::createBackingStore);
+            parallelStreams.add(stream);
+            return stream;
+        });
+    }
+
+    /**
+     * Creates a backing store kept in memory as long as the memory budget is not exhausted.
+     */
+    private ScatterGatherBackingStore createBackingStore() {
+        return createBackingStore(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a backing store kept in memory as long as the memory budget is not exhausted and its size
+     * does not exceed the threshold.
+     */
+    private ScatterGatherBackingStore createBackingStore(int threshold) {
+        backingStores.incrementAndGet();
+        if (offHeapBackingStores) {
+            return new DirectBufferScatterStore(memoryBudget, threshold, spills, spillFiles);
+        }
+        return new DeferredScatterOutputStream(threshold, INITIAL_BUFFER_SIZE, memoryBudget, spills, spillFiles);
+    }
+
+    private void addEntry(ZipEntryScatterStream stream, ZipArchiveEntry zipArchiveEntry, InputStream payload)
+            throws IOException {
+        stream.addArchiveEntry(zipArchiveEntry, payload, compressionLevel, compressionStrategy);
+    }
+
+    private void createEntry(
+            final ZipEntryScatterStream stream,
+            final ZipArchiveEntry zipArchiveEntry,
+            final InputStreamSupplier inputStreamSupplier)
+            throws IOException {
         InputStream is = inputStreamSupplier.get();
-        // otherwise we should inspect the first four bytes to see if the input stream is zip file or not
-        byte[] header = new byte[4];
+        if (copyRawEntries && is instanceof ZipEntryContentInputStream source && canCopyRaw(zipArchiveEntry, source)) {
+            ZipArchiveEntry sourceEntry = source.getEntry();
+            zipArchiveEntry.setCrc(sourceEntry.getCrc());
+            zipArchiveEntry.setSize(sourceEntry.getSize());
+            zipArchiveEntry.setCompressedSize(sourceEntry.getCompressedSize());
+            try (InputStream contents = is) {
+                stream.addRawArchiveEntry(zipArchiveEntry, source.getRawInputStream());
+            }
+            return;
+        }
+
+        boolean applyPolicy = entryCompressionPolicy != null && zipArchiveEntry.getMethod() == ZipEntry.DEFLATED;
+        // if we re-compress the zip files there is no need to look at the input stream
+        if (compressAddedZips && !applyPolicy) {
+            compress(stream, zipArchiveEntry, is, compressionLevel);
+            return;
+        }
+
+        // otherwise we should inspect the first bytes to see if the input stream is zip file or
+        // has to be stored according to the policy
+        byte[] header = new byte[applyPolicy ? EntryCompressionPolicy.SAMPLE_SIZE : 4];
+        int level = compressionLevel;
+        int read;
         try {
-            int read = is.read(header);
+            read = IOUtils.read(is, header);
             int compressionMethod = zipArchiveEntry.getMethod();
-            if (isZipHeader(header)) {
+            if (!compressAddedZips && isZipHeader(header)) {
                 compressionMethod = ZipEntry.STORED;
+            } else if (applyPolicy) {
+                level = entryCompressionPolicy.getCompressionLevel(
+                        zipArchiveEntry.getName(), header, read, compressionLevel);
+                if (level == Deflater.NO_COMPRESSION) {
+                    compressionMethod = ZipEntry.STORED;
+                }
             }
 
             zipArchiveEntry.setMethod(compressionMethod);
-
-            return createZipArchiveEntryRequest(zipArchiveEntry, prependBytesToStream(header, read, is));
         } catch (IOException e) {
             IOUtils.closeQuietly(is);
-            throw new UncheckedIOException(e);
+            throw e;
+        }
+
+        compress(stream, zipArchiveEntry, prependBytesToStream(header, read, is), level);
+    }
+
+    /**
+     * Copies the entry of the other archive if the content is unchanged, otherwise compresses the content.
+     */
+    private void reuseOrCreateEntry(
+            ZipEntryScatterStream stream,
+            ZipArchiveEntry zipArchiveEntry,
+            InputStreamSupplier source,
+            ZipFile previousArchive,
+            ZipArchiveEntry previousEntry)
+            throws IOException {
+        if (!hasContent(source.get(), previousEntry)) {
+            createEntry(stream, zipArchiveEntry, source);
+            return;
+        }
+        zipArchiveEntry.setCrc(previousEntry.getCrc());
+        zipArchiveEntry.setSize(previousEntry.getSize());
+        zipArchiveEntry.setCompressedSize(previousEntry.getCompressedSize());
+        zipArchiveEntry.setComment(previousEntry.getComment());
+        for (ZipExtraField field : previousEntry.getExtraFields()) {
+            // the times and sizes are the ones of the added entry
+            if (!(field instanceof Zip64ExtendedInformationExtraField)
+                    && !(field instanceof X5455_ExtendedTimestamp)
+                    && !(field instanceof X000A_NTFS)
+                    && zipArchiveEntry.getExtraField(field.getHeaderId()) == null) {
+                zipArchiveEntry.addExtraField(field);
+            }
+        }
+        stream.addRawArchiveEntry(zipArchiveEntry, previousArchive.getRawInputStream(previousEntry));
+    }
+
+    /**
+     * Indicates if the compressed bytes of the other entry could be used for the added entry, if its content is
+     * unchanged: both are deflated, the other one with the option written for the compression level, and the
+     * compression of the added entry does not depend on a policy.
+     */
+    private boolean canReuse(ZipArchiveEntry zipArchiveEntry, ZipArchiveEntry previousEntry) {
+        String name = zipArchiveEntry.getName();
+        return entryCompressionPolicy == null
+                && !"META-INF".equals(name)
+                && !"META-INF/".equals(name)
+                && !"META-INF/MANIFEST.MF".equals(name)
+                && !zipArchiveEntry.isDirectory()
+                && !zipArchiveEntry.isUnixSymlink()
+                && zipArchiveEntry.getMethod() == ZipEntry.DEFLATED
+                && previousEntry.getMethod() == ZipEntry.DEFLATED
+                && !previousEntry.getGeneralPurposeBit().usesEncryption()
+                && previousEntry.getCrc() != -1
+                && previousEntry.getSize() != ZipArchiveEntry.SIZE_UNKNOWN
+                && previousEntry.getCompressedSize() != ZipArchiveEntry.SIZE_UNKNOWN
+                && deflateOption(previousEntry) == deflateOption(compressionLevel);
+    }
+
+    /**
+     * Indicates if the content has the size and CRC-32 of the entry. A zip file never has when the added zip files
+     * are not compressed, as it is then stored.
+     */
+    private boolean hasContent(InputStream content, ZipArchiveEntry entry) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        long size = 0;
+        try (InputStream in = content) {
+            int n = IOUtils.read(in, buffer);
+            if (!compressAddedZips && n >= 4 && isZipHeader(buffer)) {
+                return false;
+            }
+            while (n > 0) {
+                size += n;
+                if (size > entry.getSize()) {
+                    return false;
+                }
+                crc.update(buffer, 0, n);
+                n = in.read(buffer);
+            }
+        }
+        return size == entry.getSize() && crc.getValue() == entry.getCrc();
+    }
+
+    /**
+     * Compresses the entry, or copies it from the cache of compressed entries when its content is found there.
+     */
+    private void compress(ZipEntryScatterStream stream, ZipArchiveEntry zipArchiveEntry, InputStream payload, int level)
+            throws IOException {
+        if (compressedEntryCache == null || zipArchiveEntry.getMethod() != ZipEntry.DEFLATED) {
+            stream.addArchiveEntry(zipArchiveEntry, payload, level, compressionStrategy);
+            return;
+        }
+
+        // the content is read before being compressed, to look it up in the cache
+        int maxEntrySize = compressedEntryCache.getMaxEntrySize();
+        byte[] content;
+        try {
+            content = IOUtils.toByteArray(BoundedInputStream.builder()
+                    .setInputStream(payload)
+                    .setMaxCount(maxEntrySize + 1L)
+                    .setPropagateClose(false)
+                    .get());
+        } catch (IOException e) {
+            IOUtils.closeQuietly(payload);
+            throw e;
+        }
+        if (content.length > maxEntrySize) {
+            stream.addArchiveEntry(
+                    zipArchiveEntry,
+                    new SequenceInputStream(new ByteArrayInputStream(content), payload),
+                    level,
+                    compressionStrategy);
+            return;
+        }
+        payload.close();
+
+        String key = compressedEntryCache.key(content, content.length, level, compressionStrategy);
+        CompressedEntryCache.CachedEntry cachedEntry = compressedEntryCache.get(key);
+        if (cachedEntry != null && cachedEntry.size == content.length) {
+            cacheHits.incrementAndGet();
+            zipArchiveEntry.setCrc(cachedEntry.crc);
+            zipArchiveEntry.setSize(cachedEntry.size);
+            zipArchiveEntry.setCompressedSize(cachedEntry.compressed.length);
+            stream.addRawArchiveEntry(zipArchiveEntry, new ByteArrayInputStream(cachedEntry.compressed));
+        } else {
+            cacheMisses.incrementAndGet();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            stream.addArchiveEntry(
+                    zipArchiveEntry, new ByteArrayInputStream(content), level, compressionStrategy, compressed);
+            compressedEntryCache.put(
+                    key,
+                    zipArchiveEntry.getCrc(),
+                    zipArchiveEntry.getSize(),
+                    compressed.toByteArray(),
+                    compressed.size());
+        }
+    }
+
+    /**
+     * Indicates if the compressed bytes of the source entry could be used for the added entry.
+     * They are if both use the same method, and the source entry is neither encrypted nor compressed
+     * with a faster setting than the {@link #setCompressionLevel(int) compression level}. A deflated
+     * source entry is not copied when the added zip files are stored or a policy is set, as the content
+     * must then be inspected to choose the compression.
+     */
+    private boolean canCopyRaw(ZipArchiveEntry zipArchiveEntry, ZipEntryContentInputStream source) {
+        ZipArchiveEntry sourceEntry = source.getEntry();
+        if (sourceEntry.getMethod() != zipArchiveEntry.getMethod()
+                || sourceEntry.getGeneralPurposeBit().usesEncryption()
+                || sourceEntry.getCrc() == -1
+                || sourceEntry.getSize() == ZipArchiveEntry.SIZE_UNKNOWN
+                || sourceEntry.getCompressedSize() == ZipArchiveEntry.SIZE_UNKNOWN) {
+            return false;
+        }
+        if (sourceEntry.getMethod() == ZipEntry.DEFLATED) {
+            return compressAddedZips
+                    && entryCompressionPolicy == null
+                    && isDeflateOptionAcceptable(deflateOption(sourceEntry), compressionLevel);
+        }
+        return sourceEntry.getMethod() == ZipEntry.STORED;
+    }
+
+    /**
+     * Indicates if an entry deflated with the given option, from bits 1 and 2 of its general purpose flag
+     * (0 normal, 1 maximum, 2 fast, 3 super fast), compresses at least as well as the given level: the
+     * option written by Info-ZIP for the level, 3 for level 1, 2 for level 2, 1 for levels 8 and 9, and
+     * 0 for the other levels, must not be a faster one. Any option is acceptable when no compression is
+     * requested.
+     */
+    static boolean isDeflateOptionAcceptable(int deflateOption, int level) {
+        return level == Deflater.NO_COMPRESSION || deflateRank(deflateOption) >= deflateRank(deflateOption(level));
+    }
+
+    /**
+     * Returns the deflate option of an entry, from bits 1 and 2 of its general purpose flag.
+     */
+    private static int deflateOption(ZipArchiveEntry entry) {
+        return (entry.getGeneralPurposeBit().encode()[0] >> 1) & 3;
+    }
+
+    private static int deflateOption(int level) {
+        switch (level) {
+            case Deflater.BEST_SPEED:
+                return 3;
+            case 2:
+                return 2;
+            case 8:
+            case Deflater.BEST_COMPRESSION:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Orders the deflate options from the fastest to the best compression.
+     */
+    private static int deflateRank(int deflateOption) {
+        switch (deflateOption) {
+            case 3:
+                return 0;
+            case 2:
+                return 1;
+            case 1:
+                return 3;
+            default:
+                return 2;
         }
     }
 
@@ -221,7 +1105,7 @@ private boolean isZipHeader(byte[] header) {
         return header[0] == 0x50 && header[1] == 0x4b && header[2] == 3 && header[3] == 4;
     }
 
-    private InputStreamSupplier prependBytesToStream(final byte[] bytes, final int len, final InputStream stream) {
-        return () -> len > 0 ? new SequenceInputStream(new ByteArrayInputStream(bytes, 0, len), stream) : stream;
+    private InputStream prependBytesToStream(final byte[] bytes, final int len, final InputStream stream) {
+        return len > 0 ? new SequenceInputStream(new ByteArrayInputStream(bytes, 0, len), stream) : stream;
     }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright MojoHaus and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.codehaus.plexus.archiver.zip;
+
+import java.util.zip.Deflater;
+
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * Stores the entries whose content is already compressed, and deflates the other ones with
+ * the level of the archiver.
+ * <p>
+ * Compressed content is recognized, in this order, by the entry name, by the magic bytes of
+ * well known compressed formats and by the entropy of the first bytes of the entry.</p>
+ *
+ * @since 5.0.0
+ */
+public class DefaultEntryCompressionPolicy implements EntryCompressionPolicy {
+
+    public static final String[] DEFAULT_STORED_PATTERNS = {
+        "**/*.png", "**/*.jpg", "**/*.jpeg", "**/*.gif", "**/*.webp",
+        "**/*.woff", "**/*.woff2",
+        "**/*.gz", "**/*.tgz", "**/*.bz2", "**/*.xz", "**/*.zst", "**/*.7z", "**/*.zip",
+        "**/*.mp3", "**/*.mp4", "**/*.ogg", "**/*.webm"
+    };
+
+    private static final byte[][] MAGIC_NUMBERS = {
+        {(byte) 0x89, 'P', 'N', 'G'}, // png
+        {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}, // jpeg
+        {'G', 'I', 'F', '8'}, // gif
+        {'w', 'O', 'F', 'F'}, // woff
+        {'w', 'O', 'F', '2'}, // woff2
+        {0x1F, (byte) 0x8B}, // gzip
+        {'B', 'Z', 'h'}, // bzip2
+        {(byte) 0xFD, '7', 'z', 'X', 'Z', 0}, // xz
+        {0x28, (byte) 0xB5, 0x2F, (byte) 0xFD}, // zstd
+        {'7', 'z', (byte) 0xBC, (byte) 0xAF, 0x27, 0x1C}, // 7z
+        {'P', 'K', 3, 4}, // zip
+        {'O', 'g', 'g', 'S'} // ogg
+    };
+
+    /**
+     * The minimum number of bytes needed to evaluate the entropy of a sample.
+     */
+    private static final int MIN_ENTROPY_SAMPLE = 512;
+
+    private String[] storedPatterns = DEFAULT_STORED_PATTERNS;
+
+    private boolean detectingMagicNumbers = true;
+
+    private double entropyThreshold = 7.5;
+
+    public String[] getStoredPatterns() {
+        return storedPatterns.clone();
+    }
+
+    /**
+     * Sets the patterns of the entries that are always stored, for example {@code **}{@code /*.png}.
+     * Defaults to {@link #DEFAULT_STORED_PATTERNS}.
+     */
+    public void setStoredPatterns(String... storedPatterns) {
+        this.storedPatterns = storedPatterns.clone();
+    }
+
+    public boolean isDetectingMagicNumbers() {
+        return detectingMagicNumbers;
+    }
+
+    /**
+     * Sets whether the entries starting with the magic number of a compressed format (gzip, zstd,
+     * png, jpeg, ...) are stored. Defaults to {@code true}.
+     */
+    public void setDetectingMagicNumbers(boolean detectingMagicNumbers) {
+        this.detectingMagicNumbers = detectingMagicNumbers;
+    }
+
+    public double getEntropyThreshold() {
+        return entropyThreshold;
+    }
+
+    /**
+     * Sets the entropy, in bits per byte, above which the content of an entry is considered
+     * as not compressible. Defaults to 7.5; a value above 8 disables the entropy detection.
+     */
+    public void setEntropyThreshold(double entropyThreshold) {
+        this.entropyThreshold = entropyThreshold;
+    }
+
+    @Override
+    public int getCompressionLevel(String entryName, byte[] sample, int sampleLength, int defaultLevel) {
+        if (isStored(entryName, sample, sampleLength)) {
+            return Deflater.NO_COMPRESSION;
+        }
+        return defaultLevel;
+    }
+
+    private boolean isStored(String entryName, byte[] sample, int sampleLength) {
+        for (String pattern : storedPatterns) {
+            if (SelectorUtils.matchPath(pattern, entryName, "/", false)) {
+                return true;
+            }
+        }
+        if (detectingMagicNumbers) {
+            for (byte[] magicNumber : MAGIC_NUMBERS) {
+                if (startsWith(sample, sampleLength, magicNumber)) {
+                    return true;
+                }
+            }
+        }
+        return sampleLength >= MIN_ENTROPY_SAMPLE && entropy(sample, sampleLength) >= entropyThreshold;
+    }
+
+    private static boolean startsWith(byte[] sample, int sampleLength, byte[] magicNumber) {
+        if (sampleLength < magicNumber.length) {
+            return false;
+        }
+        for (int i = 0; i < magicNumber.length; i++) {
+            if (sample[i] != magicNumber[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the Shannon entropy of the sample, in bits per byte.
+     */
+    static double entropy(byte[] sample, int sampleLength) {
+        int[] counts = new int[256];
+        for (int i = 0; i < sampleLength; i++) {
+            counts[sample[i] & 0xFF]++;
+        }
+        double entropy = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / sampleLength;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+}
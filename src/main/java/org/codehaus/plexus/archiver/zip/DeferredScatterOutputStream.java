@@ -21,6 +21,7 @@
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
 
@@ -32,6 +33,24 @@ public DeferredScatterOutputStream(int threshold) {
         dfos = new OffloadingOutputStream(threshold, "scatterzipfragment", "zip");
     }
 
+    DeferredScatterOutputStream(int threshold, int initialBufferSize) {
+        dfos = new OffloadingOutputStream(threshold, initialBufferSize, "scatterzipfragment", "zip");
+    }
+
+    /**
+     * Creates a store that keeps its data in memory as long as it can borrow it from the budget,
+     * and up to the given threshold, then writes it to one of the spill files.
+     */
+    DeferredScatterOutputStream(
+            int threshold,
+            int initialBufferSize,
+            ScatterMemoryBudget budget,
+            AtomicInteger spills,
+            SpillFiles spillFiles) {
+        dfos = new OffloadingOutputStream(
+                threshold, initialBufferSize, "scatterzipfragment", "zip", budget, spills, spillFiles);
+    }
+
     @Override
     public InputStream getInputStream() throws IOException {
         return dfos.getInputStream();
@@ -49,6 +68,7 @@ public void closeForWriting() throws IOException {
 
     @Override
     public void close() throws IOException {
+        dfos.release();
         Path file = dfos.getOutputPath();
         if (file != null) {
             Files.deleteIfExists(file);
@@ -0,0 +1,220 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.codehaus.plexus.archiver.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+
+/**
+ * A backing store keeping its data off-heap, in direct buffers borrowed from a {@link ScatterMemoryBudget}.
+ * <p>
+ * Once the budget is exhausted or the threshold is reached, the buffers are written to one of the
+ * spill files with a {@link java.nio.channels.FileChannel}, and all the following data is written to
+ * that file. Only one buffer is then kept, to group the writes to the file.</p>
+ */
+final class DirectBufferScatterStore implements ScatterGatherBackingStore {
+
+    private final ScatterMemoryBudget budget;
+
+    private final long threshold;
+
+    private final AtomicInteger spills;
+
+    private final SpillFiles spillFiles;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+
+    private long size;
+
+    private SpillFiles.SpillFile spillFile;
+
+    private boolean closedForWriting;
+
+    /**
+     * Creates a store.
+     *
+     * @param budget the budget to borrow the buffers from
+     * @param threshold the number of bytes above which the data is written to a temporary file
+     * @param spills incremented when the data is written to a temporary file, may be {@code null}
+     * @param spillFiles the temporary files to use
+     */
+    DirectBufferScatterStore(
+            ScatterMemoryBudget budget, long threshold, AtomicInteger spills, SpillFiles spillFiles) {
+        this.budget = budget;
+        this.threshold = threshold;
+        this.spills = spills;
+        this.spillFiles = spillFiles;
+    }
+
+    @Override
+    public void writeOut(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            ByteBuffer segment = writableSegment();
+            if (segment == null) {
+                // spilled without any buffer: write directly to the file
+                spillFile.write(ByteBuffer.wrap(data, offset, length));
+                size += length;
+                return;
+            }
+            int count = Math.min(length, segment.remaining());
+            segment.put(data, offset, count);
+            offset += count;
+            length -= count;
+            size += count;
+        }
+    }
+
+    /**
+     * Returns the buffer to write to, with some space remaining, or {@code null} to write directly to the file.
+     */
+    private ByteBuffer writableSegment() throws IOException {
+        ByteBuffer segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment != null && segment.hasRemaining()) {
+            return segment;
+        }
+        if (spillFile != null) {
+            if (segment != null) {
+                segment.flip();
+                spillFile.write(segment);
+                segment.clear();
+            }
+            return segment;
+        }
+        segment = size + ScatterMemoryBudget.SEGMENT_SIZE <= threshold ? budget.acquireSegment() : null;
+        if (segment != null) {
+            segments.add(segment);
+            return segment;
+        }
+        spill();
+        return segments.isEmpty() ? null : segments.get(0);
+    }
+
+    /**
+     * Writes the buffers to a temporary file, and gives them back to the budget except the first one.
+     */
+    private void spill() throws IOException {
+        if (spills != null) {
+            spills.incrementAndGet();
+        }
+        spillFile = spillFiles.acquire();
+        for (ByteBuffer segment : segments) {
+            segment.flip();
+            spillFile.write(segment);
+        }
+        for (int i = segments.size() - 1; i > 0; i--) {
+            budget.releaseSegment(segments.remove(i));
+        }
+        if (!segments.isEmpty()) {
+            segments.get(0).clear();
+        }
+    }
+
+    @Override
+    public void closeForWriting() throws IOException {
+        if (spillFile != null && !closedForWriting && !segments.isEmpty()) {
+            ByteBuffer segment = segments.remove(0);
+            segment.flip();
+            spillFile.write(segment);
+            budget.releaseSegment(segment);
+        }
+        closedForWriting = true;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (spillFile != null) {
+            return spillFile.newInputStream();
+        }
+        List<ByteBuffer> data = new ArrayList<>(segments.size());
+        for (ByteBuffer segment : segments) {
+            data.add(segment.duplicate().flip());
+        }
+        return new SegmentsInputStream(data);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closedForWriting = true;
+        for (ByteBuffer segment : segments) {
+            budget.releaseSegment(segment);
+        }
+        segments.clear();
+        if (spillFile != null) {
+            SpillFiles.SpillFile file = spillFile;
+            spillFile = null;
+            spillFiles.release(file);
+        }
+    }
+
+    /**
+     * Reads the content of direct buffers.
+     */
+    private static final class SegmentsInputStream extends InputStream {
+
+        private final List<ByteBuffer> segments;
+
+        private int index;
+
+        SegmentsInputStream(List<ByteBuffer> segments) {
+            this.segments = segments;
+        }
+
+        @Override
+        public int read() throws IOException {
+            ByteBuffer segment = currentSegment();
+            return segment != null ? segment.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer segment = currentSegment();
+            if (segment == null) {
+                return -1;
+            }
+            int count = Math.min(len, segment.remaining());
+            segment.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            ByteBuffer segment = currentSegment();
+            return segment != null ? segment.remaining() : 0;
+        }
+
+        private ByteBuffer currentSegment() {
+            while (index < segments.size()) {
+                ByteBuffer segment = segments.get(index);
+                if (segment.hasRemaining()) {
+                    return segment;
+                }
+                index++;
+            }
+            return null;
+        }
+    }
+}
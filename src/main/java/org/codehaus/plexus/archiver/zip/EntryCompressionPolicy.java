@@ -0,0 +1,50 @@
+/*
+ * Copyright MojoHaus and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.codehaus.plexus.archiver.zip;
+
+import java.util.zip.Deflater;
+
+/**
+ * Chooses how each entry of a zip archive is compressed.
+ * <p>
+ * The policy is called by the threads compressing the entries, possibly concurrently,
+ * so implementations must be thread safe.</p>
+ *
+ * @see AbstractZipArchiver#setEntryCompressionPolicy(EntryCompressionPolicy)
+ * @since 5.0.0
+ */
+@FunctionalInterface
+public interface EntryCompressionPolicy {
+
+    /**
+     * The number of bytes from the beginning of the entry content that are given to the policy.
+     */
+    int SAMPLE_SIZE = 4096;
+
+    /**
+     * Returns the deflate level of an entry. {@link Deflater#NO_COMPRESSION} stores the entry
+     * without compressing it.
+     *
+     * @param entryName the name of the entry in the archive
+     * @param sample the first bytes of the entry content
+     * @param sampleLength the number of bytes of {@code sample} that are set, less than
+     *                     {@link #SAMPLE_SIZE} only if the entry is smaller
+     * @param defaultLevel the deflate level configured on the archiver
+     * @return the deflate level of the entry, {@link Deflater#NO_COMPRESSION} to store it
+     */
+    int getCompressionLevel(String entryName, byte[] sample, int sampleLength, int defaultLevel);
+}
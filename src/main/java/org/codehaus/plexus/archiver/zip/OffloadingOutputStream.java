@@ -24,6 +24,7 @@
 import java.io.SequenceInputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.output.ThresholdingOutputStream;
 import org.codehaus.plexus.archiver.util.Streams;
@@ -63,6 +64,32 @@ class OffloadingOutputStream extends ThresholdingOutputStream {
      */
     private final String suffix;
 
+    /**
+     * The memory shared with other streams, or <code>null</code> if only the threshold applies.
+     */
+    private final ScatterMemoryBudget budget;
+
+    /**
+     * Counts the streams written to disk, may be <code>null</code>.
+     */
+    private final AtomicInteger spills;
+
+    /**
+     * The number of bytes borrowed from the budget.
+     */
+    private long borrowed;
+
+    /**
+     * The temporary files to use, or <code>null</code> to create a temporary file
+     * in the default directory.
+     */
+    private final SpillFiles spillFiles;
+
+    /**
+     * The file acquired from <code>spillFiles</code> once the threshold is reached.
+     */
+    private SpillFiles.SpillFile spillFile;
+
     // ----------------------------------------------------------- Constructors
 
     /**
@@ -75,16 +102,55 @@ class OffloadingOutputStream extends ThresholdingOutputStream {
      * @since 1.4
      */
     public OffloadingOutputStream(int threshold, String prefix, String suffix) {
+        this(threshold, threshold / 10, prefix, suffix);
+    }
+
+    /**
+     * Constructs an instance of this class which will trigger an event at the
+     * specified threshold, and save data to a temporary file beyond that point.
+     *
+     * @param threshold         The number of bytes at which to trigger an event.
+     * @param initialBufferSize The initial size of the memory buffer.
+     * @param prefix            Prefix to use for the temporary file.
+     * @param suffix            Suffix to use for the temporary file.
+     */
+    OffloadingOutputStream(int threshold, int initialBufferSize, String prefix, String suffix) {
+        this(threshold, initialBufferSize, prefix, suffix, null, null, null);
+    }
+
+    /**
+     * Constructs an instance of this class which saves data to a temporary file once the
+     * threshold is reached or the memory budget is exhausted.
+     *
+     * @param threshold         The number of bytes at which to trigger an event.
+     * @param initialBufferSize The initial size of the memory buffer.
+     * @param prefix            Prefix to use for the temporary file.
+     * @param suffix            Suffix to use for the temporary file.
+     * @param budget            The memory budget to borrow from, or <code>null</code>.
+     * @param spills            Incremented when data is saved to disk, may be <code>null</code>.
+     * @param spillFiles        The temporary files to use, or <code>null</code> to create a temporary file.
+     */
+    OffloadingOutputStream(
+            int threshold,
+            int initialBufferSize,
+            String prefix,
+            String suffix,
+            ScatterMemoryBudget budget,
+            AtomicInteger spills,
+            SpillFiles spillFiles) {
         super(threshold);
 
         if (prefix == null) {
             throw new IllegalArgumentException("Temporary file prefix is missing");
         }
 
-        memoryOutputStream = new ByteArrayOutputStream(threshold / 10);
+        memoryOutputStream = new ByteArrayOutputStream(initialBufferSize);
         currentOutputStream = memoryOutputStream;
         this.prefix = prefix;
         this.suffix = suffix;
+        this.budget = budget;
+        this.spills = spills;
+        this.spillFiles = spillFiles;
     }
 
     // --------------------------------------- ThresholdingOutputStream methods
@@ -102,6 +168,29 @@ protected OutputStream getStream() throws IOException {
         return currentOutputStream;
     }
 
+    /**
+     * Borrows the memory needed for the bytes about to be written from the budget, and switches to
+     * disk-based storage if the budget is exhausted.
+     *
+     * @param count The number of bytes about to be written.
+     * @throws java.io.IOException if an error occurs.
+     */
+    @Override
+    protected void checkThreshold(int count) throws IOException {
+        if (budget != null && !isSpilled()) {
+            long needed = getByteCount() + count - borrowed;
+            if (needed > 0) {
+                long borrowing = budget.tryBorrow(needed);
+                if (borrowing > 0) {
+                    borrowed += borrowing;
+                } else {
+                    thresholdReached();
+                }
+            }
+        }
+        super.checkThreshold(count);
+    }
+
     /**
      * Switches the underlying output stream from a memory based stream to one
      * that is backed by disk. This is the point at which we realise that too
@@ -112,13 +201,32 @@ protected OutputStream getStream() throws IOException {
      */
     @Override
     protected void thresholdReached() throws IOException {
-        outputPath = Files.createTempFile(prefix, suffix);
-        currentOutputStream = Streams.bufferedOutputStream(Files.newOutputStream(outputPath));
+        if (isSpilled()) {
+            // already switched because the memory budget was exhausted
+            return;
+        }
+        if (spills != null) {
+            spills.incrementAndGet();
+        }
+        if (spillFiles != null) {
+            spillFile = spillFiles.acquire();
+            currentOutputStream = Streams.bufferedOutputStream(spillFile.newOutputStream());
+        } else {
+            outputPath = Files.createTempFile(prefix, suffix);
+            currentOutputStream = Streams.bufferedOutputStream(Files.newOutputStream(outputPath));
+        }
+    }
+
+    private boolean isSpilled() {
+        return outputPath != null || spillFile != null;
     }
 
     public InputStream getInputStream() throws IOException {
 
         InputStream memoryAsInput = memoryOutputStream.toInputStream();
+        if (spillFile != null) {
+            return new SequenceInputStream(memoryAsInput, spillFile.newInputStream());
+        }
         if (outputPath == null) {
             return memoryAsInput;
         }
@@ -164,6 +272,25 @@ public File getFile() {
         return outputPath != null ? outputPath.toFile() : null;
     }
 
+    /**
+     * Releases the memory held by this stream, and gives back what was borrowed from the budget
+     * and the temporary file acquired from the spill files. The data written is no longer available.
+     *
+     * @throws java.io.IOException if the temporary file could not be released.
+     */
+    void release() throws IOException {
+        memoryOutputStream = null;
+        if (budget != null) {
+            budget.release(borrowed);
+            borrowed = 0;
+        }
+        if (spillFile != null) {
+            SpillFiles.SpillFile file = spillFile;
+            spillFile = null;
+            spillFiles.release(file);
+        }
+    }
+
     /**
      * Closes underlying output stream.
      *
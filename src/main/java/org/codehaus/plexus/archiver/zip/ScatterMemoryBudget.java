@@ -0,0 +1,161 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.codehaus.plexus.archiver.zip;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The memory that the compressed entries of zip archives may use before being written to temporary
+ * files. The budget is shared by all the scatter streams of an archive, and could be shared by several
+ * archives created at the same time, as the {@link #shared() default budget} is: a stream borrows memory
+ * from the budget as it grows, and gives it back once written to the archive. A stream is written to a
+ * temporary file only when the budget is exhausted.
+ * <p>
+ * The budget also pools the direct buffers used by the off-heap stores, so they are reused by the
+ * archives sharing the budget instead of being allocated for each one.</p>
+ *
+ * @see ConcurrentJarCreator#setMemoryBudget(ScatterMemoryBudget)
+ * @since 5.0.0
+ */
+public class ScatterMemoryBudget {
+
+    /**
+     * The smallest default budget.
+     */
+    public static final long MIN_DEFAULT_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * The size of the direct buffers used by the off-heap stores.
+     */
+    public static final int SEGMENT_SIZE = 64 * 1024;
+
+    /**
+     * The memory borrowed at once by a stream, so the budget is not updated for each write.
+     */
+    private static final long BORROWING_SIZE = 64 * 1024;
+
+    private final long size;
+
+    private final AtomicLong available;
+
+    /**
+     * The direct buffers given back by the off-heap stores. There are never more buffers than the
+     * budget could lend at once.
+     */
+    private final Queue<ByteBuffer> freeSegments = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a budget of the given size.
+     *
+     * @param size the memory, in bytes, that the scatter streams may use
+     */
+    public ScatterMemoryBudget(long size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid memory budget: " + size);
+        }
+        this.size = size;
+        this.available = new AtomicLong(size);
+    }
+
+    /**
+     * Creates a budget of one sixteenth of the maximum heap size, which takes the memory limit of the
+     * container into account, and at least {@link #MIN_DEFAULT_SIZE}.
+     *
+     * @return the budget
+     */
+    public static ScatterMemoryBudget fromMaxHeapSize() {
+        return new ScatterMemoryBudget(Math.max(MIN_DEFAULT_SIZE, Runtime.getRuntime().maxMemory() / 16));
+    }
+
+    /**
+     * Returns the budget shared by the archives without a budget of their own, created on first use with
+     * {@link #fromMaxHeapSize()}. As all these archives borrow from it, the memory used by the archives created
+     * at the same time is bounded whatever their number.
+     *
+     * @return the shared budget
+     */
+    public static ScatterMemoryBudget shared() {
+        return SharedBudgetHolder.SHARED;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the memory not borrowed yet.
+     */
+    public long getAvailable() {
+        return available.get();
+    }
+
+    /**
+     * Borrows at least the given number of bytes.
+     *
+     * @return the number of bytes borrowed, or {@code 0} if the budget is exhausted
+     */
+    long tryBorrow(long bytes) {
+        long borrowing = Math.max(bytes, BORROWING_SIZE);
+        while (true) {
+            long current = available.get();
+            if (current < bytes) {
+                return 0;
+            }
+            long borrowed = Math.min(borrowing, current);
+            if (available.compareAndSet(current, current - borrowed)) {
+                return borrowed;
+            }
+        }
+    }
+
+    void release(long bytes) {
+        available.addAndGet(bytes);
+    }
+
+    /**
+     * Borrows a direct buffer of {@link #SEGMENT_SIZE} bytes, reusing a pooled one if possible.
+     *
+     * @return the cleared buffer, or {@code null} if the budget is exhausted
+     */
+    ByteBuffer acquireSegment() {
+        if (tryBorrow(SEGMENT_SIZE) == 0) {
+            return null;
+        }
+        ByteBuffer segment = freeSegments.poll();
+        return segment != null ? segment.clear() : ByteBuffer.allocateDirect(SEGMENT_SIZE);
+    }
+
+    /**
+     * Gives back a buffer returned by {@link #acquireSegment()}.
+     */
+    void releaseSegment(ByteBuffer segment) {
+        freeSegments.add(segment);
+        release(SEGMENT_SIZE);
+    }
+
+    /**
+     * Holds the shared budget, so it is only created when first used.
+     */
+    private static final class SharedBudgetHolder {
+
+        static final ScatterMemoryBudget SHARED = fromMaxHeapSize();
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.codehaus.plexus.archiver.zip;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * The temporary files the scatter streams are written to once they no longer fit in memory.
+ * <p>
+ * The files are created in the given directory, or in the default temporary directory. If they are
+ * reused, a file released by a stream is kept open and given to the next stream to spill, which
+ * overwrites it from the start: there are then only as many files as streams spilled at the same time,
+ * roughly one per worker thread, and they are only deleted once the archive is written.</p>
+ */
+final class SpillFiles implements Closeable {
+
+    private static final String PREFIX = "scatterzipfragment";
+
+    private static final String SUFFIX = "zip";
+
+    private final Path directory;
+
+    private final boolean reuse;
+
+    private final Deque<SpillFile> freeFiles = new ConcurrentLinkedDeque<>();
+
+    private final Deque<SpillFile> createdFiles = new ConcurrentLinkedDeque<>();
+
+    /**
+     * @param directory the directory of the files, or {@code null} for the default temporary directory
+     * @param reuse {@code true} to reuse the released files
+     */
+    SpillFiles(Path directory, boolean reuse) {
+        this.directory = directory;
+        this.reuse = reuse;
+    }
+
+    /**
+     * Returns an empty file, owned by the caller until it is released.
+     */
+    SpillFile acquire() throws IOException {
+        SpillFile file = reuse ? freeFiles.pollFirst() : null;
+        if (file != null) {
+            return file;
+        }
+        Path path = directory != null
+                ? Files.createTempFile(directory, PREFIX, SUFFIX)
+                : Files.createTempFile(PREFIX, SUFFIX);
+        try {
+            file = new SpillFile(
+                    path, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        if (reuse) {
+            createdFiles.add(file);
+        }
+        return file;
+    }
+
+    /**
+     * Releases a file once its content is no longer needed.
+     */
+    void release(SpillFile file) throws IOException {
+        if (reuse) {
+            file.length = 0;
+            // the most recently used file is reused first, its content is likely still cached
+            freeFiles.addFirst(file);
+        } else {
+            file.delete();
+        }
+    }
+
+    /**
+     * Deletes the reused files.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        SpillFile file;
+        while ((file = createdFiles.poll()) != null) {
+            try {
+                file.delete();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        freeFiles.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * A file written from the start by a single stream. Its content could be read while it is written.
+     */
+    static final class SpillFile {
+
+        private final Path path;
+
+        private final FileChannel channel;
+
+        private volatile long length;
+
+        private SpillFile(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        long length() {
+            return length;
+        }
+
+        /**
+         * Appends the remaining content of the buffer.
+         */
+        void write(ByteBuffer buffer) throws IOException {
+            long position = length;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            length = position;
+        }
+
+        /**
+         * Returns a stream appending to this file. Closing it does not close the file.
+         */
+        OutputStream newOutputStream() {
+            return new OutputStream() {
+
+                @Override
+                public void write(int b) throws IOException {
+                    SpillFile.this.write(ByteBuffer.wrap(new byte[] {(byte) b}));
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    SpillFile.this.write(ByteBuffer.wrap(b, off, len));
+                }
+            };
+        }
+
+        /**
+         * Returns a stream reading the content written so far. Closing it does not close the file.
+         */
+        InputStream newInputStream() {
+            long end = length;
+            return new InputStream() {
+
+                private long position;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] b = new byte[1];
+                    return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (len == 0) {
+                        return 0;
+                    }
+                    if (position >= end) {
+                        return -1;
+                    }
+                    ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, end - position));
+                    int read = channel.read(buffer, position);
+                    if (read == -1) {
+                        throw new IOException("Truncated temporary file " + path);
+                    }
+                    position += read;
+                    return read;
+                }
+
+                @Override
+                public int available() {
+                    return (int) Math.min(Integer.MAX_VALUE, end - position);
+                }
+            };
+        }
+
+        private void delete() throws IOException {
+            try {
+                channel.close();
+            } finally {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.codehaus.plexus.archiver.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+/**
+ * The uncompressed content of a zip entry, which also gives access to the compressed bytes of the
+ * entry so it can be copied to another zip archive without being inflated and deflated again.
+ * <p>
+ * The entry is only inflated when the content is actually read.</p>
+ */
+final class ZipEntryContentInputStream extends InputStream {
+
+    private final ZipFile zipFile;
+
+    private final ZipArchiveEntry entry;
+
+    private InputStream contents;
+
+    private boolean closed;
+
+    ZipEntryContentInputStream(ZipFile zipFile, ZipArchiveEntry entry) {
+        this.zipFile = zipFile;
+        this.entry = entry;
+    }
+
+    ZipArchiveEntry getEntry() {
+        return entry;
+    }
+
+    /**
+     * Returns the compressed bytes of the entry, as stored in the archive.
+     */
+    InputStream getRawInputStream() throws IOException {
+        return zipFile.getRawInputStream(entry);
+    }
+
+    @Override
+    public int read() throws IOException {
+        return contents().read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        return contents().read(b, off, len);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        return contents().skip(n);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return contents == null ? 0 : contents.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (contents != null) {
+            contents.close();
+        }
+    }
+
+    private InputStream contents() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (contents == null) {
+            contents = zipFile.getInputStream(entry);
+        }
+        return contents;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.codehaus.plexus.archiver.zip;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
+import org.apache.commons.io.input.BoundedInputStream;
+
+/**
+ * Compresses zip entries into a {@link ScatterGatherBackingStore}, to be written later to the
+ * target archive without being compressed again.
+ * <p>
+ * Unlike {@link org.apache.commons.compress.archivers.zip.ScatterZipOutputStream} the deflate level
+ * and strategy are chosen for each entry, and the backing store is only created once an entry is
+ * added. An instance is not thread safe: it is expected to be written by a single thread at a time.</p>
+ */
+final class ZipEntryScatterStream implements Closeable {
+
+    private final ScatterGatherBackingStoreSupplier backingStoreSupplier;
+
+    private ScatterGatherBackingStore backingStore;
+
+    private final Queue<CompressedEntry> entries = new ArrayDeque<>();
+
+    private final byte[] readBuffer = new byte[8192];
+
+    private final byte[] deflateBuffer = new byte[8192];
+
+    private Deflater deflater;
+
+    private static final class CompressedEntry {
+
+        private final ZipArchiveEntry entry;
+
+        private final long compressedSize;
+
+        /**
+         * The file to read the content of a stored entry from, or {@code null} if it is in the backing store.
+         */
+        private final Path file;
+
+        CompressedEntry(ZipArchiveEntry entry, long compressedSize) {
+            this(entry, compressedSize, null);
+        }
+
+        CompressedEntry(ZipArchiveEntry entry, long compressedSize, Path file) {
+            this.entry = entry;
+            this.compressedSize = compressedSize;
+            this.file = file;
+        }
+    }
+
+    ZipEntryScatterStream(ScatterGatherBackingStoreSupplier backingStoreSupplier) {
+        this.backingStoreSupplier = backingStoreSupplier;
+    }
+
+    /**
+     * Compresses the given entry using the method set on the entry. The CRC and sizes of the
+     * entry are updated once the payload has been read.
+     *
+     * @param entry the entry to add, its method must be either {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+     * @param payload the content of the entry, closed by this method
+     * @param level the deflate level
+     * @param strategy the deflate strategy
+     */
+    void addArchiveEntry(ZipArchiveEntry entry, InputStream payload, int level, int strategy) throws IOException {
+        addArchiveEntry(entry, payload, level, strategy, null);
+    }
+
+    /**
+     * Compresses the given entry using the method set on the entry, also writing the compressed
+     * bytes to {@code compressedCopy}.
+     *
+     * @param compressedCopy receives a copy of the compressed bytes, may be {@code null}
+     * @see #addArchiveEntry(ZipArchiveEntry, InputStream, int, int)
+     */
+    void addArchiveEntry(
+            ZipArchiveEntry entry, InputStream payload, int level, int strategy, OutputStream compressedCopy)
+            throws IOException {
+        ScatterGatherBackingStore store = backingStore();
+        CRC32 crc = new CRC32();
+        long size = 0;
+        long compressedSize = 0;
+        try (InputStream in = payload) {
+            if (entry.getMethod() == ZipEntry.DEFLATED) {
+                Deflater deflater = deflater(level, strategy);
+                int read;
+                while ((read = in.read(readBuffer)) != -1) {
+                    crc.update(readBuffer, 0, read);
+                    size += read;
+                    deflater.setInput(readBuffer, 0, read);
+                    while (!deflater.needsInput()) {
+                        compressedSize += deflate(deflater, compressedCopy);
+                    }
+                }
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressedSize += deflate(deflater, compressedCopy);
+                }
+            } else {
+                int read;
+                while ((read = in.read(readBuffer)) != -1) {
+                    crc.update(readBuffer, 0, read);
+                    size += read;
+                    store.writeOut(readBuffer, 0, read);
+                    if (compressedCopy != null) {
+                        compressedCopy.write(readBuffer, 0, read);
+                    }
+                }
+                compressedSize = size;
+            }
+        }
+        entry.setCrc(crc.getValue());
+        entry.setSize(size);
+        entry.setCompressedSize(compressedSize);
+        entries.add(new CompressedEntry(entry, compressedSize));
+    }
+
+    /**
+     * Adds an entry whose content is already compressed with the method set on the entry.
+     * The CRC and sizes of the entry must be set.
+     *
+     * @param entry the entry to add
+     * @param rawPayload the compressed content of the entry, closed by this method
+     */
+    void addRawArchiveEntry(ZipArchiveEntry entry, InputStream rawPayload) throws IOException {
+        ScatterGatherBackingStore store = backingStore();
+        long compressedSize = 0;
+        try (InputStream in = rawPayload) {
+            int read;
+            while ((read = in.read(readBuffer)) != -1) {
+                store.writeOut(readBuffer, 0, read);
+                compressedSize += read;
+            }
+        }
+        if (compressedSize != entry.getCompressedSize()) {
+            throw new IOException("Truncated compressed content for entry " + entry.getName() + ": expected "
+                    + entry.getCompressedSize() + " bytes, got " + compressedSize);
+        }
+        entries.add(new CompressedEntry(entry, compressedSize));
+    }
+
+    /**
+     * Adds an entry stored without compression whose content is the one of the given file. Only the CRC
+     * and size of the entry are computed: the file is read again when the entry is written to the
+     * target archive, so its content is not copied to the backing store.
+     *
+     * @param entry the entry to add, its method must be {@link ZipEntry#STORED}
+     * @param file the file with the content of the entry
+     */
+    void addStoredFileEntry(ZipArchiveEntry entry, Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(readBuffer)) != -1) {
+                crc.update(readBuffer, 0, read);
+                size += read;
+            }
+        }
+        entry.setCrc(crc.getValue());
+        entry.setSize(size);
+        entry.setCompressedSize(size);
+        entries.add(new CompressedEntry(entry, size, file));
+    }
+
+    /**
+     * Writes all the entries compressed so far to the target archive, in the order they were added.
+     */
+    void writeTo(ZipArchiveOutputStream target) throws IOException {
+        if (backingStore != null) {
+            backingStore.closeForWriting();
+        }
+        try (InputStream data = backingStore != null ? backingStore.getInputStream() : InputStream.nullInputStream()) {
+            for (CompressedEntry compressedEntry : entries) {
+                if (compressedEntry.file != null) {
+                    try (InputStream content = new FileContentInputStream(compressedEntry)) {
+                        target.addRawArchiveEntry(compressedEntry.entry, content);
+                    }
+                    continue;
+                }
+                target.addRawArchiveEntry(
+                        compressedEntry.entry,
+                        BoundedInputStream.builder()
+                                .setInputStream(data)
+                                .setMaxCount(compressedEntry.compressedSize)
+                                .setPropagateClose(false)
+                                .get());
+            }
+        }
+    }
+
+    /**
+     * Releases the deflater and the backing store. Closing an already closed stream has no effect.
+     */
+    @Override
+    public void close() throws IOException {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+        if (backingStore != null) {
+            ScatterGatherBackingStore store = backingStore;
+            backingStore = null;
+            store.close();
+        }
+    }
+
+    /**
+     * Reads the content of a stored entry from its file, failing at the end of the content if the file no longer
+     * has the size and CRC-32 computed when the entry was added.
+     */
+    private static final class FileContentInputStream extends FilterInputStream {
+
+        private final Path file;
+
+        private final long expectedCrc;
+
+        private final CRC32 crc = new CRC32();
+
+        private long remaining;
+
+        private boolean verified;
+
+        FileContentInputStream(CompressedEntry compressedEntry) throws IOException {
+            super(Files.newInputStream(compressedEntry.file));
+            this.file = compressedEntry.file;
+            this.expectedCrc = compressedEntry.entry.getCrc();
+            this.remaining = compressedEntry.compressedSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                verify();
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read == -1) {
+                throw new IOException("File " + file + " has been truncated while being archived");
+            }
+            crc.update(b, off, read);
+            remaining -= read;
+            return read;
+        }
+
+        private void verify() throws IOException {
+            if (verified) {
+                return;
+            }
+            verified = true;
+            if (in.read() != -1) {
+                throw new IOException("File " + file + " has grown while being archived");
+            }
+            if (crc.getValue() != expectedCrc) {
+                throw new IOException("File " + file + " has been modified while being archived");
+            }
+        }
+    }
+
+    private ScatterGatherBackingStore backingStore() throws IOException {
+        if (backingStore == null) {
+            backingStore = backingStoreSupplier.get();
+        }
+        return backingStore;
+    }
+
+    private Deflater deflater(int level, int strategy) {
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        } else {
+            deflater.reset();
+            deflater.setLevel(level);
+        }
+        deflater.setStrategy(strategy);
+        return deflater;
+    }
+
+    private int deflate(Deflater deflater, OutputStream compressedCopy) throws IOException {
+        int length = deflater.deflate(deflateBuffer, 0, deflateBuffer.length);
+        if (length > 0) {
+            backingStore.writeOut(deflateBuffer, 0, length);
+            if (compressedCopy != null) {
+                compressedCopy.write(deflateBuffer, 0, length);
+            }
+        }
+        return length;
+    }
+}
@@ -77,7 +77,9 @@ public URL getURL() throws IOException {
     @Nonnull
     @Override
     public InputStream getContents() throws IOException {
-        final InputStream inputStream = zipFile.getInputStream(entry);
-        return new ClosingInputStream(streamTransformer.transform(this, inputStream), inputStream);
+        final InputStream inputStream = new ZipEntryContentInputStream(zipFile, entry);
+        final InputStream transformed = streamTransformer.transform(this, inputStream);
+        // untransformed contents are returned as is, so the entry could be copied without inflating it
+        return transformed == inputStream ? inputStream : new ClosingInputStream(transformed, inputStream);
     }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright The Codehaus Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.plexus.archiver.zstd;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Creates the zstd streams searching for long distance matches, which the commons-compress streams do not.
+ * zstd-jni is only a runtime dependency, so that it is not on the compile classpath of the users of the
+ * archivers: its stream is created by reflection.
+ */
+final class LongDistanceMatching {
+
+    private static final String ZSTD_OUTPUT_STREAM = "com.github.luben.zstd.ZstdOutputStream";
+
+    private LongDistanceMatching() {}
+
+    /**
+     * Creates a stream compressing to the given stream, with long distance matching in the given window.
+     *
+     * @param level the compression level, or {@code null} for the default one
+     * @param workers the number of native threads compressing in the background, or 0
+     */
+    static OutputStream newOutputStream(OutputStream out, Integer level, int workers, int windowLog)
+            throws IOException {
+        final OutputStream zstd;
+        try {
+            zstd = (OutputStream)
+                    Class.forName(ZSTD_OUTPUT_STREAM).getConstructor(OutputStream.class).newInstance(out);
+        } catch (InvocationTargetException e) {
+            throw unwrap(e);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IOException("zstd-jni is not available", e);
+        }
+        try {
+            if (level != null) {
+                set(zstd, "setLevel", level);
+            }
+            if (workers > 0) {
+                set(zstd, "setWorkers", workers);
+            }
+            set(zstd, "setLong", windowLog);
+        } catch (IOException e) {
+            zstd.close();
+            throw e;
+        }
+        return zstd;
+    }
+
+    private static void set(OutputStream zstd, String setter, int value) throws IOException {
+        try {
+            zstd.getClass().getMethod(setter, int.class).invoke(zstd, value);
+        } catch (InvocationTargetException e) {
+            throw unwrap(e);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Unsupported zstd-jni version, " + setter + " is missing", e);
+        }
+    }
+
+    private static IOException unwrap(InvocationTargetException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+}
@@ -42,6 +42,36 @@ public void setLevel(Integer level) throws ArchiverException {
         compressor.setLevel(level);
     }
 
+    /**
+     * Set the number of native threads compressing in the background.
+     *
+     * @see ZstdCompressor#setWorkers(int)
+     * @since 5.0.0
+     */
+    public void setWorkers(int workers) {
+        compressor.setWorkers(workers);
+    }
+
+    /**
+     * Set the base 2 logarithm of the largest distance of the matches.
+     *
+     * @see ZstdCompressor#setWindowLog(int)
+     * @since 5.0.0
+     */
+    public void setWindowLog(int windowLog) {
+        compressor.setWindowLog(windowLog);
+    }
+
+    /**
+     * Set whether matches are searched in the whole window.
+     *
+     * @see ZstdCompressor#setLongDistanceMatching(boolean)
+     * @since 5.0.0
+     */
+    public void setLongDistanceMatching(boolean longDistanceMatching) {
+        compressor.setLongDistanceMatching(longDistanceMatching);
+    }
+
     @Override
     protected void execute() throws ArchiverException, IOException {
         if (!checkForced()) {
@@ -15,8 +15,8 @@
  */
 package org.codehaus.plexus.archiver.zstd;
 
-import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
 import org.codehaus.plexus.archiver.ArchiverException;
@@ -30,9 +30,24 @@
  */
 public class ZstdCompressor extends Compressor {
 
+    /**
+     * The window log of the long distance matching when no window log is set, the default of zstd.
+     */
+    private static final int DEFAULT_LONG_WINDOW_LOG = 27;
+
+    private static final int MIN_WINDOW_LOG = 10;
+
+    private static final int MAX_WINDOW_LOG = 31;
+
     private Integer level;
 
-    private ZstdCompressorOutputStream zstdOut;
+    private int workers;
+
+    private int windowLog;
+
+    private boolean longDistanceMatching;
+
+    private OutputStream zstdOut;
 
     public ZstdCompressor() {}
 
@@ -40,16 +55,92 @@ public void setLevel(Integer level) {
         this.level = level;
     }
 
+    /**
+     * Set the number of native threads compressing in the background; default=0, the data is compressed by the
+     * thread writing it.
+     *
+     * @since 5.0.0
+     */
+    public void setWorkers(int workers) {
+        if (workers < 0) {
+            throw new IllegalArgumentException("Invalid number of workers: " + workers);
+        }
+        this.workers = workers;
+    }
+
+    /**
+     * @since 5.0.0
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Set the base 2 logarithm of the largest distance of the matches, from 10 to 31; default=0, chosen by zstd
+     * from the level. A larger window finds more matches in large inputs, but needs as much memory to decompress.
+     *
+     * @since 5.0.0
+     */
+    public void setWindowLog(int windowLog) {
+        if (windowLog != 0 && (windowLog < MIN_WINDOW_LOG || windowLog > MAX_WINDOW_LOG)) {
+            throw new IllegalArgumentException("Invalid window log: " + windowLog);
+        }
+        this.windowLog = windowLog;
+    }
+
+    /**
+     * @since 5.0.0
+     */
+    public int getWindowLog() {
+        return windowLog;
+    }
+
+    /**
+     * Set whether matches are searched in the whole window, 128 MiB unless a window log is set, which improves
+     * the ratio of inputs repeating content far apart, such as similar jar files; default=false.
+     *
+     * @since 5.0.0
+     */
+    public void setLongDistanceMatching(boolean longDistanceMatching) {
+        this.longDistanceMatching = longDistanceMatching;
+    }
+
+    /**
+     * @since 5.0.0
+     */
+    public boolean isLongDistanceMatching() {
+        return longDistanceMatching;
+    }
+
+    /**
+     * Creates a stream compressing to the given stream with the options of this compressor.
+     *
+     * @since 5.0.0
+     */
+    public OutputStream newOutputStream(OutputStream out) throws IOException {
+        if (longDistanceMatching) {
+            // not exposed by commons-compress
+            return LongDistanceMatching.newOutputStream(
+                    out, level, workers, windowLog != 0 ? windowLog : DEFAULT_LONG_WINDOW_LOG);
+        }
+        ZstdCompressorOutputStream.Builder zstdOutBuilder = ZstdCompressorOutputStream.builder();
+        zstdOutBuilder.setOutputStream(out);
+        if (level != null) {
+            zstdOutBuilder.setLevel(level);
+        }
+        if (workers > 0) {
+            zstdOutBuilder.setWorkers(workers);
+        }
+        if (windowLog != 0) {
+            zstdOutBuilder.setWindowLog(windowLog);
+        }
+        return zstdOutBuilder.get();
+    }
+
     @Override
     public void compress() throws ArchiverException {
         try {
-            BufferedOutputStream outStream = bufferedOutputStream(fileOutputStream(getDestFile()));
-            ZstdCompressorOutputStream.Builder zstdOutBuilder = ZstdCompressorOutputStream.builder();
-            zstdOutBuilder.setOutputStream(outStream);
-            if (level != null) {
-                zstdOutBuilder.setLevel(level);
-            }
-            zstdOut = zstdOutBuilder.get();
+            zstdOut = newOutputStream(bufferedOutputStream(fileOutputStream(getDestFile())));
             compress(getSource(), zstdOut);
         } catch (IOException ioe) {
             throw new ArchiverException("Problem creating zstd " + ioe.getMessage(), ioe);
@@ -22,6 +22,8 @@
 import java.nio.file.attribute.PosixFilePermission;
 import java.util.Comparator;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.Deflater;
 
 import org.codehaus.plexus.archiver.ArchivedFileSet;
 import org.codehaus.plexus.archiver.ArchivedFileSetSpec;
@@ -29,8 +31,15 @@
 import org.codehaus.plexus.archiver.EmptyDirectoryHandling;
 import org.codehaus.plexus.archiver.FileSet;
 import org.codehaus.plexus.archiver.FileSetSpec;
+import org.codehaus.plexus.archiver.gzip.GZipArchiver;
+import org.codehaus.plexus.archiver.tar.TarArchiver;
+import org.codehaus.plexus.archiver.tar.TarZstdArchiver;
+import org.codehaus.plexus.archiver.xz.XZArchiver;
+import org.codehaus.plexus.archiver.zip.AbstractZipArchiver;
+import org.codehaus.plexus.archiver.zstd.ZstdArchiver;
 import org.codehaus.plexus.archivers.spi.ArchiveCreation;
 import org.codehaus.plexus.archivers.spi.ArchiverConfigurer;
+import org.codehaus.plexus.archivers.spi.DeflateStrategy;
 import org.codehaus.plexus.archivers.spi.DuplicateHandling;
 import org.codehaus.plexus.archivers.spi.PermissionHandling;
 import org.codehaus.plexus.archivers.spi.UnixPermissions;
@@ -163,6 +172,78 @@ public void setUmask(UnixPermissions permissions) {
         archiver.setUmask(toMode(permissions));
     }
 
+    @Override
+    public void setCompressionExecutor(ExecutorService executorService) {
+        Objects.requireNonNull(executorService, "executorService");
+        if (archiver instanceof AbstractZipArchiver zipArchiver) {
+            zipArchiver.setCompressionExecutor(executorService);
+        }
+    }
+
+    @Override
+    public void setCompressionLevel(int level) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("level must be between 0 and 9");
+        }
+        if (archiver instanceof AbstractZipArchiver zipArchiver) {
+            zipArchiver.setCompressionLevel(level);
+        }
+    }
+
+    @Override
+    public void setCompressionStrategy(DeflateStrategy strategy) {
+        Objects.requireNonNull(strategy, "strategy");
+        if (archiver instanceof AbstractZipArchiver zipArchiver) {
+            zipArchiver.setCompressionStrategy(
+                    strategy == DeflateStrategy.FILTERED
+                            ? Deflater.FILTERED
+                            : strategy == DeflateStrategy.HUFFMAN_ONLY
+                                    ? Deflater.HUFFMAN_ONLY
+                                    : Deflater.DEFAULT_STRATEGY);
+        }
+    }
+
+    @Override
+    public void setCompressionThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        // zstd compresses on the calling thread without workers
+        int workers = threads > 1 ? threads : 0;
+        if (archiver instanceof TarZstdArchiver tarZstdArchiver) {
+            tarZstdArchiver.setWorkers(workers);
+        } else if (archiver instanceof TarArchiver tarArchiver) {
+            tarArchiver.setCompressionThreads(threads);
+        } else if (archiver instanceof ZstdArchiver zstdArchiver) {
+            zstdArchiver.setWorkers(workers);
+        } else if (archiver instanceof GZipArchiver gZipArchiver) {
+            gZipArchiver.setThreads(threads);
+        } else if (archiver instanceof XZArchiver xzArchiver) {
+            xzArchiver.setThreads(threads);
+        }
+    }
+
+    @Override
+    public void setCompressionWindowLog(int windowLog) {
+        if (windowLog < 10 || windowLog > 31) {
+            throw new IllegalArgumentException("windowLog must be between 10 and 31");
+        }
+        if (archiver instanceof TarZstdArchiver tarZstdArchiver) {
+            tarZstdArchiver.setWindowLog(windowLog);
+        } else if (archiver instanceof ZstdArchiver zstdArchiver) {
+            zstdArchiver.setWindowLog(windowLog);
+        }
+    }
+
+    @Override
+    public void setLongDistanceMatching(boolean longDistanceMatching) {
+        if (archiver instanceof TarZstdArchiver tarZstdArchiver) {
+            tarZstdArchiver.setLongDistanceMatching(longDistanceMatching);
+        } else if (archiver instanceof ZstdArchiver zstdArchiver) {
+            zstdArchiver.setLongDistanceMatching(longDistanceMatching);
+        }
+    }
+
     @Override
     public void configureReproducibleBuild(FileTime lastModifiedTime) {
         archiver.configureReproducibleBuild(Objects.requireNonNull(lastModifiedTime, "lastModifiedTime"));
@@ -20,6 +20,7 @@
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
 import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
 
 import org.codehaus.plexus.archiver.ArchivedFileSet;
 import org.codehaus.plexus.archiver.ArchivedFileSetSpec;
@@ -75,5 +76,42 @@ public interface ArchiverConfigurer {
 
     void setUmask(UnixPermissions permissions);
 
+    /**
+     * Sets the executor used to compress the entries of zip based archives. The executor is not shut down
+     * by the archiver, so it can be shared by all the archives created concurrently.
+     * Archivers that do not compress entries concurrently ignore it.
+     */
+    void setCompressionExecutor(ExecutorService executorService);
+
+    /**
+     * Sets the deflate level, from 0 to 9, of the entries of zip based archives.
+     * Archivers that do not use deflate ignore it.
+     */
+    void setCompressionLevel(int level);
+
+    /**
+     * Sets the deflate strategy of the entries of zip based archives.
+     * Archivers that do not use deflate ignore it.
+     */
+    void setCompressionStrategy(DeflateStrategy strategy);
+
+    /**
+     * Sets the number of threads compressing gzip, xz and zstd based archives, tar archives included.
+     * The zstd based archives are compressed by as many native workers. Other archivers ignore it.
+     */
+    void setCompressionThreads(int threads);
+
+    /**
+     * Sets the base 2 logarithm of the window size, from 10 to 31, of zstd based archives.
+     * Other archivers ignore it.
+     */
+    void setCompressionWindowLog(int windowLog);
+
+    /**
+     * Sets whether zstd based archives search matches in the whole window.
+     * Other archivers ignore it.
+     */
+    void setLongDistanceMatching(boolean longDistanceMatching);
+
     void configureReproducibleBuild(FileTime lastModifiedTime);
 }
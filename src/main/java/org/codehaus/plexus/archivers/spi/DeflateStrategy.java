@@ -0,0 +1,39 @@
+/*
+ * Copyright MojoHaus and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.codehaus.plexus.archivers.spi;
+
+import java.util.zip.Deflater;
+
+/**
+ * Controls the deflate strategy used to compress the entries of zip based archives.
+ *
+ * @since 5.0.0
+ */
+public sealed interface DeflateStrategy permits FixedDeflateStrategy {
+    DeflateStrategy DEFAULT = new FixedDeflateStrategy(Deflater.DEFAULT_STRATEGY);
+    DeflateStrategy FILTERED = new FixedDeflateStrategy(Deflater.FILTERED);
+    DeflateStrategy HUFFMAN_ONLY = new FixedDeflateStrategy(Deflater.HUFFMAN_ONLY);
+}
+
+final class FixedDeflateStrategy implements DeflateStrategy {
+    final int value;
+
+    FixedDeflateStrategy(int value) {
+        this.value = value;
+    }
+}
@@ -16,13 +16,17 @@
  */
 package org.codehaus.plexus.archiver;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.nio.file.Files;
 import java.util.Date;
 
 import org.codehaus.plexus.components.io.filemappers.FileMapper;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
 import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -187,4 +191,73 @@ void shouldExtractWhenCasingDifferOnlyInEntryNamePath(@TempDir File temporaryFol
         assertTrue(abstractUnArchiver.shouldExtractEntry(temporaryFolder, file, entryName, entryDate));
         assertEquals(0, abstractUnArchiver.casingMessageEmitted.get());
     }
+
+    @Test
+    void shouldExtractNormalizedEntryName(@TempDir File targetFolder) throws Exception {
+        // when
+        abstractUnArchiver.extractFile(
+                null,
+                new File(targetFolder, "."),
+                new ByteArrayInputStream(new byte[] {42}),
+                "directory/../whatever.txt",
+                new Date(),
+                false,
+                null,
+                null,
+                null);
+
+        // then
+        assertTrue(new File(targetFolder, "whatever.txt").isFile());
+        assertFalse(new File(targetFolder, "directory").exists());
+    }
+
+    @Test
+    void shouldExtractEntryNameWithBackslashSeparators(@TempDir File targetFolder) throws Exception {
+        // when
+        abstractUnArchiver.extractFile(
+                null,
+                targetFolder,
+                new ByteArrayInputStream(new byte[] {42}),
+                "directory\\whatever.txt",
+                new Date(),
+                false,
+                null,
+                null,
+                null);
+
+        // then
+        assertTrue(new File(new File(targetFolder, "directory"), "whatever.txt").isFile());
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void shouldThrowExceptionBecauseEntryIsBelowCreatedSymlinkOutOfDirectory(@TempDir File temporaryFolder)
+            throws Exception {
+        // given
+        File targetFolder = new File(temporaryFolder, "target");
+        File outsideFolder = new File(temporaryFolder, "outside");
+        targetFolder.mkdirs();
+        outsideFolder.mkdirs();
+        abstractUnArchiver.extractFile(
+                null, targetFolder, null, "link", new Date(), false, null, outsideFolder.getAbsolutePath(), null);
+
+        // when
+        Exception exception = assertThrows(
+                ArchiverException.class,
+                () -> abstractUnArchiver.extractFile(
+                        null,
+                        targetFolder,
+                        new ByteArrayInputStream(new byte[] {42}),
+                        "link/whatever.txt",
+                        new Date(),
+                        false,
+                        null,
+                        null,
+                        null));
+
+        // then
+        assertEquals("Entry is outside of the target directory (link/whatever.txt)", exception.getMessage());
+        assertTrue(Files.isSymbolicLink(new File(targetFolder, "link").toPath()));
+        assertFalse(new File(outsideFolder, "whatever.txt").exists());
+    }
 }
@@ -0,0 +1,56 @@
+package org.codehaus.plexus.archiver.gzip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ParallelGZipOutputStreamTest {
+
+    @Test
+    void shouldWriteASingleGzipMember() throws Exception {
+        Random random = new Random(42);
+        for (int size : new int[] {0, 1, 1000, 64 * 1024, 64 * 1024 + 1, 1_000_000}) {
+            byte[] data = new byte[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = (byte) "lorem ipsum dolor sit amet".charAt(random.nextInt(26));
+            }
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream out = new ParallelGZipOutputStream(compressed, 4, 64 * 1024, 6)) {
+                for (int offset = 0; offset < size; ) {
+                    int length = Math.min(size - offset, 1 + random.nextInt(20000));
+                    out.write(data, offset, length);
+                    offset += length;
+                }
+            }
+
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+                assertArrayEquals(data, in.readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    void shouldCombineCrc32() {
+        byte[] data = new byte[100_000];
+        new Random(42).nextBytes(data);
+        CRC32 first = new CRC32();
+        first.update(data, 0, 30_000);
+        CRC32 second = new CRC32();
+        second.update(data, 30_000, 70_000);
+        CRC32 whole = new CRC32();
+        whole.update(data);
+
+        assertEquals(whole.getValue(), ParallelGZipOutputStream.combine(first.getValue(), second.getValue(), 70_000));
+        assertEquals(first.getValue(), ParallelGZipOutputStream.combine(first.getValue(), 0, 0));
+    }
+}
@@ -0,0 +1,84 @@
+package org.codehaus.plexus.archiver.tar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class MemberInputStreamTest {
+
+    /**
+     * A gzip header, which also occurs inside the stored blocks of a member of random data.
+     */
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 3};
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void shouldDecompressGzipMembersInParallel() throws Exception {
+        byte[] data = randomData(12 * 300_000);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        for (int offset = 0; offset < data.length; offset += 300_000) {
+            GZIPOutputStream out = new GZIPOutputStream(compressed);
+            out.write(data, offset, 300_000);
+            out.finish();
+        }
+
+        assertDecompressed(data, compressed.toByteArray(), MemberFormat.GZIP);
+    }
+
+    @Test
+    void shouldDecompressBzip2StreamsInParallel() throws Exception {
+        byte[] data = randomData(8 * 200_000);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        for (int offset = 0; offset < data.length; offset += 200_000) {
+            ByteArrayOutputStream member = new ByteArrayOutputStream();
+            try (OutputStream out = new BZip2CompressorOutputStream(member)) {
+                out.write(data, offset, 200_000);
+            }
+            member.writeTo(compressed);
+        }
+
+        assertDecompressed(data, compressed.toByteArray(), MemberFormat.BZIP2);
+    }
+
+    @Test
+    void shouldDecompressMembersWithTheSignatureInTheirData() throws Exception {
+        byte[] data = randomData(4 * 1024 * 1024);
+        for (int offset = 100_000; offset < data.length; offset += 300_000) {
+            System.arraycopy(GZIP_HEADER, 0, data, offset, GZIP_HEADER.length);
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(data);
+        }
+
+        assertDecompressed(data, compressed.toByteArray(), MemberFormat.GZIP);
+    }
+
+    private void assertDecompressed(byte[] expected, byte[] compressed, MemberFormat format) throws Exception {
+        Path file = tempDir.resolve("members");
+        Files.write(file, compressed);
+        try (InputStream in = new MemberInputStream(FileChannel.open(file, StandardOpenOption.READ), format, 4)) {
+            assertArrayEquals(expected, in.readAllBytes());
+        }
+    }
+
+    private static byte[] randomData(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}
@@ -32,6 +32,7 @@
 import java.util.Enumeration;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Random;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
@@ -57,6 +58,7 @@
 
 import static org.codehaus.plexus.archiver.util.Streams.bufferedInputStream;
 import static org.codehaus.plexus.components.io.resources.ResourceFactory.createResource;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -194,6 +196,33 @@ void createEmptyArchive() throws Exception {
         }
     }
 
+    @Test
+    void createUncompressedArchiveByTransferringFiles() throws Exception {
+        File large = new File(tempDir, "large.bin");
+        byte[] content = new byte[1024 * 1024 + 13];
+        new Random(42).nextBytes(content);
+        Files.write(large.toPath(), content);
+
+        File transferred = new File(tempDir, "transferred.tar");
+        File streamed = new File(tempDir, "streamed.tar");
+        // an existing archive is written through a stream
+        Files.write(streamed.toPath(), new byte[0]);
+        for (File tarFile : new File[] {transferred, streamed}) {
+            TarArchiver archiver = getPosixTarArchiver();
+            archiver.setDestFile(tarFile);
+            archiver.addFile(large, "large.bin");
+            archiver.addFile(getTestFile("src/test/resources/manifests/manifest1.mf"), "one.txt");
+            archiver.addFile(getTestFile("src/test/resources/manifests/manifest2.mf"), "a/b/two.txt");
+            archiver.createArchive();
+        }
+
+        assertArrayEquals(Files.readAllBytes(streamed.toPath()), Files.readAllBytes(transferred.toPath()));
+        try (TarArchiveInputStream tis = new TarArchiveInputStream(Files.newInputStream(transferred.toPath()))) {
+            assertEquals("large.bin", tis.getNextEntry().getName());
+            assertArrayEquals(content, tis.readAllBytes());
+        }
+    }
+
     @Test
     void unicode() throws Exception {
         File tmpDir = getTestFile("src/test/resources/utf8");
@@ -3,13 +3,23 @@
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 
+import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.codehaus.plexus.archiver.Archiver;
 import org.codehaus.plexus.archiver.TestSupport;
+import org.codehaus.plexus.archiver.UnArchiver;
 import org.codehaus.plexus.archiver.bzip2.BZip2Compressor;
 import org.codehaus.plexus.archiver.gzip.GZipCompressor;
 import org.codehaus.plexus.archiver.util.Compressor;
@@ -19,6 +29,7 @@
 import org.junit.jupiter.api.Test;
 
 import static org.codehaus.plexus.components.io.resources.ResourceFactory.createResource;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -75,6 +86,129 @@ public TarFile newTarFile(File file) throws IOException {
         });
     }
 
+    /**
+     * Test for the random access to the entries of an uncompressed tar file.
+     */
+    @Test
+    void tarFileEntriesReadInAnyOrder() throws Exception {
+        File file = new File("target/output/TarFileTest-random-access.tar");
+        final TarArchiver archiver = (TarArchiver) lookup(Archiver.class, "tar");
+        archiver.setLongfile(TarLongFileMode.posix);
+        archiver.setDestFile(file);
+        archiver.addFileSet(DefaultFileSet.fileSet(new File("src/main")));
+        FileUtils.removePath(file.getPath());
+        archiver.createArchive();
+
+        assertEntriesReadInAnyOrder(new TarFile(file), new File("src/main"));
+    }
+
+    /**
+     * Test for the random access to the entries of a tar file compressed in gzip blocks.
+     */
+    @Test
+    void gZipTarFileCompressedInBlocks() throws Exception {
+        testTarFileCompressedInBlocks("tar.gz", ".tar.gz", GZipTarFile::new);
+    }
+
+    /**
+     * Test for the random access to the entries of a tar file compressed in zstd frames.
+     */
+    @Test
+    void zstdTarFileCompressedInBlocks() throws Exception {
+        testTarFileCompressedInBlocks("tar.zst", ".tar.zst", ZstdTarFile::new);
+    }
+
+    /**
+     * Test for the random access to the entries of a tar file compressed in xz blocks.
+     */
+    @Test
+    void xzTarFileCompressedInBlocks() throws Exception {
+        testTarFileCompressedInBlocks("tar.xz", ".tar.xz", XZTarFile::new);
+    }
+
+    /**
+     * Test that a gzip member claiming a block larger than the largest block size is not read in blocks.
+     */
+    @Test
+    void gZipBlockLargerThanTheLargestBlockSize() throws Exception {
+        File file = new File("target/output/TarFileTest-large-block.tar.gz");
+        file.getParentFile().mkdirs();
+        ByteBuffer member = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+        member.put(new byte[] {0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff});
+        member.putShort((short) 12).put((byte) 'P').put((byte) 'B').putShort((short) 8);
+        // uncompressed and compressed sizes of the block
+        member.putInt((int) BlockFormat.MAX_BLOCK_SIZE + 1).putInt(32);
+        Files.write(file.toPath(), member.array());
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            assertNull(BlockFormat.GZIP.readIndex(channel));
+        }
+    }
+
+    private void testTarFileCompressedInBlocks(String role, String extension, TarFileCreator tarFileCreator)
+            throws Exception {
+        File file = new File("target/output/TarFileTest-blocks" + extension);
+        final TarArchiver archiver = (TarArchiver) lookup(Archiver.class, role);
+        archiver.setLongfile(TarLongFileMode.posix);
+        archiver.setCompressionBlockSize(16 * 1024);
+        archiver.setDestFile(file);
+        archiver.addFileSet(DefaultFileSet.fileSet(new File("src/main")));
+        FileUtils.removePath(file.getPath());
+        archiver.createArchive();
+
+        final TarFile tarFile = tarFileCreator.newTarFile(file);
+        assertTrue(tarFile.isRandomAccess());
+        assertEntriesReadInAnyOrder(tarFile, new File("src/main"));
+
+        // the blocks are decompressed in parallel
+        File outputDirectory = new File("target/output/TarFileTest-blocks");
+        FileUtils.deleteDirectory(outputDirectory);
+        final TarUnArchiver unArchiver = (TarUnArchiver) lookup(UnArchiver.class, role);
+        unArchiver.setSourceFile(file);
+        unArchiver.setDestDirectory(outputDirectory);
+        unArchiver.setDecompressionThreads(4);
+        unArchiver.extract();
+        final File extracted = new File(outputDirectory, "java/org/codehaus/plexus/archiver/tar/TarFile.java");
+        assertSameContent(
+                Files.newInputStream(extracted.toPath()),
+                new File("src/main/java/org/codehaus/plexus/archiver/tar/TarFile.java"));
+    }
+
+    private static void assertEntriesReadInAnyOrder(TarFile tarFile, File directory) throws IOException {
+        final List<TarArchiveEntry> entries = new ArrayList<>();
+        for (Enumeration en = tarFile.getEntries(); en.hasMoreElements(); ) {
+            final TarArchiveEntry te = (TarArchiveEntry) en.nextElement();
+            if (!te.isDirectory() && !te.isSymbolicLink()) {
+                entries.add(te);
+            }
+        }
+        Collections.reverse(entries);
+
+        for (TarArchiveEntry te : entries) {
+            assertSameContent(tarFile.getInputStream(te), new File(directory, te.getName()));
+        }
+        entries.parallelStream().forEach(te -> {
+            try {
+                // looked up by name
+                assertSameContent(
+                        tarFile.getInputStream((ArchiveEntry) new TarArchiveEntry(te.getName())),
+                        new File(directory, te.getName()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        tarFile.close();
+    }
+
+    private static void assertSameContent(InputStream teStream, File teFile) throws IOException {
+        try (InputStream fileStream = Files.newInputStream(teFile.toPath())) {
+            assertTrue(Arrays.equals(IOUtil.toByteArray(teStream), IOUtil.toByteArray(fileStream)));
+        } finally {
+            teStream.close();
+        }
+    }
+
     private void testTarFile(Compressor compressor, String extension, TarFileCreator tarFileCreator) throws Exception {
         File file = new File("target/output/TarFileTest.tar");
         final TarArchiver archiver = (TarArchiver) lookup(Archiver.class, "tar");
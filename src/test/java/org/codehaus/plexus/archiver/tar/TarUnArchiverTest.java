@@ -1,7 +1,17 @@
 package org.codehaus.plexus.archiver.tar;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
 import org.apache.commons.io.FileUtils;
 import org.codehaus.plexus.archiver.TestSupport;
 import org.codehaus.plexus.archiver.UnArchiver;
@@ -9,7 +19,11 @@
 import org.codehaus.plexus.components.io.fileselectors.IncludeExcludeFileSelector;
 import org.junit.jupiter.api.Test;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author <a href="mailto:viktor@jv-ration.com">Viktor Sadovnikov</a>
@@ -17,6 +31,10 @@
 class TarUnArchiverTest extends TestSupport {
 
     private void runUnarchiver(FileSelector[] selectors, boolean[] results) throws Exception {
+        runUnarchiver("", selectors, results);
+    }
+
+    private void runUnarchiver(String path, FileSelector[] selectors, boolean[] results) throws Exception {
         String s = "target/tar-unarchiver-tests";
 
         File testJar = new File(getBasedir(), "src/test/jars/test.tar.gz");
@@ -30,7 +48,7 @@ private void runUnarchiver(FileSelector[] selectors, boolean[] results) throws E
 
         FileUtils.deleteDirectory(outputDirectory);
 
-        tarUn.extract(testJar.getAbsolutePath(), outputDirectory);
+        tarUn.extract(path, outputDirectory);
 
         assertFileExistance(s, "/resources/artifactId/test.properties", results[0]);
         assertFileExistance(s, "/resources/artifactId/directory/test.properties", results[1]);
@@ -50,6 +68,203 @@ void extractingADirectory() throws Exception {
         runUnarchiver(null, new boolean[] {true, true, true});
     }
 
+    @Test
+    void extractingAPath() throws Exception {
+        runUnarchiver("resources/artifactId/directory/", null, new boolean[] {false, true, false});
+    }
+
+    @Test
+    void extractingPathsOfAnUncompressedTar() throws Exception {
+        File tarFile = new File(getBasedir(), "target/output/tar-unarchiver-paths.tar");
+        tarFile.getParentFile().mkdirs();
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(Files.newOutputStream(tarFile.toPath()))) {
+            for (String name : new String[] {"a/1.txt", "a/2.txt", "b/3.txt", "c.txt"}) {
+                byte[] content = name.getBytes(UTF_8);
+                TarArchiveEntry entry = new TarArchiveEntry(name);
+                entry.setSize(content.length);
+                tos.putArchiveEntry(entry);
+                tos.write(content);
+                tos.closeArchiveEntry();
+            }
+        }
+
+        File outputDirectory = new File(getBasedir(), "target/tar-unarchiver-paths-tests");
+        FileUtils.deleteDirectory(outputDirectory);
+
+        TarUnArchiver tarUn = (TarUnArchiver) lookup(UnArchiver.class, "tar");
+        tarUn.setSourceFile(tarFile);
+        tarUn.extractPaths(Arrays.asList("a/", "c.txt"), outputDirectory);
+
+        assertEquals("a/2.txt", new String(Files.readAllBytes(new File(outputDirectory, "a/2.txt").toPath()), UTF_8));
+        assertEquals("c.txt", new String(Files.readAllBytes(new File(outputDirectory, "c.txt").toPath()), UTF_8));
+        assertTrue(new File(outputDirectory, "a/1.txt").isFile());
+        assertFalse(new File(outputDirectory, "b").exists());
+    }
+
+    @Test
+    void extractingWithSeveralThreads() throws Exception {
+        File tarFile = new File(getBasedir(), "target/output/tar-unarchiver-threads.tar");
+        tarFile.getParentFile().mkdirs();
+        long directoryTime = 1_000_000_000_000L;
+        byte[] large = new byte[3 * EntryPipeline.BUFFER_SIZE + 1];
+        new Random(42).nextBytes(large);
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(Files.newOutputStream(tarFile.toPath()))) {
+            TarArchiveEntry directory = new TarArchiveEntry("d/");
+            directory.setModTime(directoryTime);
+            tos.putArchiveEntry(directory);
+            tos.closeArchiveEntry();
+            for (int i = 0; i < 100; i++) {
+                writeEntry(tos, "d/" + i + ".txt", ("file " + i).getBytes(UTF_8));
+            }
+            writeEntry(tos, "d/large.bin", large);
+            writeEntry(tos, "d/0.txt", "replaced".getBytes(UTF_8));
+        }
+
+        File outputDirectory = new File(getBasedir(), "target/tar-unarchiver-threads-tests");
+        FileUtils.deleteDirectory(outputDirectory);
+
+        TarUnArchiver tarUn = (TarUnArchiver) lookup(UnArchiver.class, "tar");
+        tarUn.setSourceFile(tarFile);
+        tarUn.setDestDirectory(outputDirectory);
+        tarUn.setExtractionThreads(4);
+        tarUn.extract();
+
+        assertEquals("replaced", new String(Files.readAllBytes(new File(outputDirectory, "d/0.txt").toPath()), UTF_8));
+        for (int i = 1; i < 100; i++) {
+            assertEquals(
+                    "file " + i,
+                    new String(Files.readAllBytes(new File(outputDirectory, "d/" + i + ".txt").toPath()), UTF_8));
+        }
+        assertArrayEquals(large, Files.readAllBytes(new File(outputDirectory, "d/large.bin").toPath()));
+        assertEquals(directoryTime, new File(outputDirectory, "d").lastModified());
+    }
+
+    @Test
+    void extractingSymlinksWithSeveralThreads() throws Exception {
+        File tarFile = new File(getBasedir(), "target/output/tar-unarchiver-threads-symlinks.tar");
+        tarFile.getParentFile().mkdirs();
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(Files.newOutputStream(tarFile.toPath()))) {
+            for (int i = 0; i < 100; i++) {
+                writeEntry(tos, "d/" + i + ".txt", ("file " + i).getBytes(UTF_8));
+            }
+            TarArchiveEntry link = new TarArchiveEntry("link", TarConstants.LF_SYMLINK);
+            link.setLinkName("d");
+            tos.putArchiveEntry(link);
+            tos.closeArchiveEntry();
+            writeEntry(tos, "link/100.txt", "file 100".getBytes(UTF_8));
+        }
+
+        File outputDirectory = new File(getBasedir(), "target/tar-unarchiver-threads-symlinks-tests");
+        FileUtils.deleteDirectory(outputDirectory);
+
+        TarUnArchiver tarUn = (TarUnArchiver) lookup(UnArchiver.class, "tar");
+        tarUn.setSourceFile(tarFile);
+        tarUn.setDestDirectory(outputDirectory);
+        tarUn.setExtractionThreads(4);
+        tarUn.extract();
+
+        assertTrue(Files.isSymbolicLink(new File(outputDirectory, "link").toPath()));
+        for (int i = 0; i <= 100; i++) {
+            assertEquals(
+                    "file " + i,
+                    new String(Files.readAllBytes(new File(outputDirectory, "d/" + i + ".txt").toPath()), UTF_8));
+        }
+    }
+
+    @Test
+    void decompressingGzipMembersWithSeveralThreads() throws Exception {
+        byte[] large = new byte[3 * MemberInputStream.SLICE_SIZE];
+        new Random(42).nextBytes(large);
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(tar)) {
+            writeEntry(tos, "large.bin", large);
+            writeEntry(tos, "small.txt", "small".getBytes(UTF_8));
+        }
+        byte[] uncompressed = tar.toByteArray();
+        File tarFile = new File(getBasedir(), "target/output/tar-unarchiver-members.tar.gz");
+        tarFile.getParentFile().mkdirs();
+        try (OutputStream out = Files.newOutputStream(tarFile.toPath())) {
+            for (int offset = 0; offset < uncompressed.length; offset += 300_000) {
+                GZIPOutputStream member = new GZIPOutputStream(out);
+                member.write(uncompressed, offset, Math.min(300_000, uncompressed.length - offset));
+                member.finish();
+            }
+        }
+
+        File outputDirectory = new File(getBasedir(), "target/tar-unarchiver-members-tests");
+        FileUtils.deleteDirectory(outputDirectory);
+
+        TarUnArchiver tarUn = (TarUnArchiver) lookup(UnArchiver.class, "tar.gz");
+        tarUn.setSourceFile(tarFile);
+        tarUn.setDestDirectory(outputDirectory);
+        tarUn.setDecompressionThreads(4);
+        tarUn.extract();
+
+        assertArrayEquals(large, Files.readAllBytes(new File(outputDirectory, "large.bin").toPath()));
+        assertEquals("small", new String(Files.readAllBytes(new File(outputDirectory, "small.txt").toPath()), UTF_8));
+    }
+
+    @Test
+    void skipUnchangedFiles() throws Exception {
+        File tarFile = new File(getBasedir(), "target/output/tar-skip-unchanged.tar");
+        tarFile.getParentFile().mkdirs();
+        long time = 1_600_000_000_000L;
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(Files.newOutputStream(tarFile.toPath()))) {
+            for (String name : Arrays.asList("unchanged.txt", "modified.txt", "truncated.txt")) {
+                TarArchiveEntry entry = new TarArchiveEntry(name);
+                byte[] content = ("content of " + name).getBytes(UTF_8);
+                entry.setSize(content.length);
+                entry.setModTime(time);
+                entry.setMode(0100644);
+                tos.putArchiveEntry(entry);
+                tos.write(content);
+                tos.closeArchiveEntry();
+            }
+        }
+
+        File outputDirectory = new File(getBasedir(), "target/tar-skip-unchanged-tests");
+        FileUtils.deleteDirectory(outputDirectory);
+        File unchangedFile = new File(outputDirectory, "unchanged.txt");
+        File modifiedFile = new File(outputDirectory, "modified.txt");
+        File truncatedFile = new File(outputDirectory, "truncated.txt");
+        Object unchangedFileKey = null;
+        for (int run = 0; run < 2; run++) {
+            TarUnArchiver tarUn = (TarUnArchiver) lookup(UnArchiver.class, "tar");
+            tarUn.setSourceFile(tarFile);
+            tarUn.setDestDirectory(outputDirectory);
+            tarUn.setSkipUnchangedFiles(true);
+            tarUn.extract();
+
+            for (File file : Arrays.asList(unchangedFile, modifiedFile, truncatedFile)) {
+                assertEquals(
+                        "content of " + file.getName(), new String(Files.readAllBytes(file.toPath()), UTF_8));
+                // the modification time is set even if the content is not written again
+                assertEquals(time, file.lastModified());
+            }
+            if (run > 0) {
+                // the entry is compared with the file while it is read, the file is not written again
+                assertEquals(unchangedFileKey, fileKey(unchangedFile));
+            }
+
+            unchangedFile.setLastModified(42_000L);
+            unchangedFileKey = fileKey(unchangedFile);
+            Files.write(modifiedFile.toPath(), "CONTENT OF modified.txt".getBytes(UTF_8));
+            Files.write(truncatedFile.toPath(), "content".getBytes(UTF_8));
+        }
+    }
+
+    private static Object fileKey(File file) throws Exception {
+        return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+    }
+
+    private static void writeEntry(TarArchiveOutputStream tos, String name, byte[] content) throws Exception {
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(content.length);
+        tos.putArchiveEntry(entry);
+        tos.write(content);
+        tos.closeArchiveEntry();
+    }
+
     @Test
     void selectors() throws Exception {
         IncludeExcludeFileSelector fileSelector = new IncludeExcludeFileSelector();
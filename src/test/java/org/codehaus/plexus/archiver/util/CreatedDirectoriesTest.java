@@ -0,0 +1,54 @@
+package org.codehaus.plexus.archiver.util;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CreatedDirectoriesTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void knowsCreatedDirectoriesAndTheirParents() {
+        CreatedDirectories createdDirectories = new CreatedDirectories();
+        File directory = tempDir.resolve("a/b/c").toFile();
+
+        assertFalse(createdDirectories.contains(directory));
+        assertTrue(createdDirectories.mkdirs(directory));
+        assertTrue(directory.isDirectory());
+
+        assertTrue(createdDirectories.contains(directory));
+        assertTrue(createdDirectories.contains(tempDir.resolve("a/b").toFile()));
+        assertTrue(createdDirectories.contains(tempDir.resolve("a/b/../b/c").toFile()));
+        assertFalse(createdDirectories.contains(tempDir.resolve("a/d").toFile()));
+        assertFalse(createdDirectories.contains(tempDir.resolve("a/b/c/d").toFile()));
+
+        createdDirectories.clear();
+        assertFalse(createdDirectories.contains(directory));
+    }
+
+    @Test
+    void knowsExistingDirectories() {
+        CreatedDirectories createdDirectories = new CreatedDirectories();
+
+        assertTrue(createdDirectories.mkdirs(tempDir.toFile()));
+        assertTrue(createdDirectories.contains(tempDir.toFile()));
+    }
+
+    @Test
+    void doesNotKnowDirectoriesFailingToBeCreated() throws Exception {
+        CreatedDirectories createdDirectories = new CreatedDirectories();
+        File file = tempDir.resolve("file").toFile();
+        assertTrue(file.createNewFile());
+
+        assertFalse(createdDirectories.mkdirs(new File(file, "directory")));
+        assertFalse(createdDirectories.contains(new File(file, "directory")));
+        assertFalse(createdDirectories.contains(file));
+    }
+}
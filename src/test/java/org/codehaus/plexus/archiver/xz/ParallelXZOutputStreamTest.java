@@ -0,0 +1,48 @@
+package org.codehaus.plexus.archiver.xz;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParallelXZOutputStreamTest {
+
+    @Test
+    void shouldWriteASingleXzStream() throws Exception {
+        Random random = new Random(42);
+        for (int size : new int[] {0, 1, 1000, 64 * 1024, 64 * 1024 + 1, 1_000_000}) {
+            byte[] data = new byte[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = (byte) "lorem ipsum dolor sit amet".charAt(random.nextInt(26));
+            }
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream out = new ParallelXZOutputStream(compressed, 4, 64 * 1024, 1)) {
+                for (int offset = 0; offset < size; ) {
+                    int length = Math.min(size - offset, 1 + random.nextInt(20000));
+                    out.write(data, offset, length);
+                    offset += length;
+                }
+            }
+
+            // a single stream, read without decompressing concatenated streams
+            try (InputStream in = new XZCompressorInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+                assertArrayEquals(data, in.readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    void shouldUseThreeTimesTheDictionarySizeAsDefaultBlockSize() {
+        assertEquals(24 * 1024 * 1024, ParallelXZOutputStream.defaultBlockSize(ParallelXZOutputStream.DEFAULT_PRESET));
+        assertThrows(IllegalArgumentException.class, () -> ParallelXZOutputStream.defaultBlockSize(10));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright MojoHaus and Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.codehaus.plexus.archiver.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompressedEntryCacheTest {
+
+    @Test
+    void storesAndReadsEntries(@TempDir Path directory) {
+        CompressedEntryCache cache = new CompressedEntryCache(directory, 1024 * 1024);
+        byte[] content = "content".getBytes(StandardCharsets.UTF_8);
+        String key = cache.key(content, content.length, Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY);
+
+        assertThat(cache.get(key)).isNull();
+        assertThat(key)
+                .isNotEqualTo(cache.key(content, content.length, Deflater.BEST_COMPRESSION, Deflater.DEFAULT_STRATEGY));
+
+        cache.put(key, 42, content.length, new byte[] {1, 2, 3, 4}, 3);
+
+        CompressedEntryCache.CachedEntry entry = cache.get(key);
+        assertThat(entry).isNotNull();
+        assertThat(entry.crc).isEqualTo(42);
+        assertThat(entry.size).isEqualTo(content.length);
+        assertThat(entry.compressed).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntries(@TempDir Path directory) throws IOException {
+        CompressedEntryCache cache = new CompressedEntryCache(directory, 10_000);
+        String recentlyUsed = null;
+        for (int i = 0; i < 20; i++) {
+            byte[] content = new byte[] {(byte) i};
+            String key = cache.key(content, 1, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+            if (recentlyUsed == null) {
+                recentlyUsed = key;
+            }
+            // the first entry is used before each new entry is added, so it is never the least recently used one
+            for (Path file : cacheFiles(directory)) {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+            }
+            cache.get(recentlyUsed);
+            cache.put(key, i, 1, new byte[1000], 1000);
+        }
+
+        long size = 0;
+        for (Path file : cacheFiles(directory)) {
+            size += Files.size(file);
+        }
+        assertThat(size).isLessThanOrEqualTo(10_000);
+        assertThat(cacheFiles(directory)).hasSizeLessThan(20);
+        assertThat(cache.get(recentlyUsed)).isNotNull();
+    }
+
+    @Test
+    void reusesCachedEntries(@TempDir Path directory) throws Exception {
+        CountingCache cache = new CountingCache(directory.resolve("cache"));
+        File pomFile = new File("pom.xml");
+        for (int i = 0; i < 2; i++) {
+            File zipFile = directory.resolve("archive" + i + ".zip").toFile();
+            ZipArchiver archiver = new ZipArchiver();
+            archiver.setDestFile(zipFile);
+            archiver.setCompressedEntryCache(cache);
+            archiver.addFile(pomFile, "pom.xml");
+            archiver.createArchive();
+
+            try (ZipFile zf = ZipFile.builder().setFile(zipFile).get()) {
+                assertThat(IOUtil.contentEquals(
+                                Files.newInputStream(pomFile.toPath()), zf.getInputStream(zf.getEntry("pom.xml"))))
+                        .isTrue();
+            }
+            assertThat(cacheFiles(directory.resolve("cache"))).hasSize(1);
+        }
+        // the entry is compressed and stored by the first archive only, the second one copies it from the cache
+        assertThat(cache.puts).isEqualTo(1);
+        assertThat(cache.hits).isEqualTo(1);
+    }
+
+    private static Path[] cacheFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(file -> file.toString().endsWith(".entry")).toArray(Path[]::new);
+        }
+    }
+
+    private static final class CountingCache extends CompressedEntryCache {
+
+        private int hits;
+
+        private int puts;
+
+        CountingCache(Path directory) {
+            super(directory, 1024 * 1024);
+        }
+
+        @Override
+        synchronized CachedEntry get(String key) {
+            CachedEntry entry = super.get(key);
+            if (entry != null) {
+                hits++;
+            }
+            return entry;
+        }
+
+        @Override
+        synchronized void put(String key, long crc, long size, byte[] compressed, int length) {
+            puts++;
+            super.put(key, crc, size, compressed, length);
+        }
+    }
+}
@@ -1,24 +1,44 @@
 package org.codehaus.plexus.archiver.zip;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
 
 import org.apache.commons.compress.archivers.zip.UnixStat;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
 import org.apache.commons.io.IOUtils;
 import org.codehaus.plexus.util.DirectoryScanner;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SuppressWarnings("ResultOfMethodCallIgnored")
-@Disabled
 class ConcurrentJarCreatorTest {
 
     @Test
+    @Disabled
     void concurrent() throws Exception {
         File home = new File(System.getProperty("user.home"));
         File result = new File(home, "multiStream2-parallel.zip");
@@ -35,10 +55,182 @@ void concurrent() throws Exception {
     }
 
     @Test
+    @Disabled
     void concurrent2() throws Exception {
         concurrent();
     }
 
+    @Test
+    void statisticsMessage() throws Exception {
+        ConcurrentJarCreator zipCreator = new ConcurrentJarCreator(2);
+        ZipArchiveEntry za = new ZipArchiveEntry("file.txt");
+        za.setMethod(ZipArchiveEntry.DEFLATED);
+        zipCreator.addArchiveEntry(za, () -> new ByteArrayInputStream(new byte[1024]), true);
+        zipCreator.writeTo(new ZipArchiveOutputStream(new ByteArrayOutputStream()));
+
+        // the original format, parsed by some callers, is kept and followed by the other statistics
+        String message = zipCreator.getStatisticsMessage();
+        assertTrue(
+                message.matches("compressionElapsed=\\d+ms, mergingElapsed=\\d+ms Zip Close: \\d+ms"
+                        + " Spilled: 0 of \\d+ scatter streams"),
+                message);
+    }
+
+    @Test
+    void pipelinedGatherWritesTheEntriesWhileTheyAreAdded(@TempDir Path spillDirectory) throws Exception {
+        ConcurrentJarCreator zipCreator = new ConcurrentJarCreator(2);
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        ZipArchiveOutputStream target = new ZipArchiveOutputStream(zip);
+        zipCreator.startWritingTo(target);
+        zipCreator.setMaxInMemorySegments(2);
+        zipCreator.setSpillDirectory(spillDirectory);
+        byte[] content = new byte[64 * 1024];
+        for (int i = 0; i < 50; i++) {
+            ZipArchiveEntry za = new ZipArchiveEntry(i % 10 == 0 ? "dir-" + i + "/" : "file-" + i + ".txt");
+            za.setMethod(ZipArchiveEntry.DEFLATED);
+            // the directories and some files are added synchronously
+            zipCreator.addArchiveEntry(za, () -> new ByteArrayInputStream(content), i % 5 != 0);
+        }
+        // the oldest entries are written while the next ones are added, the others are not written to temporary
+        // files
+        assertTrue(zip.size() > 0);
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count());
+        }
+
+        zipCreator.writeTo(target);
+        try (ZipFile zf = ZipFile.builder()
+                .setSeekableByteChannel(new SeekableInMemoryByteChannel(zip.toByteArray()))
+                .get()) {
+            Enumeration<ZipArchiveEntry> entries = zf.getEntriesInPhysicalOrder();
+            for (int i = 0; i < 50; i++) {
+                ZipArchiveEntry entry = entries.nextElement();
+                if (i % 10 == 0) {
+                    assertEquals("dir-" + i + "/", entry.getName());
+                } else {
+                    assertEquals("file-" + i + ".txt", entry.getName());
+                    assertArrayEquals(content, IOUtils.toByteArray(zf.getInputStream(entry)));
+                }
+            }
+            assertFalse(entries.hasMoreElements());
+        }
+    }
+
+    @Test
+    void reusesSpillFiles(@TempDir Path spillDirectory) throws Exception {
+        ConcurrentJarCreator zipCreator = new ConcurrentJarCreator(2);
+        // all the scatter streams are written to temporary files
+        zipCreator.setMemoryBudget(new ScatterMemoryBudget(0));
+        ZipArchiveOutputStream target = new ZipArchiveOutputStream(new ByteArrayOutputStream());
+        zipCreator.startWritingTo(target);
+        zipCreator.setMaxInMemorySegments(2);
+        zipCreator.setSpillDirectory(spillDirectory);
+        zipCreator.setReuseSpillFiles(true);
+        byte[] content = new byte[16 * 1024];
+        for (int i = 0; i < 50; i++) {
+            ZipArchiveEntry za = new ZipArchiveEntry("file-" + i + ".txt");
+            za.setMethod(ZipArchiveEntry.DEFLATED);
+            zipCreator.addArchiveEntry(za, () -> new ByteArrayInputStream(content), true);
+        }
+        // the reused files are kept until the archive is written: at most one for each segment waiting to be
+        // written
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            long count = files.count();
+            assertTrue(count >= 1 && count <= 2, "temporary files: " + count);
+        }
+
+        zipCreator.writeTo(target);
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void releasesScatterStreamsWhenWritingFails(boolean pipelinedGather, @TempDir Path spillDirectory)
+            throws Exception {
+        ScatterMemoryBudget budget = new ScatterMemoryBudget(4 * ScatterMemoryBudget.SEGMENT_SIZE);
+        ConcurrentJarCreator zipCreator = new ConcurrentJarCreator(2);
+        zipCreator.setMemoryBudget(budget);
+        zipCreator.setSpillDirectory(spillDirectory);
+        byte[] content = new byte[256 * 1024];
+        new Random(0).nextBytes(content);
+        OutputStream failing = new OutputStream() {
+            private int written;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                written += len;
+                if (written > content.length) {
+                    throw new IOException("No space left on device");
+                }
+            }
+        };
+        ZipArchiveOutputStream target = new ZipArchiveOutputStream(failing);
+        if (pipelinedGather) {
+            zipCreator.startWritingTo(target);
+        }
+        try {
+            for (int i = 0; i < 10; i++) {
+                ZipArchiveEntry za = new ZipArchiveEntry("file-" + i + ".bin");
+                za.setMethod(ZipArchiveEntry.DEFLATED);
+                zipCreator.addArchiveEntry(za, () -> new ByteArrayInputStream(content), true);
+            }
+        } catch (IOException e) {
+            // in pipelined mode the entries are already written while they are added
+            assertTrue(pipelinedGather);
+        }
+
+        assertThrows(IOException.class, () -> zipCreator.writeTo(target));
+        // the memory of the scatter streams is returned and their temporary files are deleted
+        assertEquals(budget.getSize(), budget.getAvailable());
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"other", "first and more"})
+    void failsWhenAStoredFileChangesBeforeBeingWritten(String newContent, @TempDir Path directory) throws Exception {
+        Path file = directory.resolve("file.txt");
+        Files.write(file, "first".getBytes(StandardCharsets.UTF_8));
+        ConcurrentJarCreator zipCreator = new ConcurrentJarCreator(2);
+        ZipArchiveEntry za = new ZipArchiveEntry("file.txt");
+        za.setMethod(ZipArchiveEntry.STORED);
+        zipCreator.addArchiveEntry(za, new FileContentSupplier(file), false);
+        Files.write(file, newContent.getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(
+                IOException.class,
+                () -> zipCreator.writeTo(new ZipArchiveOutputStream(new ByteArrayOutputStream())));
+    }
+
+    @Test
+    void acceptsDeflateOptionsCompressingAtLeastAsWellAsTheLevel() {
+        // options: 0 normal, 1 maximum, 2 fast, 3 super fast
+        for (int option = 0; option < 4; option++) {
+            assertTrue(ConcurrentJarCreator.isDeflateOptionAcceptable(option, Deflater.NO_COMPRESSION));
+            assertTrue(ConcurrentJarCreator.isDeflateOptionAcceptable(option, Deflater.BEST_SPEED));
+        }
+        assertFalse(ConcurrentJarCreator.isDeflateOptionAcceptable(3, 2));
+        assertTrue(ConcurrentJarCreator.isDeflateOptionAcceptable(2, 2));
+        for (int level : new int[] {Deflater.DEFAULT_COMPRESSION, 3, 6, 7}) {
+            assertTrue(ConcurrentJarCreator.isDeflateOptionAcceptable(0, level));
+            assertTrue(ConcurrentJarCreator.isDeflateOptionAcceptable(1, level));
+            assertFalse(ConcurrentJarCreator.isDeflateOptionAcceptable(2, level));
+        }
+        for (int level : new int[] {8, Deflater.BEST_COMPRESSION}) {
+            assertTrue(ConcurrentJarCreator.isDeflateOptionAcceptable(1, level));
+            assertFalse(ConcurrentJarCreator.isDeflateOptionAcceptable(0, level));
+            assertFalse(ConcurrentJarCreator.isDeflateOptionAcceptable(3, level));
+        }
+    }
+
     @Test
     @Disabled
     void classic() throws Exception {
@@ -0,0 +1,91 @@
+/*
+ * Copyright The Plexus developers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codehaus.plexus.archiver.zip;
+
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DirectBufferScatterStoreTest {
+
+    private final SpillFiles spillFiles = new SpillFiles(null, false);
+
+    @Test
+    void dataShouldBeKeptInDirectBuffers() throws Exception {
+        ScatterMemoryBudget budget = new ScatterMemoryBudget(4 * ScatterMemoryBudget.SEGMENT_SIZE);
+        AtomicInteger spills = new AtomicInteger();
+        byte[] data = randomBytes(3 * ScatterMemoryBudget.SEGMENT_SIZE + 100);
+
+        try (DirectBufferScatterStore store =
+                new DirectBufferScatterStore(budget, Long.MAX_VALUE, spills, spillFiles)) {
+            store.writeOut(data, 0, 1000);
+            store.writeOut(data, 1000, data.length - 1000);
+            store.closeForWriting();
+            assertThat(budget.getAvailable()).isZero();
+            try (InputStream in = store.getInputStream()) {
+                assertThat(in.readAllBytes()).isEqualTo(data);
+            }
+        }
+        assertThat(spills).hasValue(0);
+        assertThat(budget.getAvailable()).isEqualTo(budget.getSize());
+    }
+
+    @Test
+    void dataShouldBeWrittenToTemporaryFileWhenBudgetIsExhausted() throws Exception {
+        ScatterMemoryBudget budget = new ScatterMemoryBudget(2 * ScatterMemoryBudget.SEGMENT_SIZE);
+        AtomicInteger spills = new AtomicInteger();
+        byte[] data = randomBytes(5 * ScatterMemoryBudget.SEGMENT_SIZE + 100);
+
+        try (DirectBufferScatterStore store =
+                new DirectBufferScatterStore(budget, Long.MAX_VALUE, spills, spillFiles)) {
+            for (int offset = 0; offset < data.length; offset += 7000) {
+                store.writeOut(data, offset, Math.min(7000, data.length - offset));
+            }
+            store.closeForWriting();
+            assertThat(budget.getAvailable()).isEqualTo(budget.getSize());
+            try (InputStream in = store.getInputStream()) {
+                assertThat(in.readAllBytes()).isEqualTo(data);
+            }
+        }
+        assertThat(spills).hasValue(1);
+    }
+
+    @Test
+    void dataShouldBeWrittenToTemporaryFileWithoutBuffer() throws Exception {
+        ScatterMemoryBudget budget = new ScatterMemoryBudget(ScatterMemoryBudget.SEGMENT_SIZE);
+        byte[] data = randomBytes(1000);
+
+        try (DirectBufferScatterStore store = new DirectBufferScatterStore(budget, 0, null, spillFiles)) {
+            store.writeOut(data, 0, data.length);
+            store.closeForWriting();
+            try (InputStream in = store.getInputStream()) {
+                assertThat(in.readAllBytes()).isEqualTo(data);
+            }
+        }
+        assertThat(budget.getAvailable()).isEqualTo(budget.getSize());
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}
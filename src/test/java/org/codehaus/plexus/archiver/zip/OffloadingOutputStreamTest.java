@@ -18,6 +18,7 @@
 
 import java.io.File;
 import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 
@@ -39,4 +40,31 @@ void temporaryFileShouldBeCreated() throws Exception {
             }
         }
     }
+
+    @Test
+    void temporaryFileShouldBeCreatedWhenBudgetIsExhausted() throws Exception {
+        ScatterMemoryBudget budget = new ScatterMemoryBudget(300);
+        AtomicInteger spills = new AtomicInteger();
+        OffloadingOutputStream first =
+                new OffloadingOutputStream(Integer.MAX_VALUE, 0, "test", "test", budget, spills, null);
+        OffloadingOutputStream second =
+                new OffloadingOutputStream(Integer.MAX_VALUE, 0, "test", "test", budget, spills, null);
+        try {
+            first.write(new byte[200]);
+            second.write(new byte[200]);
+            first.close();
+            second.close();
+            assertThat(first.getFile()).isNull();
+            assertThat(second.getFile()).isFile().hasSize(200);
+            assertThat(spills).hasValue(1);
+            assertThat(budget.getAvailable()).isEqualTo(100);
+
+            first.release();
+            assertThat(budget.getAvailable()).isEqualTo(300);
+        } finally {
+            if (second.getFile() != null) {
+                Files.delete(second.getFile().toPath());
+            }
+        }
+    }
 }
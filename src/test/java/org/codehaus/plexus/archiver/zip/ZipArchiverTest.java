@@ -44,6 +44,9 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -306,6 +309,203 @@ void testCreateArchive() throws Exception {
         createArchive(archiver);
     }
 
+    @Test
+    void createArchivesWithSharedCompressionExecutor() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 2; i++) {
+                ZipArchiver archiver = newArchiver("shared-executor" + i + ".zip");
+                archiver.setCompressionExecutor(executorService);
+                createArchive(archiver);
+            }
+            // the executor belongs to the caller, so it must be still usable after the archives have been created
+            assertFalse(executorService.isShutdown());
+
+            try (ZipFile zf = ZipFile.builder()
+                    .setFile(getTestFile("target/output/shared-executor1.zip"))
+                    .get()) {
+                assertTrue(IOUtil.contentEquals(
+                        Files.newInputStream(getTestFile("src/test/resources/manifests/manifest1.mf")
+                                .toPath()),
+                        zf.getInputStream(zf.getEntry("one.txt"))));
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    void compressionLevel() throws Exception {
+        File pomFile = new File("pom.xml");
+        long[] compressedSizes = new long[2];
+        int[] levels = {0, 9};
+        for (int i = 0; i < levels.length; i++) {
+            File zipFile = getTestFile("target/output/compression-level-" + levels[i] + ".zip");
+            ZipArchiver archiver = getZipArchiver(zipFile);
+            archiver.setCompressionLevel(levels[i]);
+            archiver.setCompressionStrategy(Deflater.FILTERED);
+            archiver.addFile(pomFile, "META-INF/pom.xml");
+            archiver.addFile(pomFile, "pom.xml");
+            archiver.createArchive();
+
+            try (ZipFile zf = ZipFile.builder().setFile(zipFile).get()) {
+                for (String name : Arrays.asList("META-INF/pom.xml", "pom.xml")) {
+                    ZipArchiveEntry entry = zf.getEntry(name);
+                    assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+                    assertTrue(IOUtil.contentEquals(
+                            Files.newInputStream(pomFile.toPath()), zf.getInputStream(entry)));
+                }
+                compressedSizes[i] = zf.getEntry("META-INF/pom.xml").getCompressedSize();
+            }
+        }
+        assertTrue(compressedSizes[0] > pomFile.length());
+        assertTrue(compressedSizes[1] < pomFile.length());
+        assertThrows(IllegalArgumentException.class, () -> getZipArchiver().setCompressionLevel(10));
+    }
+
+    @Test
+    void entryCompressionPolicy() throws Exception {
+        File zipFile = getTestFile("target/output/entry-compression-policy.zip");
+        ZipArchiver archiver = getZipArchiver(zipFile);
+        archiver.setEntryCompressionPolicy(new DefaultEntryCompressionPolicy());
+        archiver.addFile(new File("pom.xml"), "pom.xml");
+        archiver.addFile(getTestFile("src/test/jars/test.tar.gz"), "test.tar.gz");
+        // compressed content is detected even if the name does not match
+        archiver.addFile(getTestFile("src/test/jars/test.tar.gz"), "archive.bin");
+        archiver.addFile(getTestFile("src/test/jars/test.jar"), "test.jar");
+        archiver.createArchive();
+
+        try (ZipFile zf = ZipFile.builder().setFile(zipFile).get()) {
+            assertEquals(ZipEntry.DEFLATED, zf.getEntry("pom.xml").getMethod());
+            assertEquals(ZipEntry.STORED, zf.getEntry("test.tar.gz").getMethod());
+            assertEquals(ZipEntry.STORED, zf.getEntry("archive.bin").getMethod());
+            assertEquals(ZipEntry.STORED, zf.getEntry("test.jar").getMethod());
+            assertTrue(IOUtil.contentEquals(
+                    Files.newInputStream(getTestFile("src/test/jars/test.tar.gz").toPath()),
+                    zf.getInputStream(zf.getEntry("archive.bin"))));
+        }
+
+        archiver = getZipArchiver(zipFile);
+        archiver.setEntryCompressionPolicy((name, sample, sampleLength, defaultLevel) ->
+                name.endsWith(".xml") ? Deflater.NO_COMPRESSION : Deflater.BEST_SPEED);
+        archiver.addFile(new File("pom.xml"), "pom.xml");
+        archiver.addFile(getTestFile("src/test/jars/test.tar.gz"), "test.tar.gz");
+        archiver.setForced(true);
+        archiver.createArchive();
+
+        try (ZipFile zf = ZipFile.builder().setFile(zipFile).get()) {
+            assertEquals(ZipEntry.STORED, zf.getEntry("pom.xml").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zf.getEntry("test.tar.gz").getMethod());
+            assertTrue(IOUtil.contentEquals(
+                    Files.newInputStream(new File("pom.xml").toPath()), zf.getInputStream(zf.getEntry("pom.xml"))));
+        }
+    }
+
+    @Test
+    void pipelinedGather() throws Exception {
+        File pomFile = new File("pom.xml");
+        File zipFile = getTestFile("target/output/pipelined-gather.zip");
+        ZipArchiver archiver = getZipArchiver(zipFile);
+        archiver.setPipelinedGather(true);
+        // the oldest entries are gathered while the next ones are added
+        archiver.setMaxInMemorySegments(2);
+        for (int i = 0; i < 50; i++) {
+            archiver.addFile(pomFile, "file-" + i + ".xml");
+        }
+        archiver.createArchive();
+
+        try (ZipFile zf = ZipFile.builder().setFile(zipFile).get()) {
+            Enumeration<ZipArchiveEntry> entries = zf.getEntriesInPhysicalOrder();
+            for (int i = 0; i < 50; i++) {
+                ZipArchiveEntry entry = entries.nextElement();
+                // the entries are written in the order they were added
+                assertEquals("file-" + i + ".xml", entry.getName());
+                assertTrue(IOUtil.contentEquals(Files.newInputStream(pomFile.toPath()), zf.getInputStream(entry)));
+            }
+            assertFalse(entries.hasMoreElements());
+        }
+    }
+
+    @Test
+    void scatterMemoryBudget() throws Exception {
+        File pomFile = new File("pom.xml");
+        File zipFile = getTestFile("target/output/scatter-memory-budget.zip");
+        ScatterMemoryBudget budget = new ScatterMemoryBudget(pomFile.length());
+        ZipArchiver archiver = getZipArchiver(zipFile);
+        archiver.setScatterMemoryBudget(budget);
+        for (int i = 0; i < 20; i++) {
+            archiver.addFile(pomFile, "file-" + i + ".xml");
+        }
+        archiver.createArchive();
+
+        try (ZipFile zf = ZipFile.builder().setFile(zipFile).get()) {
+            for (int i = 0; i < 20; i++) {
+                assertTrue(IOUtil.contentEquals(
+                        Files.newInputStream(pomFile.toPath()), zf.getInputStream(zf.getEntry("file-" + i + ".xml"))));
+            }
+        }
+        assertEquals(budget.getSize(), budget.getAvailable());
+    }
+
+    @Test
+    void reuseSpillFiles() throws Exception {
+        File pomFile = new File("pom.xml");
+        File spillDirectory = getTestFile("target/output/spill-files");
+        FileUtils.deleteDirectory(spillDirectory);
+        spillDirectory.mkdirs();
+        File zipFile = getTestFile("target/output/reuse-spill-files.zip");
+        ZipArchiver archiver = getZipArchiver(zipFile);
+        // all the entries are written to temporary files
+        archiver.setScatterMemoryBudget(new ScatterMemoryBudget(0));
+        archiver.setPipelinedGather(true);
+        archiver.setSpillDirectory(spillDirectory);
+        archiver.setReuseSpillFiles(true);
+        for (int i = 0; i < 20; i++) {
+            archiver.addFile(pomFile, "file-" + i + ".xml");
+        }
+        archiver.createArchive();
+
+        try (ZipFile zf = ZipFile.builder().setFile(zipFile).get()) {
+            for (int i = 0; i < 20; i++) {
+                assertTrue(IOUtil.contentEquals(
+                        Files.newInputStream(pomFile.toPath()), zf.getInputStream(zf.getEntry("file-" + i + ".xml"))));
+            }
+        }
+        // the temporary files are deleted once the archive is written
+        assertEquals(0, spillDirectory.list().length);
+    }
+
+    @Test
+    void storedFileEntries() throws Exception {
+        File zipFile = getTestFile("target/output/stored-file-entries.zip");
+        ZipArchiver archiver = getZipArchiver(zipFile);
+        archiver.setCompress(false);
+        archiver.setPipelinedGather(true);
+        archiver.addFile(new File("pom.xml"), "pom.xml");
+        archiver.addFileSet(DefaultFileSet.fileSet(getTestFile("src/test/jars")).prefixed("jars/"));
+        DefaultFileSet transformed = DefaultFileSet.fileSet(getTestFile("src/test/jars")).prefixed("transformed/");
+        transformed.setStreamTransformer((resource, inputStream) -> BoundedInputStream.builder()
+                .setInputStream(inputStream)
+                .setMaxCount(3)
+                .get());
+        archiver.addFileSet(transformed);
+        archiver.createArchive();
+
+        try (ZipFile zf = ZipFile.builder().setFile(zipFile).get()) {
+            ZipArchiveEntry pom = zf.getEntry("pom.xml");
+            assertEquals(ZipEntry.STORED, pom.getMethod());
+            assertTrue(
+                    IOUtil.contentEquals(Files.newInputStream(new File("pom.xml").toPath()), zf.getInputStream(pom)));
+            for (String name : Arrays.asList("test.jar", "test.zip", "test.tar.gz")) {
+                ZipArchiveEntry entry = zf.getEntry("jars/" + name);
+                assertEquals(ZipEntry.STORED, entry.getMethod());
+                assertTrue(IOUtil.contentEquals(
+                        Files.newInputStream(getTestFile("src/test/jars/" + name).toPath()), zf.getInputStream(entry)));
+                assertEquals(3, zf.getEntry("transformed/" + name).getSize());
+            }
+        }
+    }
+
     @Test
     void recompressAddedZips() throws Exception {
         // check that by default the zip archives are re-compressed
@@ -396,6 +596,152 @@ public InputStream transform(@Nonnull PlexusIoResource resource, @Nonnull InputS
         assertEquals(3, a3byteFile.length());
     }
 
+    @Test
+    void rawCopyArchivedEntries() throws Exception {
+        File pomFile = new File("pom.xml");
+        File source = getTestFile("target/output/raw-copy-source.zip");
+        ZipArchiver sourceArchiver = getZipArchiver(source);
+        sourceArchiver.setCompressionLevel(Deflater.BEST_SPEED);
+        sourceArchiver.addFile(pomFile, "pom.xml");
+        sourceArchiver.createArchive();
+
+        File rawCopy = getTestFile("target/output/raw-copy.zip");
+        ZipArchiver archiver = getZipArchiver(rawCopy);
+        archiver.setRawCopyArchivedEntries(true);
+        archiver.setCompressionLevel(Deflater.BEST_COMPRESSION - 1);
+        archiver.addArchivedFileSet(DefaultArchivedFileSet.archivedFileSet(source).prefixed("copy/"));
+        DefaultArchivedFileSet transformed = DefaultArchivedFileSet.archivedFileSet(source).prefixed("transformed/");
+        transformed.setStreamTransformer((resource, inputStream) -> BoundedInputStream.builder()
+                .setInputStream(inputStream)
+                .setMaxCount(3)
+                .get());
+        archiver.addArchivedFileSet(transformed);
+        archiver.createArchive();
+
+        try (ZipFile sourceZip = ZipFile.builder().setFile(source).get();
+                ZipFile zf = ZipFile.builder().setFile(rawCopy).get()) {
+            ZipArchiveEntry sourceEntry = sourceZip.getEntry("pom.xml");
+            ZipArchiveEntry copiedEntry = zf.getEntry("copy/pom.xml");
+            assertEquals(sourceEntry.getCrc(), copiedEntry.getCrc());
+            assertEquals(sourceEntry.getCompressedSize(), copiedEntry.getCompressedSize());
+            assertTrue(IOUtil.contentEquals(
+                    sourceZip.getRawInputStream(sourceEntry), zf.getRawInputStream(copiedEntry)));
+            assertTrue(IOUtil.contentEquals(Files.newInputStream(pomFile.toPath()), zf.getInputStream(copiedEntry)));
+
+            assertEquals(3, zf.getEntry("transformed/pom.xml").getSize());
+        }
+    }
+
+    @Test
+    void rawCopyStoresArchivedZipsWhenTheyAreNotRecompressed() throws Exception {
+        File jarFile = getTestFile("src/test/jars/test.jar");
+        File source = getTestFile("target/output/raw-copy-nested-source.zip");
+        ZipArchiver sourceArchiver = getZipArchiver(source);
+        sourceArchiver.addFile(jarFile, "nested.jar");
+        sourceArchiver.createArchive();
+
+        File rawCopy = getTestFile("target/output/raw-copy-nested.zip");
+        ZipArchiver archiver = getZipArchiver(rawCopy);
+        archiver.setRawCopyArchivedEntries(true);
+        archiver.setRecompressAddedZips(false);
+        archiver.addArchivedFileSet(DefaultArchivedFileSet.archivedFileSet(source));
+        archiver.createArchive();
+
+        try (ZipFile sourceZip = ZipFile.builder().setFile(source).get();
+                ZipFile zf = ZipFile.builder().setFile(rawCopy).get()) {
+            assertEquals(ZipEntry.DEFLATED, sourceZip.getEntry("nested.jar").getMethod());
+            // the nested jar is stored, as when it is added from a file
+            ZipArchiveEntry copiedEntry = zf.getEntry("nested.jar");
+            assertEquals(ZipEntry.STORED, copiedEntry.getMethod());
+            assertTrue(IOUtil.contentEquals(Files.newInputStream(jarFile.toPath()), zf.getInputStream(copiedEntry)));
+        }
+    }
+
+    @Test
+    void updateModeKeepsUnchangedEntries() throws Exception {
+        File pomFile = new File("pom.xml");
+        File zipFile = getTestFile("target/output/update-mode.zip");
+        FileUtils.removePath(zipFile.getPath());
+        ZipArchiver archiver = getZipArchiver(zipFile);
+        // compressed differently than with the default settings
+        archiver.setCompressionStrategy(Deflater.HUFFMAN_ONLY);
+        archiver.addFile(pomFile, "pom.xml");
+        archiver.addFile(getTestFile("src/test/resources/manifests/manifest1.mf"), "one.txt");
+        archiver.createArchive();
+
+        byte[] rawPom;
+        try (ZipFile zf = ZipFile.builder().setFile(zipFile).get()) {
+            rawPom = IOUtil.toByteArray(zf.getRawInputStream(zf.getEntry("pom.xml")));
+        }
+
+        archiver = getZipArchiver(zipFile);
+        archiver.setUpdateMode(true);
+        archiver.setForced(true);
+        archiver.addFile(pomFile, "pom.xml");
+        archiver.addFile(getTestFile("src/test/resources/manifests/manifest2.mf"), "two.txt");
+        archiver.createArchive();
+
+        try (ZipFile zf = ZipFile.builder().setFile(zipFile).get()) {
+            // unchanged entries are copied from the original archive, and entries not replaced are kept
+            assertTrue(Arrays.equals(rawPom, IOUtil.toByteArray(zf.getRawInputStream(zf.getEntry("pom.xml")))));
+            assertTrue(IOUtil.contentEquals(
+                    Files.newInputStream(pomFile.toPath()), zf.getInputStream(zf.getEntry("pom.xml"))));
+            assertTrue(IOUtil.contentEquals(
+                    Files.newInputStream(getTestFile("src/test/resources/manifests/manifest1.mf")
+                            .toPath()),
+                    zf.getInputStream(zf.getEntry("one.txt"))));
+            assertTrue(IOUtil.contentEquals(
+                    Files.newInputStream(getTestFile("src/test/resources/manifests/manifest2.mf")
+                            .toPath()),
+                    zf.getInputStream(zf.getEntry("two.txt"))));
+        }
+
+        archiver = getZipArchiver(zipFile);
+        archiver.setUpdateMode(true);
+        archiver.setForced(true);
+        archiver.setCompress(false);
+        archiver.addFile(pomFile, "pom.xml");
+        archiver.createArchive();
+
+        try (ZipFile zf = ZipFile.builder().setFile(zipFile).get()) {
+            // unchanged entries are not kept deflated when the entries are stored
+            assertEquals(ZipEntry.STORED, zf.getEntry("pom.xml").getMethod());
+            assertTrue(IOUtil.contentEquals(
+                    Files.newInputStream(pomFile.toPath()), zf.getInputStream(zf.getEntry("pom.xml"))));
+        }
+    }
+
+    @Test
+    void updateModeCompressesEntriesChangedWithTheSameSizeAndTime() throws Exception {
+        File zipFile = getTestFile("target/output/update-mode-changed.zip");
+        FileUtils.removePath(zipFile.getPath());
+        File file = getTestFile("target/output/update-mode-changed.txt");
+        Files.write(file.toPath(), "first".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(1534189012_000L));
+        ZipArchiver archiver = getZipArchiver(zipFile);
+        archiver.addFile(getTestFile("src/test/resources/manifests/manifest1.mf"), "META-INF/MANIFEST.MF");
+        archiver.addFile(file, "file.txt");
+        archiver.createArchive();
+
+        Files.write(file.toPath(), "other".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(1534189012_000L));
+        archiver = getZipArchiver(zipFile);
+        archiver.setUpdateMode(true);
+        archiver.setForced(true);
+        archiver.addFile(file, "file.txt");
+        archiver.createArchive();
+
+        try (ZipFile zf = ZipFile.builder().setFile(zipFile).get()) {
+            assertEquals(
+                    "other",
+                    new String(IOUtil.toByteArray(zf.getInputStream(zf.getEntry("file.txt"))), StandardCharsets.UTF_8));
+            // the kept META-INF entries are still written before the other entries
+            Enumeration<ZipArchiveEntry> entries = zf.getEntriesInPhysicalOrder();
+            assertEquals("META-INF/", entries.nextElement().getName());
+            assertEquals("META-INF/MANIFEST.MF", entries.nextElement().getName());
+        }
+    }
+
     @Test
     void createArchiveWithStreamTransformer() throws Exception {
         InputStreamTransformer is = new InputStreamTransformer() {
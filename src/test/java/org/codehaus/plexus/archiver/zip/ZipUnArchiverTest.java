@@ -18,6 +18,7 @@
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -180,6 +181,21 @@ void extractingADirectoryFromAJarFile() throws Exception {
         runUnarchiver("", null, new boolean[] {true, true, true});
     }
 
+    @Test
+    void extractingPathsFromAJarFile() throws Exception {
+        String s = "target/zip-unarchiver-paths-tests";
+        File outputDirectory = new File(getBasedir(), s);
+        FileUtils.deleteDirectory(outputDirectory);
+
+        ZipUnArchiver zu = getZipUnArchiver(new File(getBasedir(), "src/test/jars/test.jar"));
+        zu.extractPaths(
+                Arrays.asList("resources/artifactId/directory/", "META-INF/MANIFEST.MF", "META-INF/"), outputDirectory);
+
+        assertFalse(new File(getBasedir(), s + "/resources/artifactId/test.properties").exists());
+        assertTrue(new File(getBasedir(), s + "/resources/artifactId/directory/test.properties").exists());
+        assertTrue(new File(getBasedir(), s + "/META-INF/MANIFEST.MF").exists());
+    }
+
     @Test
     void selectors() throws Exception {
         IncludeExcludeFileSelector fileSelector = new IncludeExcludeFileSelector();
@@ -296,4 +312,149 @@ void zipWithNegativeModificationTime() throws Exception {
         assertTrue(extractedFile.exists());
         assertEquals("Test content", new String(java.nio.file.Files.readAllBytes(extractedFile.toPath())));
     }
+
+    @Test
+    void parallelExtraction() throws Exception {
+        File zipFile = new File("target/output/zip-parallel-extraction.zip");
+        long time = 1_600_000_000_000L;
+        createZipWithDirectories(zipFile, time);
+
+        File outputDirectory = new File("target/output/zip-parallel-extract");
+        FileUtils.deleteDirectory(outputDirectory);
+        outputDirectory.mkdirs();
+
+        ZipUnArchiver zu = getZipUnArchiver(zipFile);
+        zu.setExtractionThreads(4);
+        zu.extract("", outputDirectory);
+
+        assertExtractedFiles(outputDirectory, time);
+    }
+
+    @Test
+    void deferredMetadata() throws Exception {
+        File zipFile = new File("target/output/zip-deferred-metadata.zip");
+        long time = 1_600_000_000_000L;
+        createZipWithDirectories(zipFile, time);
+
+        File outputDirectory = new File("target/output/zip-deferred-metadata-extract");
+        FileUtils.deleteDirectory(outputDirectory);
+        outputDirectory.mkdirs();
+
+        ZipUnArchiver zu = getZipUnArchiver(zipFile);
+        zu.setDeferredMetadata(true);
+        zu.setExtractionThreads(4);
+        zu.extract("", outputDirectory);
+
+        assertExtractedFiles(outputDirectory, time);
+        for (int d = 0; d < 5; d++) {
+            // set after the files of the directory are created
+            assertEquals(time, new File(outputDirectory, "dir" + d).lastModified());
+        }
+    }
+
+    @Test
+    void skipUnchangedFiles() throws Exception {
+        File zipFile = new File("target/output/zip-skip-unchanged.zip");
+        long time = 1_600_000_000_000L;
+        createZipWithDirectories(zipFile, time);
+
+        File outputDirectory = new File("target/output/zip-skip-unchanged-extract");
+        File index = new File("target/output/zip-skip-unchanged.index");
+        FileUtils.deleteDirectory(outputDirectory);
+        index.delete();
+        outputDirectory.mkdirs();
+
+        Object unchangedFileKey = null;
+        for (int run = 0; run < 3; run++) {
+            ZipUnArchiver zu = getZipUnArchiver(zipFile);
+            zu.setSkipUnchangedFiles(true);
+            // the index written by the second run is read by the third one
+            zu.setExtractionIndex(run > 0 ? index : null);
+            zu.extract("", outputDirectory);
+            assertEquals(run > 0, index.isFile());
+
+            File unchangedFile = new File(outputDirectory, "dir0/file0.txt");
+            File modifiedFile = new File(outputDirectory, "dir1/file1.txt");
+            File truncatedFile = new File(outputDirectory, "dir2/file2.txt");
+            if (run > 0) {
+                // the unchanged file is not written again, but its modification time is set
+                assertEquals(unchangedFileKey, fileKey(unchangedFile));
+                assertEquals(time, unchangedFile.lastModified());
+                assertEquals(time, modifiedFile.lastModified());
+                assertEquals(time, truncatedFile.lastModified());
+            }
+            assertExtractedFiles(outputDirectory, time);
+
+            unchangedFile.setLastModified(42_000L);
+            unchangedFileKey = fileKey(unchangedFile);
+            java.nio.file.Files.write(modifiedFile.toPath(), "CONTENT 1 1".getBytes());
+            java.nio.file.Files.write(truncatedFile.toPath(), "content".getBytes());
+        }
+    }
+
+    private static Object fileKey(File file) throws IOException {
+        return java.nio.file.Files.readAttributes(file.toPath(), java.nio.file.attribute.BasicFileAttributes.class)
+                .fileKey();
+    }
+
+    private static void createZipWithDirectories(File zipFile, long time) throws IOException {
+        zipFile.getParentFile().mkdirs();
+        try (org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream zos =
+                new org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream(zipFile)) {
+            for (int d = 0; d < 5; d++) {
+                org.apache.commons.compress.archivers.zip.ZipArchiveEntry dirEntry =
+                        new org.apache.commons.compress.archivers.zip.ZipArchiveEntry("dir" + d + "/");
+                dirEntry.setTime(time);
+                zos.putArchiveEntry(dirEntry);
+                zos.closeArchiveEntry();
+                for (int f = 0; f < 20; f++) {
+                    org.apache.commons.compress.archivers.zip.ZipArchiveEntry entry =
+                            new org.apache.commons.compress.archivers.zip.ZipArchiveEntry(
+                                    "dir" + d + "/file" + f + ".txt");
+                    entry.setTime(time);
+                    entry.setUnixMode(f % 2 == 0 ? 0100755 : 0100644);
+                    zos.putArchiveEntry(entry);
+                    zos.write(("content " + d + " " + f).getBytes());
+                    zos.closeArchiveEntry();
+                }
+            }
+        }
+    }
+
+    private static void assertExtractedFiles(File outputDirectory, long time) throws IOException {
+        for (int d = 0; d < 5; d++) {
+            for (int f = 0; f < 20; f++) {
+                File extractedFile = new File(outputDirectory, "dir" + d + "/file" + f + ".txt");
+                assertEquals(
+                        "content " + d + " " + f,
+                        new String(java.nio.file.Files.readAllBytes(extractedFile.toPath())));
+                assertEquals(time, extractedFile.lastModified());
+                if (!System.getProperty("os.name").toLowerCase().contains("windows")) {
+                    assertEquals(f % 2 == 0, extractedFile.canExecute());
+                }
+            }
+        }
+    }
+
+    @Test
+    void parallelZipOutputSizeException() throws Exception {
+        Exception ex = null;
+        String s = "target/zip-parallel-size-tests";
+        File testZip = new File(getBasedir(), "src/test/jars/test.zip");
+        File outputDirectory = new File(getBasedir(), s);
+
+        FileUtils.deleteDirectory(outputDirectory);
+
+        try {
+            ZipUnArchiver zu = getZipUnArchiver(testZip);
+            zu.setExtractionThreads(4);
+            zu.setMaxOutputSize(10L);
+            zu.extract("", outputDirectory);
+        } catch (Exception e) {
+            ex = e;
+        }
+
+        assertNotNull(ex);
+        assertTrue(ex.getMessage().startsWith("Maximum output size limit reached"));
+    }
 }
@@ -64,6 +64,30 @@ void createArchive() throws Exception {
         assertTrue(targetOutputFile.exists());
     }
 
+    @Test
+    void createArchiveWithWorkersAndLongDistanceMatching() throws Exception {
+        ZipArchiver zipArchiver = (ZipArchiver) lookup(Archiver.class, "zip");
+        zipArchiver.addFileSet(DefaultFileSet.fileSet(getTestFile("src")));
+        zipArchiver.setDestFile(getTestFile("target/output/archiveForZstdWorkers.zip"));
+        zipArchiver.createArchive();
+
+        ZstdArchiver archiver = (ZstdArchiver) lookup(Archiver.class, "zst");
+        archiver.setWorkers(2);
+        archiver.setWindowLog(24);
+        archiver.setLongDistanceMatching(true);
+        File targetOutputFile = getTestFile("target/output/archiveWithWorkers.zst");
+        FileUtils.fileDelete(targetOutputFile.getPath());
+        archiver.addFile(getTestFile("target/output/archiveForZstdWorkers.zip"), "archiveForZstdWorkers.zip");
+        archiver.setDestFile(targetOutputFile);
+        archiver.createArchive();
+
+        try (InputStream in = ZstdUnArchiver.getZstdInputStream(Files.newInputStream(targetOutputFile.toPath()))) {
+            assertArrayEquals(
+                    Files.readAllBytes(getTestFile("target/output/archiveForZstdWorkers.zip").toPath()),
+                    IOUtil.toByteArray(in));
+        }
+    }
+
     @Test
     void createEmptyArchive() throws Exception {
         ZstdArchiver archiver = (ZstdArchiver) lookup(Archiver.class, "zst");
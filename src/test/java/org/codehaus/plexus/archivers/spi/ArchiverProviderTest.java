@@ -24,6 +24,9 @@
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
 
 import org.codehaus.plexus.archiver.ArchivedFileSet;
 import org.codehaus.plexus.archiver.Archiver;
@@ -33,6 +36,10 @@
 import org.codehaus.plexus.archiver.EmptyDirectoryHandling;
 import org.codehaus.plexus.archiver.FileSet;
 import org.codehaus.plexus.archiver.diags.NoOpArchiver;
+import org.codehaus.plexus.archiver.tar.TarGZipArchiver;
+import org.codehaus.plexus.archiver.tar.TarXZArchiver;
+import org.codehaus.plexus.archiver.tar.TarZstdArchiver;
+import org.codehaus.plexus.archiver.zip.ZipArchiver;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -139,6 +146,56 @@ void exposesEveryArchiverSetterWithOneArgument(@TempDir Path directory) {
         assertThat(expected.umask).isEqualTo(0022);
     }
 
+    @Test
+    void configuresCompressionOfZipArchivers() {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            ZipArchiver zipArchiver = new ZipArchiver();
+            providerFor(zipArchiver).newArchiver(configurer -> {
+                configurer.setCompressionExecutor(executorService);
+                configurer.setCompressionLevel(1);
+                configurer.setCompressionStrategy(DeflateStrategy.HUFFMAN_ONLY);
+            });
+            assertThat(zipArchiver.getCompressionExecutor()).isSameAs(executorService);
+            assertThat(zipArchiver.getCompressionLevel()).isEqualTo(1);
+            assertThat(zipArchiver.getCompressionStrategy()).isEqualTo(Deflater.HUFFMAN_ONLY);
+
+            CapturingArchiver other = new CapturingArchiver();
+            assertThat(providerFor(other)
+                            .newArchiver(configurer -> configurer.setCompressionExecutor(executorService)))
+                    .isSameAs(other);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    void configuresCompressionThreadsOfTarArchivers() {
+        TarGZipArchiver tarGZipArchiver = new TarGZipArchiver();
+        providerFor(tarGZipArchiver).newArchiver(configurer -> {
+            configurer.setCompressionThreads(4);
+            configurer.setCompressionWindowLog(24);
+            configurer.setLongDistanceMatching(true);
+        });
+        assertThat(tarGZipArchiver.getCompressionThreads()).isEqualTo(4);
+
+        TarXZArchiver tarXZArchiver = new TarXZArchiver();
+        providerFor(tarXZArchiver).newArchiver(configurer -> configurer.setCompressionThreads(4));
+        assertThat(tarXZArchiver.getCompressionThreads()).isEqualTo(4);
+
+        CapturingTarZstdArchiver tarZstdArchiver = new CapturingTarZstdArchiver();
+        assertThat(providerFor(tarZstdArchiver).newArchiver(configurer -> {
+                    configurer.setCompressionThreads(4);
+                    configurer.setCompressionWindowLog(24);
+                    configurer.setLongDistanceMatching(true);
+                }))
+                .isSameAs(tarZstdArchiver);
+        assertThat(tarZstdArchiver.getCompressionThreads()).isEqualTo(1);
+        assertThat(tarZstdArchiver.workers).isEqualTo(4);
+        assertThat(tarZstdArchiver.windowLog).isEqualTo(24);
+        assertThat(tarZstdArchiver.longDistanceMatching).isTrue();
+    }
+
     private static ArchiverProvider providerFor(Archiver archiver) {
         return new AbstractArchiverProvider() {
             @Override
@@ -153,6 +210,30 @@ protected Archiver createArchiver() {
         };
     }
 
+    private static final class CapturingTarZstdArchiver extends TarZstdArchiver {
+        private int workers;
+        private int windowLog;
+        private boolean longDistanceMatching;
+
+        @Override
+        public void setWorkers(int workers) {
+            super.setWorkers(workers);
+            this.workers = workers;
+        }
+
+        @Override
+        public void setWindowLog(int windowLog) {
+            super.setWindowLog(windowLog);
+            this.windowLog = windowLog;
+        }
+
+        @Override
+        public void setLongDistanceMatching(boolean longDistanceMatching) {
+            super.setLongDistanceMatching(longDistanceMatching);
+            this.longDistanceMatching = longDistanceMatching;
+        }
+    }
+
     private static final class CapturingArchiver extends NoOpArchiver {
         private FileSet fileSet;
         private ArchivedFileSet archivedFileSet;